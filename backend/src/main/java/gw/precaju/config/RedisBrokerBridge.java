@@ -0,0 +1,198 @@
+package gw.precaju.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Pont Redis pub/sub entre les brokers en mémoire de plusieurs instances.
+ *
+ * Intercepteur du canal broker : chaque diffusion /topic produite localement
+ * est publiée sur un canal Redis puis livrée normalement aux sessions locales.
+ * Les messages reçus des autres instances sont réinjectés dans le canal broker
+ * avec un en-tête qui empêche de les republier. Les destinations /user restent
+ * locales à l'instance qui porte la session.
+ */
+@Component
+@ConditionalOnProperty(name = "app.websocket.broker.mode", havingValue = "redis")
+public class RedisBrokerBridge implements ChannelInterceptor, org.springframework.data.redis.connection.MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisBrokerBridge.class);
+
+    static final String RELAYED_HEADER = "precajuRelayed";
+    private static final String TOPIC_PREFIX = "/topic/";
+
+    private final StringRedisTemplate redisTemplate;
+    private final MessageChannel brokerChannel;
+    private final ObjectMapper objectMapper;
+    private final String channelName;
+    private final String instanceId;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    public RedisBrokerBridge(StringRedisTemplate redisTemplate,
+            RedisConnectionFactory connectionFactory,
+            @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+            ObjectMapper objectMapper,
+            @Value("${app.websocket.broker.redis.channel:precaju:ws:broadcast}") String channelName) {
+        this(redisTemplate, brokerChannel, objectMapper, channelName, UUID.randomUUID().toString(),
+                new RedisMessageListenerContainer());
+        listenerContainer.setConnectionFactory(connectionFactory);
+    }
+
+    RedisBrokerBridge(StringRedisTemplate redisTemplate, MessageChannel brokerChannel, ObjectMapper objectMapper,
+            String channelName, String instanceId, RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        this.brokerChannel = brokerChannel;
+        this.objectMapper = objectMapper;
+        this.channelName = channelName;
+        this.instanceId = instanceId;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    public void start() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(channelName));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+        logger.info("WebSocket Redis broker bridge listening on channel {} (instance {})", channelName, instanceId);
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE
+                || destination == null || !destination.startsWith(TOPIC_PREFIX)
+                || message.getHeaders().containsKey(RELAYED_HEADER)) {
+            return message;
+        }
+        byte[] payload = payloadBytes(message.getPayload());
+        if (payload == null) {
+            return message;
+        }
+        try {
+            MimeType contentType = accessor.getContentType();
+            BridgedMessage bridged = new BridgedMessage(instanceId, destination,
+                    contentType != null ? contentType.toString() : null,
+                    Base64.getEncoder().encodeToString(payload));
+            redisTemplate.convertAndSend(channelName, objectMapper.writeValueAsString(bridged));
+        } catch (Exception e) {
+            // La livraison locale continue même si Redis est indisponible
+            logger.warn("Failed to publish WebSocket message for {} to Redis: {}", destination, e.getMessage());
+        }
+        return message;
+    }
+
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message message, byte[] pattern) {
+        try {
+            BridgedMessage bridged = objectMapper.readValue(message.getBody(), BridgedMessage.class);
+            if (instanceId.equals(bridged.getOrigin())) {
+                return;
+            }
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(bridged.getDestination());
+            if (bridged.getContentType() != null) {
+                accessor.setContentType(MimeType.valueOf(bridged.getContentType()));
+            }
+            accessor.setHeader(RELAYED_HEADER, Boolean.TRUE);
+            accessor.setLeaveMutable(true);
+            MessageHeaders headers = accessor.getMessageHeaders();
+            brokerChannel.send(MessageBuilder.createMessage(Base64.getDecoder().decode(bridged.getPayload()), headers));
+        } catch (Exception e) {
+            logger.warn("Failed to relay WebSocket message from Redis: {}", e.getMessage());
+        }
+    }
+
+    private static byte[] payloadBytes(Object payload) {
+        if (payload instanceof byte[] bytes) {
+            return bytes;
+        }
+        if (payload instanceof String text) {
+            return text.getBytes(StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    /**
+     * Message diffusé entre instances
+     */
+    public static class BridgedMessage {
+        private String origin;
+        private String destination;
+        private String contentType;
+        private String payload;
+
+        public BridgedMessage() {
+        }
+
+        public BridgedMessage(String origin, String destination, String contentType, String payload) {
+            this.origin = origin;
+            this.destination = destination;
+            this.contentType = contentType;
+            this.payload = payload;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public void setOrigin(String origin) {
+            this.origin = origin;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public void setDestination(String destination) {
+            this.destination = destination;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public void setContentType(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getPayload() {
+            return payload;
+        }
+
+        public void setPayload(String payload) {
+            this.payload = payload;
+        }
+    }
+}
@@ -1,9 +1,21 @@
 package gw.precaju.config;
 
+import gw.precaju.security.BoundedPasswordEncoder;
 import gw.precaju.security.JwtAuthenticationEntryPoint;
 import gw.precaju.security.JwtAuthenticationFilter;
+import gw.precaju.security.LocalRateLimiter;
+import gw.precaju.security.RateLimitFilter;
+import gw.precaju.security.RateLimitProperties;
+import gw.precaju.security.RateLimiter;
+import gw.precaju.security.RedisRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -12,15 +24,21 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfigurationSource;
 
+import java.time.Duration;
+import java.util.Map;
+
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity(prePostEnabled = true)
+@EnableConfigurationProperties(RateLimitProperties.class)
 public class SecurityConfig {
 
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
@@ -35,9 +53,26 @@ public class SecurityConfig {
         this.corsConfigurationSource = corsConfigurationSource;
     }
 
+    /**
+     * Encodeur délégant : les nouveaux hachages utilisent l'algorithme configuré,
+     * les anciens (BCrypt sans préfixe, coût inférieur) restent vérifiables et sont
+     * ré-hachés à la connexion suivante via UserDetailsPasswordService
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+            @Value("${app.security.password.encoding:bcrypt}") String encodingId,
+            @Value("${app.security.password.bcrypt-strength:10}") int bcryptStrength,
+            @Value("${app.security.password.threads:0}") int threads,
+            @Value("${app.security.password.queue-capacity:32}") int queueCapacity,
+            @Value("${app.security.password.max-wait:PT5S}") Duration maxWait) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(encodingId, Map.of(
+                "bcrypt", bcrypt,
+                "argon2", Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8()));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(delegating, meterRegistry, poolSize, queueCapacity, maxWait);
     }
 
     @Bean
@@ -45,8 +80,24 @@ public class SecurityConfig {
         return config.getAuthenticationManager();
     }
 
+    /**
+     * Seaux du limiteur de débit : en mémoire par instance, ou partagés via Redis
+     * avec repli sur les seaux locaux si Redis ne répond pas
+     */
+    @Bean
+    public RateLimiter rateLimiter(RateLimitProperties properties,
+            ObjectProvider<StringRedisTemplate> redisTemplate) {
+        LocalRateLimiter local = new LocalRateLimiter(properties.getStripes(), properties.getMaxKeysPerStripe());
+        if ("redis".equalsIgnoreCase(properties.getBackend())) {
+            return new RedisRateLimiter(redisTemplate.getObject(), properties.getRedisKeyPrefix(), local,
+                    properties.getRedisRetryBackoff());
+        }
+        return local;
+    }
+
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, RateLimiter rateLimiter,
+            RateLimitProperties rateLimitProperties, MeterRegistry meterRegistry) throws Exception {
         http
                 // Disable CSRF as we use JWT
                 .csrf(AbstractHttpConfigurer::disable)
@@ -62,6 +113,10 @@ public class SecurityConfig {
 
                 // Set permissions on endpoints
                 .authorizeHttpRequests(auth -> auth
+                        // Async dispatch of a request already authorized (image upload processing);
+                        // the JWT filter does not run again on it
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // POI endpoints - MUST be FIRST to avoid conflicts with anyRequest()
                         .requestMatchers("/api/v1/poi/health").permitAll()
                         .requestMatchers("/api/v1/poi/stats").permitAll()
@@ -99,6 +154,13 @@ public class SecurityConfig {
                 // Add JWT token filter
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
 
+        // Rate limiting, after JWT so buckets can be keyed by user id. Not a bean, so
+        // that it is not also registered as a plain servlet filter ahead of security.
+        if (rateLimitProperties.isEnabled()) {
+            http.addFilterAfter(new RateLimitFilter(rateLimiter, rateLimitProperties.getPolicies(), meterRegistry),
+                    JwtAuthenticationFilter.class);
+        }
+
         return http.build();
     }
 }
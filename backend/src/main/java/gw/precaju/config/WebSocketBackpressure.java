@@ -0,0 +1,291 @@
+package gw.precaju.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contre-pression sur le canal sortant des clients WebSocket.
+ *
+ * Chaque session n'a qu'un message à la fois en cours d'envoi sur le pool
+ * sortant ; les suivants attendent dans une file bornée propre à la session.
+ * Une connexion lente n'occupe donc qu'un thread et qu'une file limitée, sans
+ * retarder les autres sessions. Quand la file est pleine :
+ * - DROP_OLDEST (diffusions de prix, /topic) : le plus ancien message jetable est supprimé
+ * - NEVER_DROP (notifications personnelles) : le message est conservé, et la session
+ *   est fermée si elle dépasse la limite dure, le client se resynchronisant à la reconnexion
+ */
+@Component
+public class WebSocketBackpressure implements ExecutorChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketBackpressure.class);
+
+    static final String RELEASED_HEADER = "precajuReleased";
+
+    public enum DropPolicy {
+        DROP_OLDEST, NEVER_DROP
+    }
+
+    private final int queueCapacity;
+    private final int hardLimit;
+    private final List<String> dropOldestPrefixes;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, SessionQueue> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong queued = new AtomicLong();
+    private final Counter terminated;
+
+    @Autowired
+    public WebSocketBackpressure(MeterRegistry meterRegistry,
+            @Value("${app.websocket.backpressure.session-queue-capacity:200}") int queueCapacity,
+            @Value("${app.websocket.backpressure.session-hard-limit:1000}") int hardLimit,
+            @Value("${app.websocket.backpressure.drop-oldest-prefixes:/topic/}") List<String> dropOldestPrefixes) {
+        this.meterRegistry = meterRegistry;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.hardLimit = Math.max(this.queueCapacity, hardLimit);
+        this.dropOldestPrefixes = List.copyOf(dropOldestPrefixes);
+        meterRegistry.gauge("websocket.outbound.queued", queued);
+        meterRegistry.gauge("websocket.outbound.sessions", sessions, Map::size);
+        meterRegistry.gauge("websocket.outbound.max-session-depth", this, WebSocketBackpressure::maxSessionDepth);
+        this.terminated = meterRegistry.counter("websocket.outbound.sessions.terminated");
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                sessions.put(session.getId(), new SessionQueue(session));
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                SessionQueue queue = sessions.remove(session.getId());
+                if (queue != null) {
+                    queue.discard();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (message.getHeaders().containsKey(RELEASED_HEADER)) {
+            return message;
+        }
+        SessionQueue queue = managedQueue(message);
+        if (queue == null) {
+            return message;
+        }
+        String destination = logicalDestination(message);
+        return queue.offer(message, destination, policyFor(destination)) ? message : null;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (ex != null) {
+            // Rejeté par le pool sortant : le message est perdu, on libère la session
+            SessionQueue queue = managedQueue(message);
+            if (queue != null) {
+                queue.release(channel);
+            }
+        }
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+            Exception ex) {
+        SessionQueue queue = managedQueue(message);
+        if (queue != null) {
+            queue.release(channel);
+        }
+    }
+
+    DropPolicy policyFor(String destination) {
+        for (String prefix : dropOldestPrefixes) {
+            if (destination.startsWith(prefix)) {
+                return DropPolicy.DROP_OLDEST;
+            }
+        }
+        return DropPolicy.NEVER_DROP;
+    }
+
+    private SessionQueue managedQueue(Message<?> message) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return null;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        return sessionId != null ? sessions.get(sessionId) : null;
+    }
+
+    /**
+     * Destination telle que souscrite par le client : /user/queue/... pour les
+     * messages personnels plutôt que la destination résolue propre à la session
+     */
+    private static String logicalDestination(Message<?> message) {
+        Object original = message.getHeaders().get(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION);
+        if (original != null) {
+            return original.toString();
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        return destination != null ? destination : "unknown";
+    }
+
+    private void countDropped(String destination) {
+        meterRegistry.counter("websocket.outbound.dropped", "destination", destination).increment();
+    }
+
+    private double maxSessionDepth() {
+        int max = 0;
+        for (SessionQueue queue : sessions.values()) {
+            max = Math.max(max, queue.depth());
+        }
+        return max;
+    }
+
+    int depth(String sessionId) {
+        SessionQueue queue = sessions.get(sessionId);
+        return queue != null ? queue.depth() : 0;
+    }
+
+    private static final class Pending {
+        private final Message<?> message;
+        private final String destination;
+        private final DropPolicy policy;
+
+        private Pending(Message<?> message, String destination, DropPolicy policy) {
+            this.message = message;
+            this.destination = destination;
+            this.policy = policy;
+        }
+    }
+
+    private final class SessionQueue {
+        private final WebSocketSession session;
+        private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+        private boolean inFlight;
+        private boolean closing;
+
+        private SessionQueue(WebSocketSession session) {
+            this.session = session;
+        }
+
+        /**
+         * Retourne true si le message peut partir immédiatement
+         */
+        boolean offer(Message<?> message, String destination, DropPolicy policy) {
+            String dropped = null;
+            boolean overflow = false;
+            synchronized (this) {
+                if (closing) {
+                    dropped = destination;
+                } else if (!inFlight) {
+                    inFlight = true;
+                    return true;
+                } else if (pending.size() < queueCapacity) {
+                    enqueue(message, destination, policy);
+                } else if (policy == DropPolicy.DROP_OLDEST) {
+                    Pending oldest = removeOldestDroppable();
+                    if (oldest != null) {
+                        enqueue(message, destination, policy);
+                        dropped = oldest.destination;
+                    } else {
+                        dropped = destination;
+                    }
+                } else if (pending.size() < hardLimit) {
+                    Pending oldest = removeOldestDroppable();
+                    dropped = oldest != null ? oldest.destination : null;
+                    enqueue(message, destination, policy);
+                } else {
+                    overflow = true;
+                    closing = true;
+                }
+            }
+            if (dropped != null) {
+                countDropped(dropped);
+            }
+            if (overflow) {
+                terminate(destination);
+            }
+            return false;
+        }
+
+        void release(MessageChannel channel) {
+            Pending next;
+            synchronized (this) {
+                next = closing ? null : pending.poll();
+                if (next == null) {
+                    inFlight = false;
+                    return;
+                }
+                queued.decrementAndGet();
+            }
+            channel.send(MessageBuilder.fromMessage(next.message).setHeader(RELEASED_HEADER, Boolean.TRUE).build());
+        }
+
+        synchronized int depth() {
+            return pending.size();
+        }
+
+        synchronized void discard() {
+            closing = true;
+            queued.addAndGet(-pending.size());
+            pending.clear();
+        }
+
+        private void enqueue(Message<?> message, String destination, DropPolicy policy) {
+            pending.add(new Pending(message, destination, policy));
+            queued.incrementAndGet();
+        }
+
+        private Pending removeOldestDroppable() {
+            Iterator<Pending> it = pending.iterator();
+            while (it.hasNext()) {
+                Pending candidate = it.next();
+                if (candidate.policy == DropPolicy.DROP_OLDEST) {
+                    it.remove();
+                    queued.decrementAndGet();
+                    return candidate;
+                }
+            }
+            return null;
+        }
+
+        private void terminate(String destination) {
+            terminated.increment();
+            logger.warn("Closing slow WebSocket session {}: {} undelivered messages (last for {})",
+                    session.getId(), hardLimit, destination);
+            discard();
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (Exception e) {
+                logger.debug("Error closing slow WebSocket session {}", session.getId(), e);
+            }
+        }
+    }
+}
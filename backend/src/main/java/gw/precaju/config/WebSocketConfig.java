@@ -1,26 +1,130 @@
 package gw.precaju.config;
 
+import gw.precaju.security.StompAuthChannelInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 /**
  * Configuration WebSocket pour la communication temps réel
  * Utilise STOMP (Simple Text Oriented Messaging Protocol) sur WebSocket
+ *
+ * Modes de broker (app.websocket.broker.mode) :
+ * - simple : broker en mémoire, une seule instance
+ * - relay : relais vers un broker STOMP externe (RabbitMQ, ActiveMQ...), multi-instances
+ * - redis : broker en mémoire sur chaque instance, les diffusions /topic étant
+ *   propagées entre instances par Redis pub/sub ({@link RedisBrokerBridge})
  */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    public static final String MODE_SIMPLE = "simple";
+    public static final String MODE_RELAY = "relay";
+    public static final String MODE_REDIS = "redis";
+
+    @Value("${app.websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${app.websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${app.websocket.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${app.websocket.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${app.websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    @Value("${app.websocket.inbound.core-pool-size:4}")
+    private int inboundCorePoolSize;
+
+    @Value("${app.websocket.inbound.max-pool-size:16}")
+    private int inboundMaxPoolSize;
+
+    @Value("${app.websocket.inbound.queue-capacity:1000}")
+    private int inboundQueueCapacity;
+
+    @Value("${app.websocket.outbound.core-pool-size:4}")
+    private int outboundCorePoolSize;
+
+    @Value("${app.websocket.outbound.max-pool-size:16}")
+    private int outboundMaxPoolSize;
+
+    @Value("${app.websocket.outbound.queue-capacity:5000}")
+    private int outboundQueueCapacity;
+
+    @Value("${app.websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${app.websocket.transport.send-time-limit:10000}")
+    private int sendTimeLimit;
+
+    @Value("${app.websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    @Value("${app.websocket.heartbeat-ms:20000}")
+    private long heartbeatMs;
+
+    private final ObjectProvider<RedisBrokerBridge> redisBrokerBridge;
+    private final StompAuthChannelInterceptor stompAuthChannelInterceptor;
+    private final WebSocketBackpressure backpressure;
+
+    public WebSocketConfig(ObjectProvider<RedisBrokerBridge> redisBrokerBridge,
+            StompAuthChannelInterceptor stompAuthChannelInterceptor,
+            WebSocketBackpressure backpressure) {
+        this.redisBrokerBridge = redisBrokerBridge;
+        this.stompAuthChannelInterceptor = stompAuthChannelInterceptor;
+        this.backpressure = backpressure;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Configuration du broker de messages
         // /topic pour les messages broadcast (tous les utilisateurs)
         // /queue pour les messages privés (utilisateur spécifique)
         // /user pour les messages personnalisés
-        config.enableSimpleBroker("/topic", "/queue", "/user");
+        if (MODE_RELAY.equalsIgnoreCase(brokerMode)) {
+            var relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setSystemHeartbeatSendInterval(heartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(heartbeatMs)
+                    // Messages /user destinés à une session d'une autre instance
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            if (!relayVirtualHost.isBlank()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+        } else {
+            config.enableSimpleBroker("/topic", "/queue", "/user")
+                    .setHeartbeatValue(new long[] { heartbeatMs, heartbeatMs })
+                    .setTaskScheduler(heartbeatScheduler());
+
+            RedisBrokerBridge bridge = redisBrokerBridge.getIfAvailable();
+            if (MODE_REDIS.equalsIgnoreCase(brokerMode)) {
+                if (bridge == null) {
+                    throw new IllegalStateException("WebSocket broker mode 'redis' requires the Redis broker bridge");
+                }
+                config.configureBrokerChannel().interceptors(bridge);
+            }
+        }
 
         // Préfixe pour les destinations côté client
         config.setApplicationDestinationPrefixes("/app");
@@ -29,6 +133,35 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.setUserDestinationPrefix("/user");
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Authentification à la trame CONNECT, SUBSCRIBE refusé aux sessions anonymes
+        registration.interceptors(stompAuthChannelInterceptor);
+        registration.taskExecutor()
+                .corePoolSize(inboundCorePoolSize)
+                .maxPoolSize(inboundMaxPoolSize)
+                .queueCapacity(inboundQueueCapacity);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // File bornée par session et politique de rejet par destination
+        registration.interceptors(backpressure);
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Au-delà de ces limites, la session lente est fermée au lieu de bufferiser sans fin
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setSendTimeLimit(sendTimeLimit)
+                .setMessageSizeLimit(messageSizeLimit)
+                .addDecoratorFactory(backpressure);
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // Endpoint WebSocket avec SockJS pour la compatibilité navigateur
@@ -40,4 +173,13 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws-native")
                 .setAllowedOriginPatterns("*");
     }
+
+    private ThreadPoolTaskScheduler heartbeatScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("ws-heartbeat-");
+        scheduler.setDaemon(true);
+        scheduler.initialize();
+        return scheduler;
+    }
 }
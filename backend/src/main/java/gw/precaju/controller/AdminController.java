@@ -1,5 +1,6 @@
 package gw.precaju.controller;
 
+import gw.precaju.dto.CursorPageResponse;
 import gw.precaju.dto.PageResponse;
 import gw.precaju.dto.UserDTO;
 import gw.precaju.dto.request.AdminUpdateUserRequest;
@@ -8,6 +9,7 @@ import gw.precaju.entity.User;
 import gw.precaju.entity.enums.UserRole;
 import gw.precaju.mapper.UserMapper;
 import gw.precaju.service.UserService;
+import gw.precaju.service.UserStatisticsService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,11 +34,14 @@ public class AdminController {
     private final UserService userService;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
+    private final UserStatisticsService userStatisticsService;
 
-    public AdminController(UserService userService, UserMapper userMapper, PasswordEncoder passwordEncoder) {
+    public AdminController(UserService userService, UserMapper userMapper, PasswordEncoder passwordEncoder,
+            UserStatisticsService userStatisticsService) {
         this.userService = userService;
         this.userMapper = userMapper;
         this.passwordEncoder = passwordEncoder;
+        this.userStatisticsService = userStatisticsService;
     }
 
     /**
@@ -135,6 +140,34 @@ public class AdminController {
         }
     }
 
+    /**
+     * Recherche d'utilisateurs paginée par clé, pour les listes longues : le coût
+     * d'une page ne dépend pas de sa position et aucun total n'est calculé
+     */
+    @GetMapping("/search")
+    public ResponseEntity<CursorPageResponse<UserDTO>> searchUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String role,
+            @RequestParam(required = false) Boolean active,
+            @RequestParam(required = false) Boolean emailVerified,
+            @RequestParam(required = false) String search) {
+        try {
+            validatePaginationParameters(0, size);
+            CursorPageResponse<UserDTO> response = userService
+                    .searchUsersAfterCursor(role, active, emailVerified, search, cursor, size)
+                    .map(userMapper::toDTO);
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid argument in searchUsers request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Unexpected error in searchUsers request: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * Récupère un utilisateur par son ID
      */
@@ -177,6 +210,7 @@ public class AdminController {
             user.setActive(request.getActive() != null ? request.getActive() : true);
 
             User savedUser = userService.save(user);
+            userStatisticsService.invalidate();
             UserDTO userDTO = userMapper.toDTO(savedUser);
 
             logger.info("User created successfully: {}", user.getEmail());
@@ -222,6 +256,7 @@ public class AdminController {
             }
 
             User updatedUser = userService.save(user);
+            userStatisticsService.invalidate();
             UserDTO userDTO = userMapper.toDTO(updatedUser);
 
             logger.info("User updated successfully: {}", user.getEmail());
@@ -245,6 +280,7 @@ public class AdminController {
             User user = userService.findById(id);
             user.setActive(false);
             userService.save(user);
+            userStatisticsService.invalidate();
 
             logger.info("User deactivated successfully: {}", user.getEmail());
             return ResponseEntity.noContent().build();
@@ -267,6 +303,7 @@ public class AdminController {
             User user = userService.findById(id);
             user.setActive(true);
             User savedUser = userService.save(user);
+            userStatisticsService.invalidate();
             UserDTO userDTO = userMapper.toDTO(savedUser);
 
             logger.info("User activated successfully: {}", user.getEmail());
@@ -310,27 +347,20 @@ public class AdminController {
     public ResponseEntity<UserStatsDTO> getUserStats() {
         logger.info("=== ADMIN: getUserStats called ===");
         try {
-            logger.debug("Counting total users");
-            long totalUsers = userService.countAllUsers();
-            logger.debug("Counting active users");
-            long activeUsers = userService.countByRoleAndActiveTrue(null);
-            logger.debug("Counting admin users");
-            long adminUsers = userService.countByRoleAndActiveTrue(UserRole.ADMIN);
-            logger.debug("Counting moderator users");
-            long moderatorUsers = userService.countByRoleAndActiveTrue(UserRole.MODERATOR);
-            logger.debug("Counting contributor users");
-            long contributorUsers = userService.countByRoleAndActiveTrue(UserRole.CONTRIBUTOR);
+            UserStatisticsService.UserStatistics statistics = userStatisticsService.getStatistics();
 
             UserStatsDTO stats = new UserStatsDTO();
-            stats.setTotalUsers(totalUsers);
-            stats.setActiveUsers(activeUsers);
-            stats.setAdminUsers(adminUsers);
-            stats.setModeratorUsers(moderatorUsers);
-            stats.setContributorUsers(contributorUsers);
+            stats.setTotalUsers(statistics.getTotalUsers());
+            stats.setActiveUsers(statistics.getActiveUsers());
+            stats.setVerifiedUsers(statistics.getVerifiedUsers());
+            stats.setAdminUsers(statistics.getActiveUsers(UserRole.ADMIN));
+            stats.setModeratorUsers(statistics.getActiveUsers(UserRole.MODERATOR));
+            stats.setContributorUsers(statistics.getActiveUsers(UserRole.CONTRIBUTOR));
 
             logger.info(
                     "Successfully retrieved user stats: Total={}, Active={}, Admin={}, Moderator={}, Contributor={}",
-                    totalUsers, activeUsers, adminUsers, moderatorUsers, contributorUsers);
+                    stats.getTotalUsers(), stats.getActiveUsers(), stats.getAdminUsers(),
+                    stats.getModeratorUsers(), stats.getContributorUsers());
             return ResponseEntity.ok(stats);
 
         } catch (IllegalArgumentException e) {
@@ -441,6 +471,7 @@ public class AdminController {
     public static class UserStatsDTO {
         private long totalUsers;
         private long activeUsers;
+        private long verifiedUsers;
         private long adminUsers;
         private long moderatorUsers;
         private long contributorUsers;
@@ -462,6 +493,14 @@ public class AdminController {
             this.activeUsers = activeUsers;
         }
 
+        public long getVerifiedUsers() {
+            return verifiedUsers;
+        }
+
+        public void setVerifiedUsers(long verifiedUsers) {
+            this.verifiedUsers = verifiedUsers;
+        }
+
         public long getAdminUsers() {
             return adminUsers;
         }
@@ -4,11 +4,14 @@ import gw.precaju.dto.AuthResponse;
 import gw.precaju.dto.request.LoginRequest;
 import gw.precaju.dto.request.RefreshTokenRequest;
 import gw.precaju.dto.request.RegisterRequest;
+import gw.precaju.security.BoundedPasswordEncoder.PasswordHashingBusyException;
 import gw.precaju.security.JwtTokenProvider;
 import gw.precaju.service.AuthService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -44,6 +47,13 @@ public class AuthController {
             logger.info("✅ Login successful for user: {}", loginRequest.getEmail());
             return ResponseEntity.ok(response);
         } catch (Exception e) {
+            // Email inconnu : le hachage factice (anti timing attack) est enveloppé dans
+            // InternalAuthenticationServiceException ; même réponse que pour un compte existant
+            PasswordHashingBusyException busy = findBusyCause(e);
+            if (busy != null) {
+                logger.warn("Login rejected, password hashing saturated: {}", busy.getMessage());
+                return passwordHashingBusy("Too many concurrent logins, please retry shortly");
+            }
             logger.error("❌ Login failed for email: {}", loginRequest.getEmail());
             logger.error("Error type: {}", e.getClass().getSimpleName());
             logger.error("Error message: {}", e.getMessage());
@@ -64,11 +74,16 @@ public class AuthController {
     }
 
     @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(@Valid @RequestBody RegisterRequest registerRequest) {
+    public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest registerRequest) {
         try {
             AuthResponse response = authService.register(registerRequest);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
+            PasswordHashingBusyException busy = findBusyCause(e);
+            if (busy != null) {
+                logger.warn("Registration rejected, password hashing saturated: {}", busy.getMessage());
+                return passwordHashingBusy("Too many concurrent requests, please retry shortly");
+            }
             logger.error("Registration failed for email: {}", registerRequest.getEmail(), e);
             return ResponseEntity.badRequest().build();
         }
@@ -165,4 +180,26 @@ public class AuthController {
 
         return message != null ? message : "Authentication failed";
     }
+
+    /**
+     * Pic de hachages de mots de passe : refus rapide, le client réessaie
+     */
+    private static ResponseEntity<Map<String, Object>> passwordHashingBusy(String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Temporarily unavailable");
+        errorResponse.put("message", message);
+        errorResponse.put("timestamp", java.time.Instant.now());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "2")
+                .body(errorResponse);
+    }
+
+    static PasswordHashingBusyException findBusyCause(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PasswordHashingBusyException busy) {
+                return busy;
+            }
+        }
+        return null;
+    }
 }
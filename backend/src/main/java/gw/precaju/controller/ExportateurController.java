@@ -1,34 +1,56 @@
 package gw.precaju.controller;
 
 import gw.precaju.dto.ExportateurDTO;
+import gw.precaju.dto.ExportateurImportResultDTO;
 import gw.precaju.dto.PageResponse;
+import gw.precaju.dto.QRRevocationDTO;
 import gw.precaju.dto.VerificationResultDTO;
 import gw.precaju.dto.request.ExportateurCreateRequest;
 import gw.precaju.dto.request.ExportateurUpdateRequest;
 import gw.precaju.service.ExportateurService;
+import gw.precaju.service.ExportateurStatisticsService;
+import gw.precaju.service.QRCodeImageService;
+import gw.precaju.service.QRCodeImageService.ImageFormat;
+import gw.precaju.service.SignedQRTokenService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/v1/exportateurs")
 public class ExportateurController {
 
     private static final Logger logger = LoggerFactory.getLogger(ExportateurController.class);
+    private static final int MAX_IMPORT_ROWS = 2000;
 
     private final ExportateurService exportateurService;
+    private final QRCodeImageService qrCodeImageService;
+    private final SignedQRTokenService signedQRTokenService;
+    private final ExportateurStatisticsService statisticsService;
 
-    public ExportateurController(ExportateurService exportateurService) {
+    public ExportateurController(ExportateurService exportateurService, QRCodeImageService qrCodeImageService,
+            SignedQRTokenService signedQRTokenService, ExportateurStatisticsService statisticsService) {
         this.exportateurService = exportateurService;
+        this.qrCodeImageService = qrCodeImageService;
+        this.signedQRTokenService = signedQRTokenService;
+        this.statisticsService = statisticsService;
     }
 
     /**
@@ -126,6 +148,34 @@ public class ExportateurController {
         }
     }
 
+    /**
+     * Importe un lot d'exportateurs (admin seulement)
+     */
+    @PostMapping("/import")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> importExportateurs(
+            @RequestBody List<ExportateurCreateRequest> requests,
+            @RequestParam(defaultValue = "false") boolean dryRun) {
+        try {
+            logger.info("Importing {} exportateurs (dryRun: {})", requests.size(), dryRun);
+
+            if (requests.isEmpty()) {
+                return ResponseEntity.badRequest().body("Le fichier d'import est vide");
+            }
+            if (requests.size() > MAX_IMPORT_ROWS) {
+                return ResponseEntity.badRequest()
+                        .body("Le fichier d'import ne peut pas dépasser " + MAX_IMPORT_ROWS + " lignes");
+            }
+
+            ExportateurImportResultDTO result = exportateurService.importBulk(requests, dryRun);
+            HttpStatus status = !dryRun && result.getCreatedCount() > 0 ? HttpStatus.CREATED : HttpStatus.OK;
+            return ResponseEntity.status(status).body(result);
+        } catch (Exception e) {
+            logger.error("Error importing exportateurs", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * Met à jour un exportateur (admin seulement)
      */
@@ -165,14 +215,14 @@ public class ExportateurController {
     }
 
     /**
-     * Récupère les statistiques des exportateurs
+     * Récupère les statistiques des exportateurs par région et statut
      */
     @GetMapping("/statistics")
     public ResponseEntity<List<Object[]>> getStatistics() {
         try {
             logger.info("Getting exportateur statistics");
 
-            List<Object[]> statistics = exportateurService.getStatistics();
+            List<Object[]> statistics = statisticsService.getCountsByRegionAndStatut();
             return ResponseEntity.ok(statistics);
         } catch (Exception e) {
             logger.error("Error getting exportateur statistics", e);
@@ -180,6 +230,147 @@ public class ExportateurController {
         }
     }
 
+    /**
+     * Récupère les statistiques des exportateurs par type et statut
+     */
+    @GetMapping("/statistics/types")
+    public ResponseEntity<List<Object[]>> getStatisticsByType() {
+        try {
+            return ResponseEntity.ok(statisticsService.getCountsByTypeAndStatut());
+        } catch (Exception e) {
+            logger.error("Error getting exportateur statistics by type", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Récupère les exportateurs les plus vérifiés
+     */
+    @GetMapping("/statistics/most-verified")
+    public ResponseEntity<List<Map<String, Object>>> getMostVerified(
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(statisticsService.getMostVerified(Math.max(1, Math.min(limit, 100))));
+        } catch (Exception e) {
+            logger.error("Error getting most verified exportateurs", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Récupère l'image QR code d'un exportateur (PNG ou SVG, admin seulement)
+     */
+    @GetMapping("/{id}/qrcode")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Resource> getQrCodeImage(
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "png") String format,
+            @RequestParam(required = false) Integer size) {
+
+        try {
+            ImageFormat imageFormat = ImageFormat.fromString(format);
+            int imageSize = size != null ? size : qrCodeImageService.getDefaultSize();
+
+            Optional<String> signedToken = exportateurService.getSignedQrCodeToken(id);
+            if (signedToken.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            FileSystemResource image = new FileSystemResource(
+                    qrCodeImageService.getOrRender(signedToken.get(), imageFormat, imageSize));
+
+            // Le contenu dépend uniquement du token : l'image peut être mise en cache côté client
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(imageFormat.getContentType()))
+                    .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate())
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"qrcode-"
+                            + id + "." + imageFormat.getExtension() + "\"")
+                    .body(image);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid QR code image request for exportateur {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Error rendering QR code image for exportateur {}", id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Récupère le token QR signé d'un exportateur (admin seulement)
+     */
+    @GetMapping("/{id}/signed-token")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, String>> getSignedToken(@PathVariable UUID id) {
+        try {
+            return exportateurService.getSignedQrCodeToken(id)
+                    .map(token -> ResponseEntity.ok(Map.of("token", token)))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            logger.error("Error issuing signed QR token for exportateur {}", id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Clé publique de vérification des tokens QR signés (vérification hors ligne)
+     */
+    @GetMapping("/qrcode-signing-key")
+    public ResponseEntity<Map<String, String>> getSigningPublicKey() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic())
+                .body(Map.of("algorithm", "Ed25519", "publicKey", signedQRTokenService.getPublicKeyBase64()));
+    }
+
+    /**
+     * Liste de révocation des tokens QR signés (vérification hors ligne)
+     */
+    @GetMapping("/revocations")
+    public ResponseEntity<List<QRRevocationDTO>> getRevocations() {
+        try {
+            return ResponseEntity.ok(exportateurService.getRevocations());
+        } catch (Exception e) {
+            logger.error("Error getting QR token revocation list", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Télécharge une archive ZIP des badges QR code d'une région (admin seulement).
+     * L'archive est écrite en flux continu dans la réponse.
+     */
+    @GetMapping("/qrcodes/region/{regionCode}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> downloadRegionQrCodes(
+            @PathVariable String regionCode,
+            @RequestParam(required = false) Integer size) {
+
+        try {
+            logger.info("Downloading QR code badges for region: {}", regionCode);
+
+            int imageSize = size != null ? size : qrCodeImageService.getDefaultSize();
+            if (imageSize < QRCodeImageService.MIN_SIZE || imageSize > QRCodeImageService.MAX_SIZE) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            Map<String, String> tokens = exportateurService.getSignedQrCodeTokensByRegion(regionCode);
+            if (tokens.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            StreamingResponseBody body = outputStream -> qrCodeImageService.writeBadgesZip(
+                    tokens, imageSize, outputStream);
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"qrcodes-" + regionCode + ".zip\"")
+                    .body(body);
+        } catch (Exception e) {
+            logger.error("Error downloading QR code badges for region: {}", regionCode, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * Récupère les exportateurs expirant bientôt
      */
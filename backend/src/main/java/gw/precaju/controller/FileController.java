@@ -1,22 +1,33 @@
 package gw.precaju.controller;
 
 import gw.precaju.service.FileStorageService;
+import gw.precaju.service.FileStorageService.StoredFile;
+import gw.precaju.service.ImageProcessingService.ImageProcessingBusyException;
+import gw.precaju.service.ImageProcessingService.Variant;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.nio.file.Path;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/v1/files")
@@ -24,64 +35,224 @@ public class FileController {
 
     private static final Logger logger = LoggerFactory.getLogger(FileController.class);
 
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final FileStorageService fileStorageService;
+    private final String cacheControl;
 
-    public FileController(FileStorageService fileStorageService) {
+    public FileController(FileStorageService fileStorageService,
+                          @Value("${file.serving.max-age:P365D}") Duration maxAge) {
         this.fileStorageService = fileStorageService;
+        this.cacheControl = "public, max-age=" + maxAge.toSeconds() + ", immutable";
     }
 
+    /**
+     * Le traitement de l'image s'exécute sur le pool dédié : le thread de la
+     * requête est libéré pendant ce temps (traitement asynchrone Spring MVC)
+     */
     @PostMapping("/upload")
     @PreAuthorize("hasAnyRole('ADMIN', 'MODERATOR', 'CONTRIBUTOR')")
-    public ResponseEntity<Map<String, String>> uploadFile(@RequestParam("file") MultipartFile file) {
+    public CompletableFuture<ResponseEntity<Map<String, String>>> uploadFile(@RequestParam("file") MultipartFile file) {
+        CompletableFuture<String> stored;
         try {
-            String fileName = fileStorageService.storeFile(file);
-            String fileUrl = fileStorageService.getFileUrl(fileName);
+            stored = fileStorageService.storeImage(file);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(uploadError(e));
+        }
+
+        return stored.handle((fileName, error) -> {
+            if (error != null) {
+                return uploadError(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            }
 
             Map<String, String> response = new HashMap<>();
             response.put("fileName", fileName);
-            response.put("fileUrl", fileUrl);
-            response.put("fileSize", String.valueOf(file.getSize()));
-            response.put("contentType", file.getContentType());
+            response.put("fileUrl", fileStorageService.getFileUrl(fileName));
+            response.put("thumbUrl", fileStorageService.getFileUrl(
+                    fileStorageService.getVariantFileName(fileName, Variant.THUMB)));
+            response.put("feedUrl", fileStorageService.getFileUrl(
+                    fileStorageService.getVariantFileName(fileName, Variant.FEED)));
+            response.put("fileSize", String.valueOf(fileSize(fileName)));
+            response.put("contentType", determineContentType(fileName));
 
             return ResponseEntity.ok(response);
+        });
+    }
 
-        } catch (Exception e) {
-            logger.error("Error uploading file", e);
-            Map<String, String> errorResponse = new HashMap<>();
-            errorResponse.put("error", e.getMessage());
-            return ResponseEntity.badRequest().body(errorResponse);
+    private ResponseEntity<Map<String, String>> uploadError(Throwable e) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", e.getMessage());
+        if (e instanceof ImageProcessingBusyException) {
+            logger.warn("Image upload rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(errorResponse);
         }
+        logger.error("Error uploading file", e);
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
+
+    private long fileSize(String fileName) {
+        // Calcule au passage l'ETag servi au premier affichage
+        StoredFile stored = fileStorageService.getStoredFile(fileName);
+        return stored != null ? stored.getSize() : 0L;
     }
 
+    /**
+     * Sert un fichier stocké. Les noms étant uniques et jamais réécrits, la réponse
+     * est cachable sans limite (immutable) ; l'ETag est une empreinte du contenu
+     * gardée en mémoire, si bien qu'un 304 ne touche pas le disque. Une plage
+     * d'octets unique (Range) est servie en 206 pour reprendre un téléchargement.
+     * Le corps est envoyé par sendfile lorsque Tomcat le permet, sinon par
+     * {@link FileChannel#transferTo}.
+     */
     @GetMapping("/{fileName:.+}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String fileName) {
-        try {
-            // Validate filename
-            if (!fileStorageService.fileExists(fileName)) {
-                return ResponseEntity.notFound().build();
+    public void downloadFile(@PathVariable String fileName, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        StoredFile file = fileStorageService.getStoredFile(fileName);
+        if (file == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ETAG, file.getEtag());
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, file.getLastModified().toEpochMilli());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (isNotModified(request, file)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = file.getSize();
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(request, file)) {
+            long[] bounds = parseRange(range, file.getSize());
+            if (bounds != null && bounds.length == 0) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + file.getSize());
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
             }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + start + "-" + (end - 1) + "/" + file.getSize());
+            }
+        }
 
-            Path filePath = fileStorageService.getFilePath(fileName);
-            Resource resource = new UrlResource(filePath.toUri());
+        response.setContentType(determineContentType(file.getFileName()));
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"");
+        response.setContentLengthLong(end - start);
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return;
+        }
 
-            if (!resource.exists() || !resource.isReadable()) {
-                return ResponseEntity.notFound().build();
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat envoie le fichier après le retour de la servlet
+            request.setAttribute(SENDFILE_FILENAME, file.getPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        } catch (NoSuchFileException e) {
+            // Supprimé depuis la mise en cache de ses métadonnées (autre instance)
+            fileStorageService.evictStoredFile(fileName);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             }
+        }
+    }
 
-            // Determine content type
-            String contentType = determineContentType(fileName);
+    /**
+     * If-None-Match prime sur If-Modified-Since (RFC 9110 §13.2.2)
+     */
+    private static boolean isNotModified(HttpServletRequest request, StoredFile file) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return etagListMatches(ifNoneMatch, file.getEtag());
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return ifModifiedSince != -1 && file.getLastModified().toEpochMilli() / 1000 <= ifModifiedSince / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"")
-                    .body(resource);
+    /**
+     * Une plage conditionnée par If-Range n'est servie que si l'ETag n'a pas changé
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, StoredFile file) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        return ifRange == null || ifRange.trim().equals(file.getEtag());
+    }
 
-        } catch (MalformedURLException e) {
-            logger.error("Error downloading file: {}", fileName, e);
-            return ResponseEntity.badRequest().build();
-        } catch (Exception e) {
-            logger.error("Unexpected error downloading file: {}", fileName, e);
-            return ResponseEntity.internalServerError().build();
+    static boolean etagListMatches(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Analyse un en-tête Range d'une seule plage : renvoie [début, fin exclue],
+     * un tableau vide si la plage est hors du fichier, ou null pour ignorer
+     * l'en-tête (syntaxe invalide ou plages multiples : réponse complète)
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffixe : les N derniers octets
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return new long[0];
+                }
+                return new long[] { Math.max(0, size - suffix), size };
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= size) {
+                return new long[0];
+            }
+            return new long[] { start, Math.min(end, size - 1) + 1 };
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 
@@ -4,7 +4,9 @@ import gw.precaju.dto.NotificationConfigDTO;
 import gw.precaju.dto.NotificationHistoryDTO;
 import gw.precaju.dto.NotificationSubscriptionDTO;
 import gw.precaju.entity.User;
+import gw.precaju.security.AuthenticatedUser;
 import gw.precaju.service.NotificationService;
+import gw.precaju.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -23,6 +25,7 @@ import java.util.Map;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final UserService userService;
 
     /**
      * Get VAPID public key for frontend
@@ -38,10 +41,11 @@ public class NotificationController {
      */
     @PostMapping("/subscribe")
     public ResponseEntity<Map<String, String>> subscribe(
-            @AuthenticationPrincipal User user,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @Valid @RequestBody NotificationSubscriptionDTO subscriptionDTO) {
 
         try {
+            User user = userService.findById(principal.getId());
             notificationService.subscribeUser(user, subscriptionDTO);
             return ResponseEntity.ok(Map.of("message", "Successfully subscribed to notifications"));
         } catch (Exception e) {
@@ -55,8 +59,9 @@ public class NotificationController {
      * Unsubscribe user from push notifications
      */
     @PostMapping("/unsubscribe")
-    public ResponseEntity<Map<String, String>> unsubscribe(@AuthenticationPrincipal User user) {
+    public ResponseEntity<Map<String, String>> unsubscribe(@AuthenticationPrincipal AuthenticatedUser principal) {
         try {
+            User user = userService.findById(principal.getId());
             notificationService.unsubscribeUser(user);
             return ResponseEntity.ok(Map.of("message", "Successfully unsubscribed from notifications"));
         } catch (Exception e) {
@@ -71,9 +76,10 @@ public class NotificationController {
      */
     @GetMapping("/history")
     public ResponseEntity<Page<NotificationHistoryDTO>> getNotificationHistory(
-            @AuthenticationPrincipal User user,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             Pageable pageable) {
 
+        User user = userService.findById(principal.getId());
         Page<NotificationHistoryDTO> history = notificationService.getUserNotificationHistory(user, pageable);
         return ResponseEntity.ok(history);
     }
@@ -108,7 +114,7 @@ public class NotificationController {
      * Test notification endpoint (admin only)
      */
     @PostMapping("/test")
-    public ResponseEntity<Map<String, String>> sendTestNotification(@AuthenticationPrincipal User user) {
+    public ResponseEntity<Map<String, String>> sendTestNotification(@AuthenticationPrincipal AuthenticatedUser principal) {
         try {
             // This would send a test notification to the current user
             // Implementation depends on your test requirements
@@ -6,6 +6,8 @@ import gw.precaju.dto.PriceStatsDTO;
 import gw.precaju.dto.request.CreatePriceRequest;
 import gw.precaju.entity.User;
 import gw.precaju.service.AuthService;
+import gw.precaju.service.FileStorageService;
+import gw.precaju.service.ImageProcessingService.ImageProcessingBusyException;
 import gw.precaju.service.PriceService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
@@ -15,6 +17,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -34,10 +37,13 @@ public class PriceController {
 
     private final PriceService priceService;
     private final AuthService authService;
+    private final FileStorageService fileStorageService;
 
-    public PriceController(PriceService priceService, AuthService authService) {
+    public PriceController(PriceService priceService, AuthService authService,
+            FileStorageService fileStorageService) {
         this.priceService = priceService;
         this.authService = authService;
+        this.fileStorageService = fileStorageService;
     }
 
     @GetMapping
@@ -129,9 +135,15 @@ public class PriceController {
             @Valid @ModelAttribute CreatePriceRequest request,
             @RequestHeader(name = "Accept-Language", defaultValue = "pt") String language) {
 
+        String photoFileName = null;
         try {
+            // Photo traitée avant toute requête : l'attente du pool d'images ne retient
+            // ni transaction ni connexion
+            photoFileName = storePhoto(request);
+
             User currentUser = authService.getCurrentUser();
             if (currentUser == null) {
+                deletePhoto(photoFileName);
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
 
@@ -140,13 +152,17 @@ public class PriceController {
                 request.setRecordedDate(LocalDate.now());
             }
 
-            PriceDTO createdPrice = priceService.createPrice(request, currentUser);
+            PriceDTO createdPrice = priceService.createPrice(request, currentUser, photoFileName);
             return ResponseEntity.status(HttpStatus.CREATED).body(createdPrice);
 
+        } catch (ImageProcessingBusyException e) {
+            return imageProcessingBusy(e);
         } catch (RuntimeException e) {
+            deletePhoto(photoFileName);
             logger.error("Error creating price", e);
             return ResponseEntity.badRequest().build();
         } catch (Exception e) {
+            deletePhoto(photoFileName);
             logger.error("Unexpected error creating price", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -158,16 +174,23 @@ public class PriceController {
             @PathVariable UUID id,
             @Valid @ModelAttribute CreatePriceRequest request) {
 
+        String photoFileName = null;
         try {
+            photoFileName = storePhoto(request);
+
             User currentUser = authService.getCurrentUser();
             if (currentUser == null) {
+                deletePhoto(photoFileName);
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
 
-            PriceDTO updatedPrice = priceService.updatePrice(id, request, currentUser);
+            PriceDTO updatedPrice = priceService.updatePrice(id, request, currentUser, photoFileName);
             return ResponseEntity.ok(updatedPrice);
 
+        } catch (ImageProcessingBusyException e) {
+            return imageProcessingBusy(e);
         } catch (RuntimeException e) {
+            deletePhoto(photoFileName);
             logger.error("Error updating price with ID: {}", id, e);
             if (e.getMessage().contains("not found")) {
                 return ResponseEntity.notFound().build();
@@ -176,6 +199,7 @@ public class PriceController {
             }
             return ResponseEntity.badRequest().build();
         } catch (Exception e) {
+            deletePhoto(photoFileName);
             logger.error("Unexpected error updating price with ID: {}", id, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -371,4 +395,27 @@ public class PriceController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    private String storePhoto(CreatePriceRequest request) {
+        if (request.getPhotoFile() == null || request.getPhotoFile().isEmpty()) {
+            return null;
+        }
+        return fileStorageService.storeFile(request.getPhotoFile());
+    }
+
+    /**
+     * Supprime la photo d'une requête qui n'a pas abouti
+     */
+    private void deletePhoto(String photoFileName) {
+        if (photoFileName != null) {
+            fileStorageService.deleteFile(photoFileName);
+        }
+    }
+
+    private ResponseEntity<PriceDTO> imageProcessingBusy(ImageProcessingBusyException e) {
+        logger.warn("Price photo rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .build();
+    }
 }
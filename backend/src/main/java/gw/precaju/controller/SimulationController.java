@@ -2,6 +2,7 @@ package gw.precaju.controller;
 
 import gw.precaju.dto.CreateSimulationRequest;
 import gw.precaju.dto.SimulationDTO;
+import gw.precaju.security.AuthenticatedUser;
 import gw.precaju.service.SimulationService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,7 +37,7 @@ public class SimulationController {
             @Valid @RequestBody CreateSimulationRequest request,
             Authentication authentication) {
 
-        UUID userId = UUID.fromString(authentication.getName());
+        UUID userId = currentUserId(authentication);
         SimulationDTO simulation = simulationService.createSimulation(userId, request);
 
         return ResponseEntity.status(HttpStatus.CREATED).body(simulation);
@@ -47,7 +48,7 @@ public class SimulationController {
      */
     @GetMapping
     public ResponseEntity<List<SimulationDTO>> getAllSimulations(Authentication authentication) {
-        UUID userId = UUID.fromString(authentication.getName());
+        UUID userId = currentUserId(authentication);
         List<SimulationDTO> simulations = simulationService.getAllSimulationsByUser(userId);
 
         return ResponseEntity.ok(simulations);
@@ -61,7 +62,7 @@ public class SimulationController {
             @PageableDefault(size = 20) Pageable pageable,
             Authentication authentication) {
 
-        UUID userId = UUID.fromString(authentication.getName());
+        UUID userId = currentUserId(authentication);
         Page<SimulationDTO> simulations = simulationService.getSimulationsByUser(userId, pageable);
 
         return ResponseEntity.ok(simulations);
@@ -75,7 +76,7 @@ public class SimulationController {
             @PathVariable UUID id,
             Authentication authentication) {
 
-        UUID userId = UUID.fromString(authentication.getName());
+        UUID userId = currentUserId(authentication);
         SimulationDTO simulation = simulationService.getSimulationById(id, userId);
 
         return ResponseEntity.ok(simulation);
@@ -89,7 +90,7 @@ public class SimulationController {
             @PathVariable UUID id,
             Authentication authentication) {
 
-        UUID userId = UUID.fromString(authentication.getName());
+        UUID userId = currentUserId(authentication);
         simulationService.deleteSimulation(id, userId);
 
         return ResponseEntity.noContent().build();
@@ -100,7 +101,7 @@ public class SimulationController {
      */
     @GetMapping("/stats")
     public ResponseEntity<SimulationService.SimulationStatsDTO> getSimulationStats(Authentication authentication) {
-        UUID userId = UUID.fromString(authentication.getName());
+        UUID userId = currentUserId(authentication);
         SimulationService.SimulationStatsDTO stats = simulationService.getSimulationStats(userId);
 
         return ResponseEntity.ok(stats);
@@ -111,7 +112,7 @@ public class SimulationController {
      */
     @GetMapping("/profitable")
     public ResponseEntity<List<SimulationDTO>> getProfitableSimulations(Authentication authentication) {
-        UUID userId = UUID.fromString(authentication.getName());
+        UUID userId = currentUserId(authentication);
         List<SimulationDTO> simulations = simulationService.getProfitableSimulations(userId);
 
         return ResponseEntity.ok(simulations);
@@ -122,7 +123,7 @@ public class SimulationController {
      */
     @GetMapping("/loss-making")
     public ResponseEntity<List<SimulationDTO>> getLossMakingSimulations(Authentication authentication) {
-        UUID userId = UUID.fromString(authentication.getName());
+        UUID userId = currentUserId(authentication);
         List<SimulationDTO> simulations = simulationService.getLossMakingSimulations(userId);
 
         return ResponseEntity.ok(simulations);
@@ -135,5 +136,8 @@ public class SimulationController {
     public ResponseEntity<String> healthCheck() {
         return ResponseEntity.ok("Simulation service is running");
     }
-}
 
+    private static UUID currentUserId(Authentication authentication) {
+        return ((AuthenticatedUser) authentication.getPrincipal()).getId();
+    }
+}
@@ -1,25 +1,34 @@
 package gw.precaju.controller;
 
 import gw.precaju.dto.PriceDTO;
+import gw.precaju.dto.PriceEventDTO;
 import gw.precaju.dto.PriceStatsDTO;
-import gw.precaju.entity.User;
-import gw.precaju.repository.UserRepository;
-import gw.precaju.security.JwtTokenProvider;
-import gw.precaju.service.AuthService;
+import gw.precaju.security.StompPrincipal;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.handler.annotation.SendTo;
-import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.messaging.simp.annotation.SubscribeMapping;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Contrôleur WebSocket pour gérer les connexions et messages temps réel
@@ -29,62 +38,54 @@ public class WebSocketController {
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketController.class);
 
+    static final String REGION_TOPIC = "/topic/prices/region/";
+    static final String QUALITY_TOPIC = "/topic/prices/quality/";
+    private static final Pattern TOPIC_CODE = Pattern.compile("[A-Za-z0-9_-]{1,20}");
+
     private final SimpMessagingTemplate messagingTemplate;
-    private final AuthService authService;
-    private final JwtTokenProvider jwtTokenProvider;
-    private final UserRepository userRepository;
+
+    // Regroupement des événements de prix par topic région/qualité
+    private final long coalesceWindowMs;
+    private final int maxEventsPerFrame;
+    private final Map<String, Map<UUID, PriceEventDTO>> pendingFrames = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService coalesceScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ws-price-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public WebSocketController(SimpMessagingTemplate messagingTemplate,
-            AuthService authService,
-            JwtTokenProvider jwtTokenProvider,
-            UserRepository userRepository) {
+            @Value("${app.websocket.coalesce-window:PT0.5S}") Duration coalesceWindow,
+            @Value("${app.websocket.max-events-per-frame:100}") int maxEventsPerFrame) {
         this.messagingTemplate = messagingTemplate;
-        this.authService = authService;
-        this.jwtTokenProvider = jwtTokenProvider;
-        this.userRepository = userRepository;
+        this.coalesceWindowMs = coalesceWindow.toMillis();
+        this.maxEventsPerFrame = Math.max(1, maxEventsPerFrame);
     }
 
     /**
      * Gestion de la connexion WebSocket
-     * Authentifie l'utilisateur et envoie un message de bienvenue
+     * L'utilisateur est authentifié à la trame STOMP CONNECT (StompAuthChannelInterceptor)
      */
     @MessageMapping("/connect")
     @SendTo("/topic/connection")
-    public Map<String, Object> handleConnect(@Payload Map<String, String> payload,
-            SimpMessageHeaderAccessor headerAccessor) {
-        try {
-            String token = payload.get("token");
-            if (token != null && jwtTokenProvider.validateToken(token)) {
-                String username = jwtTokenProvider.getUsernameFromToken(token);
-                User user = userRepository.findByEmail(username).orElse(null);
-
-                if (user != null) {
-                    // Stocker l'utilisateur dans la session
-                    headerAccessor.getSessionAttributes().put("user", user);
-
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("type", "connection");
-                    response.put("status", "connected");
-                    response.put("user", Map.of(
-                            "id", user.getId().toString(),
-                            "fullName", user.getFullName(),
-                            "email", user.getEmail(),
-                            "role", user.getRole().toString()));
-                    response.put("timestamp", System.currentTimeMillis());
-
-                    logger.info("User {} connected via WebSocket", user.getEmail());
-                    return response;
-                }
-            }
-        } catch (Exception e) {
-            logger.error("Error during WebSocket connection", e);
+    public Map<String, Object> handleConnect(Principal principal) {
+        StompPrincipal user = stompPrincipal(principal);
+        if (user == null) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("type", "connection");
+            errorResponse.put("status", "error");
+            errorResponse.put("message", "Authentication failed");
+            return errorResponse;
         }
 
-        Map<String, Object> errorResponse = new HashMap<>();
-        errorResponse.put("type", "connection");
-        errorResponse.put("status", "error");
-        errorResponse.put("message", "Authentication failed");
-        return errorResponse;
+        Map<String, Object> response = new HashMap<>();
+        response.put("type", "connection");
+        response.put("status", "connected");
+        response.put("user", userSummary(user));
+        response.put("timestamp", System.currentTimeMillis());
+
+        logger.info("User {} connected via WebSocket", user.getId());
+        return response;
     }
 
     /**
@@ -92,8 +93,8 @@ public class WebSocketController {
      */
     @MessageMapping("/disconnect")
     @SendTo("/topic/connection")
-    public Map<String, Object> handleDisconnect(SimpMessageHeaderAccessor headerAccessor) {
-        User user = (User) headerAccessor.getSessionAttributes().get("user");
+    public Map<String, Object> handleDisconnect(Principal principal) {
+        StompPrincipal user = stompPrincipal(principal);
 
         Map<String, Object> response = new HashMap<>();
         response.put("type", "connection");
@@ -101,10 +102,8 @@ public class WebSocketController {
         response.put("timestamp", System.currentTimeMillis());
 
         if (user != null) {
-            response.put("user", Map.of(
-                    "id", user.getId().toString(),
-                    "email", user.getEmail()));
-            logger.info("User {} disconnected from WebSocket", user.getEmail());
+            response.put("user", Map.of("id", user.getName()));
+            logger.info("User {} disconnected from WebSocket", user.getId());
         }
 
         return response;
@@ -114,16 +113,16 @@ public class WebSocketController {
      * Souscription aux mises à jour de prix pour une région spécifique
      */
     @MessageMapping("/subscribe/region")
-    public void subscribeToRegion(@Payload Map<String, String> payload,
-            SimpMessageHeaderAccessor headerAccessor) {
+    public void subscribeToRegion(@Payload Map<String, String> payload, Principal principal) {
         try {
             String regionCode = payload.get("regionCode");
-            User user = (User) headerAccessor.getSessionAttributes().get("user");
+            StompPrincipal user = stompPrincipal(principal);
 
-            if (user != null && regionCode != null) {
-                // L'utilisateur sera automatiquement abonné au topic
-                // /topic/prices/region/{regionCode}
-                logger.info("User {} subscribed to region {}", user.getEmail(), regionCode);
+            if (user != null && isValidTopicCode(regionCode)) {
+                // Le client s'abonne lui-même (STOMP SUBSCRIBE) au topic renvoyé
+                sendToUser(user.getName(), "/queue/subscriptions",
+                        subscriptionMessage("region", regionCode, REGION_TOPIC + regionCode));
+                logger.debug("User {} subscribed to region {}", user.getId(), regionCode);
             }
         } catch (Exception e) {
             logger.error("Error subscribing to region", e);
@@ -134,16 +133,16 @@ public class WebSocketController {
      * Souscription aux mises à jour de prix pour une qualité spécifique
      */
     @MessageMapping("/subscribe/quality")
-    public void subscribeToQuality(@Payload Map<String, String> payload,
-            SimpMessageHeaderAccessor headerAccessor) {
+    public void subscribeToQuality(@Payload Map<String, String> payload, Principal principal) {
         try {
             String qualityCode = payload.get("qualityCode");
-            User user = (User) headerAccessor.getSessionAttributes().get("user");
+            StompPrincipal user = stompPrincipal(principal);
 
-            if (user != null && qualityCode != null) {
-                // L'utilisateur sera automatiquement abonné au topic
-                // /topic/prices/quality/{qualityCode}
-                logger.info("User {} subscribed to quality {}", user.getEmail(), qualityCode);
+            if (user != null && isValidTopicCode(qualityCode)) {
+                // Le client s'abonne lui-même (STOMP SUBSCRIBE) au topic renvoyé
+                sendToUser(user.getName(), "/queue/subscriptions",
+                        subscriptionMessage("quality", qualityCode, QUALITY_TOPIC + qualityCode));
+                logger.debug("User {} subscribed to quality {}", user.getId(), qualityCode);
             }
         } catch (Exception e) {
             logger.error("Error subscribing to quality", e);
@@ -154,15 +153,10 @@ public class WebSocketController {
      * Souscription aux statistiques globales
      */
     @MessageMapping("/subscribe/stats")
-    public void subscribeToStats(SimpMessageHeaderAccessor headerAccessor) {
-        try {
-            User user = (User) headerAccessor.getSessionAttributes().get("user");
-
-            if (user != null) {
-                logger.info("User {} subscribed to statistics", user.getEmail());
-            }
-        } catch (Exception e) {
-            logger.error("Error subscribing to stats", e);
+    public void subscribeToStats(Principal principal) {
+        StompPrincipal user = stompPrincipal(principal);
+        if (user != null) {
+            logger.info("User {} subscribed to statistics", user.getId());
         }
     }
 
@@ -170,8 +164,8 @@ public class WebSocketController {
      * Ping/Pong pour maintenir la connexion
      */
     @MessageMapping("/ping")
-    @SendTo("/user/queue/pong")
-    public Map<String, Object> handlePing(SimpMessageHeaderAccessor headerAccessor) {
+    @SendToUser("/queue/pong")
+    public Map<String, Object> handlePing() {
         Map<String, Object> response = new HashMap<>();
         response.put("type", "pong");
         response.put("timestamp", System.currentTimeMillis());
@@ -186,12 +180,7 @@ public class WebSocketController {
      * Envoyer un nouveau prix à tous les utilisateurs
      */
     public void broadcastNewPrice(PriceDTO price) {
-        Map<String, Object> message = new HashMap<>();
-        message.put("type", "new_price");
-        message.put("data", price);
-        message.put("timestamp", System.currentTimeMillis());
-
-        messagingTemplate.convertAndSend("/topic/prices/new", message);
+        publishPriceEvent("new_price", "/topic/prices/new", price);
         logger.info("Broadcasted new price: {}", price.getId());
     }
 
@@ -199,12 +188,7 @@ public class WebSocketController {
      * Envoyer une mise à jour de prix à tous les utilisateurs
      */
     public void broadcastPriceUpdate(PriceDTO price) {
-        Map<String, Object> message = new HashMap<>();
-        message.put("type", "price_update");
-        message.put("data", price);
-        message.put("timestamp", System.currentTimeMillis());
-
-        messagingTemplate.convertAndSend("/topic/prices/update", message);
+        publishPriceEvent("price_update", "/topic/prices/update", price);
         logger.info("Broadcasted price update: {}", price.getId());
     }
 
@@ -212,13 +196,104 @@ public class WebSocketController {
      * Envoyer une vérification de prix à tous les utilisateurs
      */
     public void broadcastPriceVerification(PriceDTO price) {
+        publishPriceEvent("price_verification", "/topic/prices/verification", price);
+        logger.info("Broadcasted price verification: {}", price.getId());
+    }
+
+    /**
+     * Diffuse l'événement allégé sur le topic global (un message par événement)
+     * et le met en attente pour les topics de sa région et de sa qualité, où les
+     * rafales sont regroupées en une seule trame tableau
+     */
+    private void publishPriceEvent(String type, String globalTopic, PriceDTO price) {
+        PriceEventDTO event = PriceEventDTO.from(type, price);
+
         Map<String, Object> message = new HashMap<>();
-        message.put("type", "price_verification");
-        message.put("data", price);
+        message.put("type", type);
+        message.put("data", event);
         message.put("timestamp", System.currentTimeMillis());
+        messagingTemplate.convertAndSend(globalTopic, message);
 
-        messagingTemplate.convertAndSend("/topic/prices/verification", message);
-        logger.info("Broadcasted price verification: {}", price.getId());
+        if (isValidTopicCode(event.getRegion())) {
+            enqueueFrame(REGION_TOPIC + event.getRegion(), event);
+        }
+        if (isValidTopicCode(event.getQuality())) {
+            enqueueFrame(QUALITY_TOPIC + event.getQuality(), event);
+        }
+    }
+
+    private void enqueueFrame(String destination, PriceEventDTO event) {
+        if (coalesceWindowMs <= 0) {
+            sendFrame(destination, List.of(event));
+            return;
+        }
+        boolean[] opened = { false };
+        pendingFrames.compute(destination, (d, events) -> {
+            if (events == null) {
+                events = new LinkedHashMap<>();
+                opened[0] = true;
+            }
+            // Un même prix n'apparaît qu'une fois par trame, avec son dernier état
+            events.remove(event.getId());
+            events.put(event.getId(), event);
+            return events;
+        });
+        if (opened[0]) {
+            coalesceScheduler.schedule(() -> flushFrame(destination), coalesceWindowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushFrame(String destination) {
+        Map<UUID, PriceEventDTO> events = pendingFrames.remove(destination);
+        if (events == null || events.isEmpty()) {
+            return;
+        }
+        try {
+            List<PriceEventDTO> all = new ArrayList<>(events.values());
+            for (int i = 0; i < all.size(); i += maxEventsPerFrame) {
+                sendFrame(destination, all.subList(i, Math.min(all.size(), i + maxEventsPerFrame)));
+            }
+        } catch (Exception e) {
+            logger.error("Error flushing price events to {}", destination, e);
+        }
+    }
+
+    private void sendFrame(String destination, List<PriceEventDTO> events) {
+        Map<String, Object> frame = new HashMap<>();
+        frame.put("type", "price_events");
+        frame.put("events", events);
+        frame.put("timestamp", System.currentTimeMillis());
+        messagingTemplate.convertAndSend(destination, frame);
+    }
+
+    private static StompPrincipal stompPrincipal(Principal principal) {
+        return principal instanceof StompPrincipal user ? user : null;
+    }
+
+    private static Map<String, Object> userSummary(StompPrincipal user) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("id", user.getName());
+        summary.put("role", user.getRole().toString());
+        summary.put("language", user.getLanguage());
+        return summary;
+    }
+
+    private static boolean isValidTopicCode(String code) {
+        return code != null && TOPIC_CODE.matcher(code).matches();
+    }
+
+    private static Map<String, Object> subscriptionMessage(String kind, String code, String topic) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", "subscription");
+        message.put(kind, code);
+        message.put("topic", topic);
+        message.put("timestamp", System.currentTimeMillis());
+        return message;
+    }
+
+    @PreDestroy
+    public void shutdownCoalescer() {
+        coalesceScheduler.shutdown();
     }
 
     /**
@@ -0,0 +1,63 @@
+package gw.precaju.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Page d'une pagination par clé : pas de total, un curseur opaque vers la page
+ * suivante (null sur la dernière page)
+ */
+public class CursorPageResponse<T> {
+
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+    private boolean hasNext;
+
+    // Constructors
+    public CursorPageResponse() {}
+
+    public CursorPageResponse(List<T> content, int size, String nextCursor) {
+        this.content = content;
+        this.size = size;
+        this.nextCursor = nextCursor;
+        this.hasNext = nextCursor != null;
+    }
+
+    public <R> CursorPageResponse<R> map(Function<? super T, ? extends R> mapper) {
+        return new CursorPageResponse<>(content.stream().<R>map(mapper).toList(), size, nextCursor);
+    }
+
+    // Getters and Setters
+    public List<T> getContent() {
+        return content;
+    }
+
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+}
@@ -20,6 +20,7 @@ public class ExportateurDTO {
     private LocalDate dateCertification;
     private LocalDate dateExpiration;
     private StatutType statut;
+    private int statutVersion;
     private Instant createdAt;
     private Instant updatedAt;
     private boolean actif;
@@ -138,6 +139,14 @@ public class ExportateurDTO {
         this.statut = statut;
     }
 
+    public int getStatutVersion() {
+        return statutVersion;
+    }
+
+    public void setStatutVersion(int statutVersion) {
+        this.statutVersion = statutVersion;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,147 @@
+package gw.precaju.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class ExportateurImportResultDTO {
+    private boolean dryRun;
+    private int totalRows;
+    private int createdCount;
+    private int rejectedCount;
+    private List<RowResult> rows = new ArrayList<>();
+
+    // Constructors
+    public ExportateurImportResultDTO() {
+    }
+
+    public ExportateurImportResultDTO(boolean dryRun, List<RowResult> rows) {
+        this.dryRun = dryRun;
+        this.rows = rows;
+        this.totalRows = rows.size();
+        this.rejectedCount = (int) rows.stream().filter(r -> RowResult.REJECTED.equals(r.getResult())).count();
+        this.createdCount = (int) rows.stream().filter(r -> RowResult.CREATED.equals(r.getResult())).count();
+    }
+
+    // Getters and Setters
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public int getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(int totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    public void setCreatedCount(int createdCount) {
+        this.createdCount = createdCount;
+    }
+
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public void setRejectedCount(int rejectedCount) {
+        this.rejectedCount = rejectedCount;
+    }
+
+    public List<RowResult> getRows() {
+        return rows;
+    }
+
+    public void setRows(List<RowResult> rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Résultat de l'import pour une ligne du fichier
+     */
+    public static class RowResult {
+        public static final String CREATED = "CREATED";
+        public static final String VALID = "VALID";
+        public static final String REJECTED = "REJECTED";
+
+        private int rowIndex;
+        private String numeroAgrement;
+        private String result;
+        private List<String> errors = new ArrayList<>();
+        private UUID exportateurId;
+        private String qrCodeToken;
+
+        public RowResult() {
+        }
+
+        public RowResult(int rowIndex, String numeroAgrement) {
+            this.rowIndex = rowIndex;
+            this.numeroAgrement = numeroAgrement;
+        }
+
+        public void reject(String error) {
+            this.result = REJECTED;
+            this.errors.add(error);
+        }
+
+        public boolean isRejected() {
+            return REJECTED.equals(result);
+        }
+
+        public int getRowIndex() {
+            return rowIndex;
+        }
+
+        public void setRowIndex(int rowIndex) {
+            this.rowIndex = rowIndex;
+        }
+
+        public String getNumeroAgrement() {
+            return numeroAgrement;
+        }
+
+        public void setNumeroAgrement(String numeroAgrement) {
+            this.numeroAgrement = numeroAgrement;
+        }
+
+        public String getResult() {
+            return result;
+        }
+
+        public void setResult(String result) {
+            this.result = result;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public void setErrors(List<String> errors) {
+            this.errors = errors;
+        }
+
+        public UUID getExportateurId() {
+            return exportateurId;
+        }
+
+        public void setExportateurId(UUID exportateurId) {
+            this.exportateurId = exportateurId;
+        }
+
+        public String getQrCodeToken() {
+            return qrCodeToken;
+        }
+
+        public void setQrCodeToken(String qrCodeToken) {
+            this.qrCodeToken = qrCodeToken;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package gw.precaju.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Événement de prix allégé diffusé par WebSocket (sans utilisateurs ni
+ * photo) ; les libellés de région et de qualité restent inclus pour les
+ * notifications affichées au client, qui recharge le détail via l'API si besoin.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PriceEventDTO {
+
+    private String type;
+    private UUID id;
+    private String region;
+    private String regionName;
+    private String quality;
+    private String qualityName;
+    private BigDecimal priceFcfa;
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate recordedDate;
+
+    private Boolean verified;
+
+    public PriceEventDTO() {}
+
+    public static PriceEventDTO from(String type, PriceDTO price) {
+        PriceEventDTO event = new PriceEventDTO();
+        event.type = type;
+        event.id = price.getId();
+        event.region = price.getRegion();
+        event.regionName = price.getRegionName();
+        event.quality = price.getQuality();
+        event.qualityName = price.getQualityName();
+        event.priceFcfa = price.getPriceFcfa();
+        event.recordedDate = price.getRecordedDate();
+        event.verified = price.getVerified();
+        return event;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    public String getRegionName() {
+        return regionName;
+    }
+
+    public void setRegionName(String regionName) {
+        this.regionName = regionName;
+    }
+
+    public String getQuality() {
+        return quality;
+    }
+
+    public void setQuality(String quality) {
+        this.quality = quality;
+    }
+
+    public String getQualityName() {
+        return qualityName;
+    }
+
+    public void setQualityName(String qualityName) {
+        this.qualityName = qualityName;
+    }
+
+    public BigDecimal getPriceFcfa() {
+        return priceFcfa;
+    }
+
+    public void setPriceFcfa(BigDecimal priceFcfa) {
+        this.priceFcfa = priceFcfa;
+    }
+
+    public LocalDate getRecordedDate() {
+        return recordedDate;
+    }
+
+    public void setRecordedDate(LocalDate recordedDate) {
+        this.recordedDate = recordedDate;
+    }
+
+    public Boolean getVerified() {
+        return verified;
+    }
+
+    public void setVerified(Boolean verified) {
+        this.verified = verified;
+    }
+}
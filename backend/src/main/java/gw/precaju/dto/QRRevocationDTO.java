@@ -0,0 +1,50 @@
+package gw.precaju.dto;
+
+import gw.precaju.entity.enums.StatutType;
+
+import java.util.UUID;
+
+/**
+ * Entrée de la liste de révocation des tokens QR signés : un token n'est valide
+ * que si sa version de statut est égale à {@code statutVersion} et que le statut est ACTIF
+ */
+public class QRRevocationDTO {
+    private UUID exportateurId;
+    private int statutVersion;
+    private StatutType statut;
+
+    // Constructors
+    public QRRevocationDTO() {
+    }
+
+    public QRRevocationDTO(UUID exportateurId, int statutVersion, StatutType statut) {
+        this.exportateurId = exportateurId;
+        this.statutVersion = statutVersion;
+        this.statut = statut;
+    }
+
+    // Getters and Setters
+    public UUID getExportateurId() {
+        return exportateurId;
+    }
+
+    public void setExportateurId(UUID exportateurId) {
+        this.exportateurId = exportateurId;
+    }
+
+    public int getStatutVersion() {
+        return statutVersion;
+    }
+
+    public void setStatutVersion(int statutVersion) {
+        this.statutVersion = statutVersion;
+    }
+
+    public StatutType getStatut() {
+        return statut;
+    }
+
+    public void setStatut(StatutType statut) {
+        this.statut = statut;
+    }
+}
@@ -74,6 +74,10 @@ public class VerificationResultDTO {
         return new VerificationResultDTO(false, "Token QR code invalide", "INVALID_TOKEN");
     }
 
+    public static VerificationResultDTO revoked() {
+        return new VerificationResultDTO(false, "Token QR code révoqué", "REVOKED");
+    }
+
     // Getters and Setters
     public boolean isSuccess() {
         return success;
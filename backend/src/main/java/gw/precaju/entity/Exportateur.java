@@ -55,6 +55,9 @@ public class Exportateur {
     @Column(name = "statut")
     private StatutType statut = StatutType.ACTIF;
 
+    @Column(name = "statut_version", nullable = false)
+    private int statutVersion = 0;
+
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
@@ -96,6 +99,13 @@ public class Exportateur {
         return StatutType.SUSPENDU.equals(this.statut);
     }
 
+    /**
+     * Invalide les tokens QR signés émis avec la version précédente
+     */
+    public void incrementStatutVersion() {
+        this.statutVersion++;
+    }
+
     // Getters and Setters
     public UUID getId() {
         return id;
@@ -185,6 +195,14 @@ public class Exportateur {
         this.statut = statut;
     }
 
+    public int getStatutVersion() {
+        return statutVersion;
+    }
+
+    public void setStatutVersion(int statutVersion) {
+        this.statutVersion = statutVersion;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -35,7 +35,7 @@ public class NotificationEnvoyee {
     @Column(name = "nouveau_prix", precision = 10, scale = 2, nullable = false)
     private BigDecimal nouveauPrix;
 
-    @Column(name = "variation_pourcentage", precision = 5, scale = 2, nullable = false)
+    @Column(name = "variation_pourcentage", precision = 7, scale = 2, nullable = false)
     private BigDecimal variationPourcentage;
 
     @Column(name = "message", nullable = false, columnDefinition = "TEXT")
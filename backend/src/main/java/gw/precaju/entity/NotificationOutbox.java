@@ -0,0 +1,64 @@
+package gw.precaju.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "notification_outbox")
+@Data
+@NoArgsConstructor
+public class NotificationOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "prix_id", nullable = false)
+    private UUID prixId;
+
+    @Column(name = "region_code", nullable = false, length = 10)
+    private String regionCode;
+
+    @Column(name = "quality_grade", nullable = false, length = 20)
+    private String qualityGrade;
+
+    @Column(name = "ancien_prix", precision = 10, scale = 2, nullable = false)
+    private BigDecimal ancienPrix;
+
+    @Column(name = "nouveau_prix", precision = 10, scale = 2, nullable = false)
+    private BigDecimal nouveauPrix;
+
+    @Column(name = "variation_pourcentage", precision = 7, scale = 2, nullable = false)
+    private BigDecimal variationPourcentage;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut", nullable = false, length = 20)
+    private OutboxStatut statut = OutboxStatut.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "available_at", nullable = false)
+    private ZonedDateTime availableAt;
+
+    @Column(name = "locked_until")
+    private ZonedDateTime lockedUntil;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private ZonedDateTime createdAt;
+
+    @Column(name = "processed_at")
+    private ZonedDateTime processedAt;
+
+    public enum OutboxStatut {
+        PENDING, PROCESSING, DONE, FAILED
+    }
+}
@@ -0,0 +1,75 @@
+package gw.precaju.entity;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Préférences d'un utilisateur, stockées en JSONB dans
+ * {@code users.notification_preferences}.
+ *
+ * Les champs absents restent null : les valeurs par défaut sont appliquées à la
+ * lecture, et une instance partiellement remplie sert de patch JSONB (seules les
+ * clés renseignées sont sérialisées). Les clés inconnues sont conservées.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NotificationPreferences {
+
+    // Préférences générales
+    private String language;
+    private String theme;
+    private String timezone;
+    private Boolean offlineMode;
+    private Boolean autoSync;
+    private Map<String, Object> customSettings;
+
+    // Notifications
+    private Boolean priceAlerts;
+    private Boolean verificationNotifications;
+    private Boolean systemNotifications;
+    private Boolean emailNotifications;
+    private Boolean pushNotifications;
+    private Integer alertThreshold;
+    private String frequency;
+    private Boolean quietHours;
+    private String quietStartTime;
+    private String quietEndTime;
+    private List<String> alertRegions;
+    private List<String> alertQualities;
+
+    // Abonnement push
+    @JsonProperty("prix_variations")
+    private Boolean prixVariations;
+
+    @JsonProperty("seuil_perso")
+    private BigDecimal seuilPerso;
+
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<String, Object> other = new LinkedHashMap<>();
+
+    @JsonAnyGetter
+    public Map<String, Object> getOther() {
+        return other;
+    }
+
+    @JsonAnySetter
+    public void setOther(String key, Object value) {
+        other.put(key, value);
+    }
+}
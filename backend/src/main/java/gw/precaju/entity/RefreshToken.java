@@ -2,23 +2,33 @@ package gw.precaju.entity;
 
 import jakarta.persistence.*;
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.domain.Persistable;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.Instant;
 import java.util.Objects;
 import java.util.UUID;
 
+/**
+ * Famille de refresh tokens : l'id de la ligne est porté par chaque jeton de la
+ * famille, seul le hash du dernier jeton émis est conservé
+ */
 @Entity
 @Table(name = "refresh_tokens")
 @EntityListeners(AuditingEntityListener.class)
-public class RefreshToken {
+public class RefreshToken implements Persistable<UUID> {
 
     @Id
-    @GeneratedValue
     private UUID id;
 
-    @Column(name = "token", unique = true, nullable = false)
-    private String token;
+    @Column(name = "token_hash", unique = true, nullable = false, length = 64)
+    private String tokenHash;
+
+    @Column(name = "previous_token_hash", length = 64)
+    private String previousTokenHash;
+
+    @Column(name = "rotated_at")
+    private Instant rotatedAt;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
@@ -31,17 +41,24 @@ public class RefreshToken {
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
+    // Id attribué à la création : évite le SELECT de merge() avant l'INSERT
+    @Transient
+    private boolean newFamily;
+
     // Constructors
     public RefreshToken() {
     }
 
-    public RefreshToken(String token, User user, Instant expiresAt) {
-        this.token = token;
+    public RefreshToken(UUID id, String tokenHash, User user, Instant expiresAt) {
+        this.id = id;
+        this.tokenHash = tokenHash;
         this.user = user;
         this.expiresAt = expiresAt;
+        this.newFamily = true;
     }
 
     // Getters and Setters
+    @Override
     public UUID getId() {
         return id;
     }
@@ -50,12 +67,28 @@ public class RefreshToken {
         this.id = id;
     }
 
-    public String getToken() {
-        return token;
+    public String getTokenHash() {
+        return tokenHash;
     }
 
-    public void setToken(String token) {
-        this.token = token;
+    public void setTokenHash(String tokenHash) {
+        this.tokenHash = tokenHash;
+    }
+
+    public String getPreviousTokenHash() {
+        return previousTokenHash;
+    }
+
+    public void setPreviousTokenHash(String previousTokenHash) {
+        this.previousTokenHash = previousTokenHash;
+    }
+
+    public Instant getRotatedAt() {
+        return rotatedAt;
+    }
+
+    public void setRotatedAt(Instant rotatedAt) {
+        this.rotatedAt = rotatedAt;
     }
 
     public User getUser() {
@@ -82,11 +115,32 @@ public class RefreshToken {
         this.createdAt = createdAt;
     }
 
+    @Override
+    public boolean isNew() {
+        return newFamily;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.newFamily = false;
+    }
+
     // Helper methods
     public boolean isExpired() {
         return Instant.now().isAfter(expiresAt);
     }
 
+    /**
+     * Remplace le jeton courant de la famille par un nouveau
+     */
+    public void rotate(String newTokenHash, Instant newExpiresAt) {
+        this.previousTokenHash = this.tokenHash;
+        this.tokenHash = newTokenHash;
+        this.rotatedAt = Instant.now();
+        this.expiresAt = newExpiresAt;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -110,21 +164,3 @@ public class RefreshToken {
                 '}';
     }
 }
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
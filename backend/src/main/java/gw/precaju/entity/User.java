@@ -2,7 +2,11 @@ package gw.precaju.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import gw.precaju.entity.enums.UserRole;
+import gw.precaju.security.UserCacheInvalidationListener;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -15,7 +19,7 @@ import java.util.*;
 
 @Entity
 @Table(name = "users")
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, UserCacheInvalidationListener.class })
 public class User implements UserDetails {
 
     @Id
@@ -41,11 +45,15 @@ public class User implements UserDetails {
     @Column(name = "reputation_score")
     private Integer reputationScore = 0;
 
-    @Column(name = "preferred_regions", columnDefinition = "TEXT")
-    private String preferredRegions = "[]";
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "preferred_regions", columnDefinition = "jsonb")
+    private List<String> preferredRegions = new ArrayList<>();
 
-    @Column(name = "notification_preferences", columnDefinition = "TEXT")
-    private String notificationPreferences = "{}";
+    // Jamais réécrit par le flush : modifié par fusion JSONB (UserService.patchNotificationPreferences)
+    @Immutable
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "notification_preferences", columnDefinition = "jsonb", updatable = false)
+    private NotificationPreferences notificationPreferences = new NotificationPreferences();
 
     @Column(name = "push_subscription", columnDefinition = "TEXT")
     private String pushSubscription;
@@ -59,7 +67,8 @@ public class User implements UserDetails {
     @Column(name = "active")
     private Boolean active = true;
 
-    @Column(name = "last_login_at")
+    // Écrit en lot par LastLoginTracker, jamais par le flush de l'entité
+    @Column(name = "last_login_at", updatable = false)
     private Instant lastLoginAt;
 
     @Column(name = "preferred_language", length = 5)
@@ -186,19 +195,19 @@ public class User implements UserDetails {
         this.reputationScore = reputationScore;
     }
 
-    public String getPreferredRegions() {
+    public List<String> getPreferredRegions() {
         return preferredRegions;
     }
 
-    public void setPreferredRegions(String preferredRegions) {
+    public void setPreferredRegions(List<String> preferredRegions) {
         this.preferredRegions = preferredRegions;
     }
 
-    public String getNotificationPreferences() {
+    public NotificationPreferences getNotificationPreferences() {
         return notificationPreferences;
     }
 
-    public void setNotificationPreferences(String notificationPreferences) {
+    public void setNotificationPreferences(NotificationPreferences notificationPreferences) {
         this.notificationPreferences = notificationPreferences;
     }
 
@@ -283,10 +292,6 @@ public class User implements UserDetails {
     }
 
     // Helper methods
-    public void updateLastLogin() {
-        this.lastLoginAt = Instant.now();
-    }
-
     public boolean isAdmin() {
         return role == UserRole.ADMIN;
     }
@@ -0,0 +1,64 @@
+package gw.precaju.event;
+
+import gw.precaju.entity.Exportateur;
+import gw.precaju.entity.enums.ExportateurType;
+import gw.precaju.entity.enums.StatutType;
+
+import java.util.UUID;
+
+/**
+ * Événement publié après la création, la modification ou la suppression d'un exportateur
+ */
+public class ExportateurChangedEvent {
+
+    private final UUID exportateurId;
+    private final String nom;
+    private final String regionCode;
+    private final ExportateurType type;
+    private final StatutType statut;
+    private final boolean deleted;
+
+    private ExportateurChangedEvent(UUID exportateurId, String nom, String regionCode, ExportateurType type,
+                                    StatutType statut, boolean deleted) {
+        this.exportateurId = exportateurId;
+        this.nom = nom;
+        this.regionCode = regionCode;
+        this.type = type;
+        this.statut = statut;
+        this.deleted = deleted;
+    }
+
+    public static ExportateurChangedEvent saved(Exportateur exportateur) {
+        return new ExportateurChangedEvent(exportateur.getId(), exportateur.getNom(),
+                exportateur.getRegion() != null ? exportateur.getRegion().getCode() : null,
+                exportateur.getType(), exportateur.getStatut(), false);
+    }
+
+    public static ExportateurChangedEvent deleted(UUID exportateurId) {
+        return new ExportateurChangedEvent(exportateurId, null, null, null, null, true);
+    }
+
+    public UUID getExportateurId() {
+        return exportateurId;
+    }
+
+    public String getNom() {
+        return nom;
+    }
+
+    public String getRegionCode() {
+        return regionCode;
+    }
+
+    public ExportateurType getType() {
+        return type;
+    }
+
+    public StatutType getStatut() {
+        return statut;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+}
@@ -0,0 +1,43 @@
+package gw.precaju.event;
+
+import gw.precaju.entity.enums.StatutType;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Événement publié lorsqu'un lot d'exportateurs change de statut
+ */
+public class ExportateurStatusChangedEvent {
+
+    private final List<UUID> exportateurIds;
+    private final StatutType previousStatut;
+    private final StatutType newStatut;
+
+    public ExportateurStatusChangedEvent(List<UUID> exportateurIds, StatutType previousStatut, StatutType newStatut) {
+        this.exportateurIds = List.copyOf(exportateurIds);
+        this.previousStatut = previousStatut;
+        this.newStatut = newStatut;
+    }
+
+    public List<UUID> getExportateurIds() {
+        return exportateurIds;
+    }
+
+    public StatutType getPreviousStatut() {
+        return previousStatut;
+    }
+
+    public StatutType getNewStatut() {
+        return newStatut;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportateurStatusChangedEvent{" +
+                "count=" + exportateurIds.size() +
+                ", previousStatut=" + previousStatut +
+                ", newStatut=" + newStatut +
+                '}';
+    }
+}
@@ -0,0 +1,25 @@
+package gw.precaju.event;
+
+import java.util.UUID;
+
+/**
+ * Événement publié après l'enregistrement d'une vérification de QR code
+ */
+public class VerificationLoggedEvent {
+
+    private final UUID exportateurId;
+    private final String result;
+
+    public VerificationLoggedEvent(UUID exportateurId, String result) {
+        this.exportateurId = exportateurId;
+        this.result = result;
+    }
+
+    public UUID getExportateurId() {
+        return exportateurId;
+    }
+
+    public String getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,12 @@
+package gw.precaju.exception;
+
+/**
+ * Refresh token refusé (inconnu, expiré, déjà utilisé).
+ * Ne provoque pas de rollback : la révocation de la famille doit être conservée.
+ */
+public class InvalidRefreshTokenException extends RuntimeException {
+
+    public InvalidRefreshTokenException(String message) {
+        super(message);
+    }
+}
@@ -25,6 +25,7 @@ public interface ExportateurMapper {
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
     @Mapping(target = "verificationLogs", ignore = true)
+    @Mapping(target = "statutVersion", ignore = true)
     Exportateur toEntity(ExportateurDTO dto);
 
     @Mapping(source = "region.code", target = "regionCode")
@@ -1,22 +1,19 @@
 package gw.precaju.mapper;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import gw.precaju.dto.UserDTO;
 import gw.precaju.entity.User;
+import gw.precaju.service.LastLoginTracker;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
-import java.util.List;
 
 @Component
 public class UserMapper {
 
-    private final ObjectMapper objectMapper;
+    private final LastLoginTracker lastLoginTracker;
 
-    public UserMapper(ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
+    public UserMapper(LastLoginTracker lastLoginTracker) {
+        this.lastLoginTracker = lastLoginTracker;
     }
 
     public UserDTO toDTO(User user) {
@@ -35,22 +32,11 @@ public class UserMapper {
         dto.setActive(user.getActive());
         dto.setPreferredLanguage(user.getPreferredLanguage());
         dto.setCreatedAt(user.getCreatedAt());
-        dto.setLastLoginAt(user.getLastLoginAt());
+        dto.setLastLoginAt(lastLoginTracker.effectiveLastLogin(user.getId(), user.getLastLoginAt()));
 
-        // Parse preferred regions JSON
-        try {
-            if (user.getPreferredRegions() != null) {
-                List<String> regions = objectMapper.readValue(
-                        user.getPreferredRegions(),
-                        new TypeReference<List<String>>() {
-                        });
-                dto.setPreferredRegions(regions);
-            } else {
-                dto.setPreferredRegions(new ArrayList<>());
-            }
-        } catch (JsonProcessingException e) {
-            dto.setPreferredRegions(new ArrayList<>());
-        }
+        dto.setPreferredRegions(user.getPreferredRegions() != null
+                ? new ArrayList<>(user.getPreferredRegions())
+                : new ArrayList<>());
 
         return dto;
     }
@@ -73,17 +59,9 @@ public class UserMapper {
         user.setCreatedAt(dto.getCreatedAt());
         user.setLastLoginAt(dto.getLastLoginAt());
 
-        // Convert preferred regions to JSON
-        try {
-            if (dto.getPreferredRegions() != null) {
-                String regionsJson = objectMapper.writeValueAsString(dto.getPreferredRegions());
-                user.setPreferredRegions(regionsJson);
-            } else {
-                user.setPreferredRegions("[]");
-            }
-        } catch (JsonProcessingException e) {
-            user.setPreferredRegions("[]");
-        }
+        user.setPreferredRegions(dto.getPreferredRegions() != null
+                ? new ArrayList<>(dto.getPreferredRegions())
+                : new ArrayList<>());
 
         return user;
     }
@@ -100,12 +78,7 @@ public class UserMapper {
             user.setPhone(dto.getPhone());
         }
         if (dto.getPreferredRegions() != null) {
-            try {
-                String regionsJson = objectMapper.writeValueAsString(dto.getPreferredRegions());
-                user.setPreferredRegions(regionsJson);
-            } catch (JsonProcessingException e) {
-                // Keep existing value
-            }
+            user.setPreferredRegions(new ArrayList<>(dto.getPreferredRegions()));
         }
         if (dto.getPreferredLanguage() != null) {
             user.setPreferredLanguage(dto.getPreferredLanguage());
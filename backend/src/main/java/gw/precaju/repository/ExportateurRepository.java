@@ -1,5 +1,6 @@
 package gw.precaju.repository;
 
+import gw.precaju.dto.QRRevocationDTO;
 import gw.precaju.entity.Exportateur;
 import gw.precaju.entity.enums.ExportateurType;
 import gw.precaju.entity.enums.StatutType;
@@ -7,13 +8,16 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
@@ -133,12 +137,35 @@ public interface ExportateurRepository extends JpaRepository<Exportateur, UUID>,
         @Query("SELECT e FROM Exportateur e WHERE e.dateExpiration < :today AND e.statut != 'EXPIRE' ORDER BY e.dateExpiration DESC")
         List<Exportateur> findExpired(@Param("today") LocalDate today);
 
+        /**
+         * Récupère id et token QR des exportateurs échus encore dans un statut donné
+         */
+        @Query("SELECT e.id, e.qrCodeToken FROM Exportateur e WHERE e.dateExpiration < :today AND e.statut = :statut")
+        List<Object[]> findOverdueIdAndTokenByStatut(@Param("today") LocalDate today,
+                        @Param("statut") StatutType statut);
+
+        /**
+         * Passe en une seule requête les exportateurs échus d'un statut à un autre
+         */
+        @Modifying(clearAutomatically = true)
+        @Query("UPDATE Exportateur e SET e.statut = :newStatut, e.statutVersion = e.statutVersion + 1 " +
+                        "WHERE e.dateExpiration < :today AND e.statut = :currentStatut")
+        int updateOverdueStatut(@Param("today") LocalDate today,
+                        @Param("currentStatut") StatutType currentStatut,
+                        @Param("newStatut") StatutType newStatut);
+
         /**
          * Compte les exportateurs par région et statut
          */
         @Query("SELECT e.region.code, e.statut, COUNT(e) FROM Exportateur e GROUP BY e.region.code, e.statut ORDER BY e.region.code, e.statut")
         List<Object[]> countByRegionAndStatut();
 
+        /**
+         * Projection minimale de tous les exportateurs pour la reconstruction des statistiques
+         */
+        @Query("SELECT e.id, e.nom, e.region.code, e.type, e.statut FROM Exportateur e")
+        List<Object[]> findStatisticsRows();
+
         /**
          * Compte les exportateurs par type et statut
          */
@@ -163,4 +190,23 @@ public interface ExportateurRepository extends JpaRepository<Exportateur, UUID>,
          */
         boolean existsByQrCodeToken(String qrCodeToken);
 
+        /**
+         * Retourne, parmi les numéros d'agrément donnés, ceux déjà enregistrés (import en masse)
+         */
+        @Query("SELECT e.numeroAgrement FROM Exportateur e WHERE e.numeroAgrement IN :numeros")
+        Set<String> findExistingNumerosAgrement(@Param("numeros") Collection<String> numeros);
+
+        /**
+         * Retourne, parmi les tokens QR donnés, ceux déjà attribués (import en masse)
+         */
+        @Query("SELECT e.qrCodeToken FROM Exportateur e WHERE e.qrCodeToken IN :tokens")
+        Set<String> findExistingQrCodeTokens(@Param("tokens") Collection<String> tokens);
+
+        /**
+         * Liste de révocation des tokens QR signés (exportateurs modifiés ou non actifs)
+         */
+        @Query("SELECT new gw.precaju.dto.QRRevocationDTO(e.id, e.statutVersion, e.statut) FROM Exportateur e " +
+                        "WHERE e.statutVersion > 0 OR e.statut <> :actif")
+        List<QRRevocationDTO> findRevocations(@Param("actif") StatutType actif);
+
 }
@@ -11,10 +11,12 @@ import org.springframework.stereotype.Repository;
 
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
-public interface NotificationEnvoyeeRepository extends JpaRepository<NotificationEnvoyee, UUID> {
+public interface NotificationEnvoyeeRepository extends JpaRepository<NotificationEnvoyee, UUID>,
+        NotificationEnvoyeeRepositoryCustom {
 
     Page<NotificationEnvoyee> findByUtilisateurOrderByCreatedAtDesc(User user, Pageable pageable);
 
@@ -24,6 +26,10 @@ public interface NotificationEnvoyeeRepository extends JpaRepository<Notificatio
     List<NotificationEnvoyee> findRecentNotificationsForUser(@Param("user") User user,
             @Param("since") ZonedDateTime since);
 
+    @Query("SELECT ne.utilisateur.id FROM NotificationEnvoyee ne WHERE ne.prix.id = :prixId AND ne.statut = :statut")
+    Set<UUID> findUserIdsByPrixIdAndStatut(@Param("prixId") UUID prixId,
+            @Param("statut") NotificationEnvoyee.NotificationStatut statut);
+
     long countByUtilisateurAndStatut(User user, NotificationEnvoyee.NotificationStatut statut);
 
     @Query("SELECT COUNT(ne) FROM NotificationEnvoyee ne WHERE ne.utilisateur = :user AND ne.createdAt >= :since")
@@ -0,0 +1,16 @@
+package gw.precaju.repository;
+
+import gw.precaju.entity.NotificationEnvoyee;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+
+public interface NotificationEnvoyeeRepositoryCustom {
+
+    /**
+     * Insère en lot (JDBC batch) les résultats d'envoi d'une même notification de prix
+     */
+    int insertDeliveries(UUID prixId, BigDecimal ancienPrix, BigDecimal nouveauPrix, BigDecimal variationPct,
+            String message, Map<UUID, NotificationEnvoyee.NotificationStatut> statutByUser);
+}
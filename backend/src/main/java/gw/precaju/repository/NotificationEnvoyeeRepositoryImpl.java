@@ -0,0 +1,56 @@
+package gw.precaju.repository;
+
+import gw.precaju.entity.NotificationEnvoyee;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class NotificationEnvoyeeRepositoryImpl implements NotificationEnvoyeeRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO notifications_envoyees " +
+            "(id, utilisateur_id, prix_id, ancien_prix, nouveau_prix, variation_pourcentage, message, statut, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NotificationEnvoyeeRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public int insertDeliveries(UUID prixId, BigDecimal ancienPrix, BigDecimal nouveauPrix, BigDecimal variationPct,
+            String message, Map<UUID, NotificationEnvoyee.NotificationStatut> statutByUser) {
+        if (statutByUser.isEmpty()) {
+            return 0;
+        }
+        Timestamp createdAt = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(statutByUser.size());
+        statutByUser.forEach((userId, statut) -> rows.add(new Object[] {
+                UUID.randomUUID(), userId, prixId, ancienPrix, nouveauPrix, variationPct, message, statut.name(),
+                createdAt }));
+
+        int inserted = 0;
+        for (int[] counts : jdbcTemplate.batchUpdate(INSERT_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            for (int i = 0; i < row.length; i++) {
+                ps.setObject(i + 1, row[i]);
+            }
+        })) {
+            for (int count : counts) {
+                // Le driver PostgreSQL peut renvoyer SUCCESS_NO_INFO (-2) en mode batch
+                inserted += count > 0 || count == Statement.SUCCESS_NO_INFO ? 1 : 0;
+            }
+        }
+        return inserted;
+    }
+}
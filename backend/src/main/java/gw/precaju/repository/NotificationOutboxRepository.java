@@ -0,0 +1,62 @@
+package gw.precaju.repository;
+
+import gw.precaju.entity.NotificationOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+    /**
+     * Verrouille un lot de lignes à traiter ; les lignes déjà verrouillées par
+     * une autre instance sont ignorées. À appeler dans une transaction.
+     */
+    @Query(value = "SELECT * FROM notification_outbox " +
+            "WHERE (statut = 'PENDING' AND available_at <= :now) " +
+            "OR (statut = 'PROCESSING' AND locked_until < :now) " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<NotificationOutbox> lockNextBatch(@Param("now") ZonedDateTime now, @Param("limit") int limit);
+
+    /**
+     * Prolonge le bail d'une ligne tant qu'elle n'a pas été reprise ailleurs
+     * (même statut, même nombre de tentatives)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE notification_outbox SET locked_until = :lockedUntil " +
+            "WHERE id = :id AND statut = 'PROCESSING' AND attempts = :attempts", nativeQuery = true)
+    int extendLease(@Param("id") Long id, @Param("attempts") int attempts,
+            @Param("lockedUntil") ZonedDateTime lockedUntil);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE notification_outbox SET statut = 'DONE', processed_at = :now, locked_until = NULL, " +
+            "last_error = NULL WHERE id = :id", nativeQuery = true)
+    int markDone(@Param("id") Long id, @Param("now") ZonedDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE notification_outbox SET statut = 'PENDING', available_at = :availableAt, " +
+            "locked_until = NULL, last_error = :error WHERE id = :id", nativeQuery = true)
+    int reschedule(@Param("id") Long id, @Param("availableAt") ZonedDateTime availableAt,
+            @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE notification_outbox SET statut = 'FAILED', processed_at = :now, locked_until = NULL, " +
+            "last_error = :error WHERE id = :id", nativeQuery = true)
+    int markFailed(@Param("id") Long id, @Param("now") ZonedDateTime now, @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM notification_outbox WHERE statut IN ('DONE', 'FAILED') AND processed_at < :before",
+            nativeQuery = true)
+    int purgeProcessedBefore(@Param("before") ZonedDateTime before);
+}
@@ -2,7 +2,9 @@ package gw.precaju.repository;
 
 import gw.precaju.entity.RefreshToken;
 import gw.precaju.entity.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -16,7 +18,21 @@ import java.util.UUID;
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID> {
 
-    Optional<RefreshToken> findByToken(String token);
+    /**
+     * Famille verrouillée pour la rotation (deux rafraîchissements concurrents sont sérialisés)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT rt FROM RefreshToken rt JOIN FETCH rt.user WHERE rt.id = :familyId")
+    Optional<RefreshToken> findFamilyForUpdate(@Param("familyId") UUID familyId);
+
+    /**
+     * Jetons émis avant l'ajout de la claim de famille
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT rt FROM RefreshToken rt JOIN FETCH rt.user WHERE rt.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByTokenHashForUpdate(@Param("tokenHash") String tokenHash);
+
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
 
     List<RefreshToken> findByUser(User user);
 
@@ -24,33 +40,21 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID
     @Query("DELETE FROM RefreshToken rt WHERE rt.user = :user")
     void deleteByUser(@Param("user") User user);
 
+    /**
+     * Supprime en une requête les familles expirées de l'utilisateur et celles
+     * au-delà des {@code keep} plus récentes
+     */
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.expiresAt <= :now")
-    void deleteExpiredTokens(@Param("now") Instant now);
-
-    @Query("SELECT COUNT(rt) FROM RefreshToken rt WHERE rt.user = :user")
-    int countByUser(@Param("user") User user);
-
+    @Query(value = "DELETE FROM refresh_tokens WHERE user_id = :userId AND (expires_at <= :now OR id NOT IN "
+            + "(SELECT id FROM refresh_tokens WHERE user_id = :userId ORDER BY created_at DESC LIMIT :keep))",
+            nativeQuery = true)
+    int pruneFamiliesForUser(@Param("userId") UUID userId, @Param("now") Instant now, @Param("keep") int keep);
+
+    /**
+     * Purge un lot de familles expirées, pour des transactions courtes
+     */
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.user = :user AND rt.id NOT IN " +
-            "(SELECT rt2.id FROM RefreshToken rt2 WHERE rt2.user = :user ORDER BY rt2.createdAt DESC LIMIT :limit)")
-    void deleteOldestTokensForUser(@Param("user") User user, @Param("limit") int limit);
+    @Query(value = "DELETE FROM refresh_tokens WHERE id IN "
+            + "(SELECT id FROM refresh_tokens WHERE expires_at <= :now LIMIT :limit)", nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") Instant now, @Param("limit") int limit);
 }
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
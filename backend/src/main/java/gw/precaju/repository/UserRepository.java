@@ -5,16 +5,19 @@ import gw.precaju.entity.enums.UserRole;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, UUID> {
+public interface UserRepository extends JpaRepository<User, UUID>, UserRepositoryCustom {
 
         Optional<User> findByEmail(String email);
 
@@ -42,6 +45,13 @@ public interface UserRepository extends JpaRepository<User, UUID> {
         @Query("SELECT COUNT(u) FROM User u WHERE u.active = true")
         long countByActiveTrue();
 
+        /**
+         * Comptes groupés pour le tableau de bord : [role, active, emailVerified, count]
+         */
+        @Query("SELECT u.role, u.active, u.emailVerified, COUNT(u) FROM User u " +
+                        "GROUP BY u.role, u.active, u.emailVerified")
+        List<Object[]> countGroupedByRoleActiveAndEmailVerified();
+
         /**
          * Recherche d'utilisateurs avec filtres avancés (JPQL)
          * Gère correctement les paramètres NULL et les chaînes vides
@@ -120,4 +130,48 @@ public interface UserRepository extends JpaRepository<User, UUID> {
 
         @Query("SELECT u FROM User u WHERE u.abonnementNotifications = true AND u.pushSubscription IS NOT NULL")
         List<User> findSubscribedUsers();
+
+        /**
+         * Page d'abonnés push actifs (id, abonnement JSON, préférences) en
+         * pagination par clé, triée par id
+         */
+        @Query("SELECT u.id, u.pushSubscription, u.notificationPreferences FROM User u " +
+                        "WHERE u.abonnementNotifications = true AND u.pushSubscription IS NOT NULL " +
+                        "AND u.active = true " +
+                        "AND u.id > :afterId ORDER BY u.id")
+        List<Object[]> findPushSubscriptionsAfter(@Param("afterId") UUID afterId, Pageable pageable);
+
+        @Query("SELECT u.id, u.pushSubscription, u.notificationPreferences FROM User u " +
+                        "WHERE u.abonnementNotifications = true AND u.pushSubscription IS NOT NULL " +
+                        "AND u.active = true AND u.id IN :ids")
+        List<Object[]> findPushSubscriptionsByIdIn(@Param("ids") Collection<UUID> ids);
+
+        /**
+         * Version (md5 du JSON) de l'abonnement push des utilisateurs encore actifs et abonnés
+         */
+        @Query(value = "SELECT id, md5(push_subscription) FROM users " +
+                        "WHERE abonnement_notifications = true AND push_subscription IS NOT NULL " +
+                        "AND active = true AND id IN (:ids)", nativeQuery = true)
+        List<Object[]> findPushSubscriptionVersionsByIdIn(@Param("ids") Collection<UUID> ids);
+
+        /**
+         * Supprime les abonnements push rejetés définitivement par le service de push
+         */
+        @Modifying
+        @Transactional
+        @Query("UPDATE User u SET u.pushSubscription = NULL, u.abonnementNotifications = false " +
+                        "WHERE u.id IN :ids")
+        int clearPushSubscriptions(@Param("ids") Collection<UUID> ids);
+
+        /**
+         * Fusionne un patch JSON dans les préférences (clés de premier niveau) et
+         * retire les clés listées, séparées par des virgules, sans relire la valeur
+         */
+        @Modifying
+        @Query(value = "UPDATE users SET notification_preferences = " +
+                        "(COALESCE(notification_preferences, CAST('{}' AS jsonb)) || CAST(:patch AS jsonb)) " +
+                        "- string_to_array(:removedKeys, ','), updated_at = NOW() " +
+                        "WHERE id = :id", nativeQuery = true)
+        int patchNotificationPreferences(@Param("id") UUID id, @Param("patch") String patch,
+                        @Param("removedKeys") String removedKeys);
 }
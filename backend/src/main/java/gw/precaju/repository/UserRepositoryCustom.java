@@ -0,0 +1,30 @@
+package gw.precaju.repository;
+
+import gw.precaju.entity.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Recherche paginée par numéro de page, triée selon le Pageable
+     */
+    Page<User> searchUsers(UserSearchCriteria criteria, Pageable pageable);
+
+    /**
+     * Recherche paginée par clé : utilisateurs qui suivent (afterCreatedAt, afterId)
+     * dans l'ordre created_at DESC, id DESC ; première page si afterCreatedAt est null
+     */
+    List<User> searchUsersAfter(UserSearchCriteria criteria, Instant afterCreatedAt, UUID afterId, int limit);
+
+    /**
+     * Enregistre les dernières connexions en lot, sans jamais reculer une date
+     * déjà plus récente en base ; renvoie le nombre de lignes modifiées
+     */
+    int updateLastLogins(Map<UUID, Instant> lastLogins);
+}
@@ -0,0 +1,158 @@
+package gw.precaju.repository;
+
+import gw.precaju.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Requêtes de recherche d'utilisateurs composées dynamiquement : une condition
+ * absente n'apparaît pas dans le SQL, ce qui laisse le planificateur utiliser
+ * les index trigrammes (email, full_name) et l'index (created_at, id).
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    // Propriétés triables -> colonnes ; toute autre propriété est ignorée
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id", "id",
+            "createdAt", "created_at",
+            "updatedAt", "updated_at",
+            "email", "email",
+            "fullName", "full_name",
+            "role", "role",
+            "active", "active",
+            "emailVerified", "email_verified",
+            "reputationScore", "reputation_score",
+            "lastLoginAt", "last_login_at");
+
+    // Lignes par instruction UPDATE ... FROM (VALUES ...)
+    private static final int LAST_LOGIN_BATCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Page<User> searchUsers(UserSearchCriteria criteria, Pageable pageable) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        String where = whereClause(criteria, params, new ArrayList<>());
+
+        Query select = entityManager.createNativeQuery(
+                "SELECT u.* FROM users u" + where + orderBy(pageable.getSort()), User.class);
+        params.forEach(select::setParameter);
+        select.setFirstResult((int) pageable.getOffset());
+        select.setMaxResults(pageable.getPageSize());
+        @SuppressWarnings("unchecked")
+        List<User> content = select.getResultList();
+
+        Query count = entityManager.createNativeQuery("SELECT COUNT(*) FROM users u" + where);
+        params.forEach(count::setParameter);
+        long total = ((Number) count.getSingleResult()).longValue();
+
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    @Override
+    public List<User> searchUsersAfter(UserSearchCriteria criteria, Instant afterCreatedAt, UUID afterId,
+            int limit) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        List<String> predicates = new ArrayList<>();
+        if (afterCreatedAt != null && afterId != null) {
+            predicates.add("(u.created_at, u.id) < (:afterCreatedAt, :afterId)");
+            params.put("afterCreatedAt", afterCreatedAt);
+            params.put("afterId", afterId);
+        }
+        String where = whereClause(criteria, params, predicates);
+
+        Query select = entityManager.createNativeQuery(
+                "SELECT u.* FROM users u" + where + " ORDER BY u.created_at DESC, u.id DESC", User.class);
+        params.forEach(select::setParameter);
+        select.setMaxResults(limit);
+        @SuppressWarnings("unchecked")
+        List<User> content = select.getResultList();
+        return content;
+    }
+
+    @Override
+    @Transactional
+    public int updateLastLogins(Map<UUID, Instant> lastLogins) {
+        List<Map.Entry<UUID, Instant>> entries = new ArrayList<>(lastLogins.entrySet());
+        int updated = 0;
+        for (int from = 0; from < entries.size(); from += LAST_LOGIN_BATCH_SIZE) {
+            List<Map.Entry<UUID, Instant>> chunk =
+                    entries.subList(from, Math.min(from + LAST_LOGIN_BATCH_SIZE, entries.size()));
+            StringBuilder sql = new StringBuilder("UPDATE users u SET last_login_at = v.at FROM (VALUES ");
+            Object[] args = new Object[chunk.size() * 2];
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "" : ", ").append("(CAST(? AS uuid), CAST(? AS timestamptz))");
+                args[2 * i] = chunk.get(i).getKey();
+                args[2 * i + 1] = Timestamp.from(chunk.get(i).getValue());
+            }
+            // Une valeur plus récente déjà en base (autre instance) n'est jamais écrasée
+            sql.append(") AS v(id, at) WHERE u.id = v.id AND (u.last_login_at IS NULL OR u.last_login_at < v.at)");
+            updated += jdbcTemplate.update(sql.toString(), args);
+        }
+        return updated;
+    }
+
+    private static String whereClause(UserSearchCriteria criteria, Map<String, Object> params,
+            List<String> predicates) {
+        if (criteria.getRole() != null) {
+            predicates.add("u.role = :role");
+            params.put("role", criteria.getRole().getValue());
+        }
+        if (criteria.getActive() != null) {
+            predicates.add("u.active = :active");
+            params.put("active", criteria.getActive());
+        }
+        if (criteria.getEmailVerified() != null) {
+            predicates.add("u.email_verified = :emailVerified");
+            params.put("emailVerified", criteria.getEmailVerified());
+        }
+        if (criteria.getSearch() != null) {
+            // Deux ILIKE reliés par OR : combinaison (BitmapOr) des deux index trigrammes
+            predicates.add("(u.email ILIKE :pattern OR u.full_name ILIKE :pattern)");
+            params.put("pattern", "%" + escapeLike(criteria.getSearch()) + "%");
+        }
+        return predicates.isEmpty() ? "" : " WHERE " + String.join(" AND ", predicates);
+    }
+
+    private static String orderBy(Sort sort) {
+        List<String> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            String column = SORT_COLUMNS.get(order.getProperty());
+            if (column != null) {
+                orders.add("u." + column + (order.isAscending() ? " ASC" : " DESC"));
+            }
+        }
+        if (orders.isEmpty()) {
+            orders.add("u.created_at DESC");
+        }
+        // Départage stable entre les pages
+        orders.add("u.id");
+        return " ORDER BY " + String.join(", ", orders);
+    }
+
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,38 @@
+package gw.precaju.repository;
+
+import gw.precaju.entity.enums.UserRole;
+
+/**
+ * Filtres de la recherche d'utilisateurs ; seuls les filtres renseignés sont
+ * ajoutés à la requête
+ */
+public final class UserSearchCriteria {
+
+    private final UserRole role;
+    private final Boolean active;
+    private final Boolean emailVerified;
+    private final String search;
+
+    public UserSearchCriteria(UserRole role, Boolean active, Boolean emailVerified, String search) {
+        this.role = role;
+        this.active = active;
+        this.emailVerified = emailVerified;
+        this.search = search == null || search.isBlank() ? null : search.trim();
+    }
+
+    public UserRole getRole() {
+        return role;
+    }
+
+    public Boolean getActive() {
+        return active;
+    }
+
+    public Boolean getEmailVerified() {
+        return emailVerified;
+    }
+
+    public String getSearch() {
+        return search;
+    }
+}
@@ -0,0 +1,90 @@
+package gw.precaju.security;
+
+import gw.precaju.entity.User;
+import gw.precaju.entity.enums.UserRole;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Principal immuable des requêtes HTTP authentifiées par JWT.
+ * Ne contient que ce qu'il faut pour autoriser la requête ; les contrôleurs
+ * qui ont besoin de l'entité la chargent explicitement.
+ */
+public final class AuthenticatedUser implements UserDetails {
+
+    private final UUID id;
+    private final String email;
+    private final UserRole role;
+    private final boolean active;
+    private final List<GrantedAuthority> authorities;
+
+    public AuthenticatedUser(UUID id, String email, UserRole role, boolean active) {
+        this.id = id;
+        this.email = email;
+        this.role = role;
+        this.active = active;
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    public static AuthenticatedUser from(User user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getRole(),
+                Boolean.TRUE.equals(user.getActive()));
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public UserRole getRole() {
+        return role;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return active;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return active;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return active;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthenticatedUser{id=" + id + ", role=" + role + "}";
+    }
+}
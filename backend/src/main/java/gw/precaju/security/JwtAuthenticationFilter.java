@@ -1,6 +1,6 @@
 package gw.precaju.security;
 
-import gw.precaju.service.UserService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,7 +9,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -23,11 +22,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
     private final JwtTokenProvider tokenProvider;
-    private final UserService userService;
+    private final UserDetailsCache userDetailsCache;
 
-    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider, UserService userService) {
+    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider, UserDetailsCache userDetailsCache) {
         this.tokenProvider = tokenProvider;
-        this.userService = userService;
+        this.userDetailsCache = userDetailsCache;
     }
 
     @Override
@@ -37,16 +36,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String jwt = getJwtFromRequest(request);
 
             if (StringUtils.hasText(jwt)) {
-                if (tokenProvider.validateToken(jwt)) {
-                    String username = tokenProvider.getUsernameFromToken(jwt);
-
-                    UserDetails userDetails = userService.loadUserByUsername(username);
+                // Une seule analyse du token, principal résolu depuis le cache ; les
+                // refresh tokens (famille de rotation, sans uid) sont refusés
+                Claims claims = tokenProvider.parseValidClaims(jwt);
+                AuthenticatedUser principal = claims != null && JwtTokenProvider.isAccessToken(claims)
+                        ? userDetailsCache.resolve(claims) : null;
+                if (principal != null) {
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                            userDetails, null, userDetails.getAuthorities());
+                            principal, null, principal.getAuthorities());
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                     SecurityContextHolder.getContext().setAuthentication(authentication);
-                    logger.debug("Successfully authenticated user: {}", username);
+                    logger.debug("Successfully authenticated user: {}", principal.getId());
+                } else if (claims != null) {
+                    logger.warn("JWT token that is not an access token, or for an unknown or inactive user, "
+                            + "on request: {}", request.getRequestURI());
+                    SecurityContextHolder.clearContext();
                 } else {
                     logger.warn("Invalid JWT token provided for request: {}", request.getRequestURI());
                     // Clear any existing authentication context
@@ -6,18 +6,28 @@ import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
+import java.util.UUID;
 
 @Component
 public class JwtTokenProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
 
+    // Claims embarqués dans l'access token, lus sans requête en base
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_LANGUAGE = "lang";
+    // Famille de rotation portée par le refresh token
+    public static final String CLAIM_FAMILY = "fid";
+    // Type de jeton : un refresh token n'est jamais accepté comme access token
+    public static final String CLAIM_TOKEN_TYPE = "typ";
+    public static final String TOKEN_TYPE_ACCESS = "access";
+    public static final String TOKEN_TYPE_REFRESH = "refresh";
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
@@ -27,58 +37,89 @@ public class JwtTokenProvider {
     @Value("${jwt.refresh-token-expiration}")
     private int refreshTokenExpirationMs;
 
+    // Clé et parser construits une seule fois, réutilisés à chaque requête
+    private volatile SecretKey signingKey;
+    private volatile JwtParser parser;
+
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        SecretKey key = signingKey;
+        if (key == null) {
+            key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+            signingKey = key;
+        }
+        return key;
     }
 
-    public String generateAccessToken(Authentication authentication) {
-        UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
-        return generateAccessToken(userPrincipal.getUsername());
+    private JwtParser parser() {
+        JwtParser current = parser;
+        if (current == null) {
+            current = Jwts.parserBuilder()
+                    .setSigningKey(getSigningKey())
+                    .build();
+            parser = current;
+        }
+        return current;
     }
 
     public String generateAccessToken(User user) {
-        return generateAccessToken(user.getEmail());
-    }
-
-    public String generateAccessToken(String username) {
         Date expiryDate = new Date(System.currentTimeMillis() + accessTokenExpirationMs);
 
         return Jwts.builder()
-                .setSubject(username)
+                .setSubject(user.getEmail())
+                .claim(CLAIM_TOKEN_TYPE, TOKEN_TYPE_ACCESS)
+                .claim(CLAIM_USER_ID, user.getId().toString())
+                .claim(CLAIM_ROLE, user.getRole().name())
+                .claim(CLAIM_LANGUAGE, user.getPreferredLanguage())
                 .setIssuedAt(new Date())
                 .setExpiration(expiryDate)
                 .signWith(getSigningKey())
                 .compact();
     }
 
-    public String generateRefreshToken(String username) {
+    public String generateRefreshToken(String username, UUID familyId) {
         Date expiryDate = new Date(System.currentTimeMillis() + refreshTokenExpirationMs);
 
         return Jwts.builder()
                 .setSubject(username)
+                .setId(UUID.randomUUID().toString())
+                .claim(CLAIM_TOKEN_TYPE, TOKEN_TYPE_REFRESH)
+                .claim(CLAIM_FAMILY, familyId.toString())
                 .setIssuedAt(new Date())
                 .setExpiration(expiryDate)
                 .signWith(getSigningKey())
                 .compact();
     }
 
+    /**
+     * Vrai pour un access token : identifiant utilisateur présent, pas de famille
+     * de rotation, et type "access" (les access tokens émis avant l'ajout du type
+     * n'en portent pas et expirent au plus tard après leur courte durée de vie)
+     */
+    public static boolean isAccessToken(Claims claims) {
+        String type = claims.get(CLAIM_TOKEN_TYPE, String.class);
+        return claims.get(CLAIM_USER_ID) != null
+                && claims.get(CLAIM_FAMILY) == null
+                && (type == null || TOKEN_TYPE_ACCESS.equals(type));
+    }
+
     public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
+        Claims claims = parser().parseClaimsJws(token)
                 .getBody();
 
         return claims.getSubject();
     }
 
     public boolean validateToken(String authToken) {
+        return parseValidClaims(authToken) != null;
+    }
+
+    /**
+     * Vérifie le token et retourne ses claims en une seule analyse,
+     * ou null si le token est invalide ou expiré
+     */
+    public Claims parseValidClaims(String authToken) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(authToken);
-            return true;
+            return parseClaims(authToken);
         } catch (SecurityException ex) {
             logger.warn("Invalid JWT signature: {}", ex.getMessage());
         } catch (MalformedJwtException ex) {
@@ -92,14 +133,18 @@ public class JwtTokenProvider {
         } catch (Exception ex) {
             logger.warn("Unexpected error validating JWT token: {}", ex.getMessage());
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * Vérifie la signature et l'expiration du token et retourne ses claims
+     */
+    public Claims parseClaims(String token) {
+        return parser().parseClaimsJws(token).getBody();
     }
 
     public Date getExpirationDateFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
+        Claims claims = parser().parseClaimsJws(token)
                 .getBody();
 
         return claims.getExpiration();
@@ -0,0 +1,82 @@
+package gw.precaju.security;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Seaux à jetons en mémoire, répartis sur des segments verrouillés séparément.
+ *
+ * Chaque segment est une map LRU bornée : une clé inactive évincée revient
+ * simplement avec un seau plein, ce qu'elle aurait retrouvé après une période
+ * de recharge. La contention se limite aux requêtes tombant sur le même segment.
+ */
+public class LocalRateLimiter implements RateLimiter {
+
+    private final Stripe[] stripes;
+    private final LongSupplier nanoClock;
+
+    public LocalRateLimiter(int stripes, int maxKeysPerStripe) {
+        this(stripes, maxKeysPerStripe, System::nanoTime);
+    }
+
+    LocalRateLimiter(int stripes, int maxKeysPerStripe, LongSupplier nanoClock) {
+        this.stripes = new Stripe[Math.max(1, stripes)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe(Math.max(1, maxKeysPerStripe));
+        }
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public Decision tryConsume(String key, long capacity, Duration refillPeriod) {
+        long periodNanos = Math.max(1, refillPeriod.toNanos());
+        Stripe stripe = stripes[Math.floorMod(spread(key.hashCode()), stripes.length)];
+        synchronized (stripe) {
+            long now = nanoClock.getAsLong();
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, now);
+                stripe.buckets.put(key, bucket);
+            } else {
+                double refill = (double) (now - bucket.updatedAt) * capacity / periodNanos;
+                bucket.tokens = Math.min(capacity, bucket.tokens + Math.max(0, refill));
+                bucket.updatedAt = now;
+            }
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return Decision.allowed((long) bucket.tokens);
+            }
+            long waitNanos = (long) Math.ceil((1 - bucket.tokens) * periodNanos / capacity);
+            return Decision.rejected(Duration.ofNanos(waitNanos));
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Stripe {
+        private final Map<String, Bucket> buckets;
+
+        private Stripe(int maxKeys) {
+            this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > maxKeys;
+                }
+            };
+        }
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long updatedAt;
+
+        private Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package gw.precaju.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Limitation de débit par route, placée après l'authentification JWT.
+ *
+ * La première politique dont un motif correspond au chemin s'applique ; le seau
+ * est indexé par politique et par utilisateur authentifié (ou adresse IP). Une
+ * requête refusée reçoit un 429 avec {@code Retry-After} sans atteindre le
+ * contrôleur.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private final RateLimiter rateLimiter;
+    private final List<CompiledPolicy> policies;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public RateLimitFilter(RateLimiter rateLimiter, List<RateLimitProperties.Policy> policies,
+            MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.policies = policies.stream()
+                .filter(p -> p.getCapacity() > 0 && !p.getPatterns().isEmpty())
+                .map(p -> new CompiledPolicy(p, Counter.builder("http.ratelimit.rejected")
+                        .description("Requests rejected with 429 by the rate limiter")
+                        .tag("policy", p.getName())
+                        .register(meterRegistry)))
+                .toList();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        CompiledPolicy policy = match(request);
+        if (policy == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        RateLimitProperties.Policy config = policy.config;
+        String key = config.getName() + ':' + clientKey(request, config.getKey());
+        RateLimiter.Decision decision = rateLimiter.tryConsume(key, config.getCapacity(), config.getRefillPeriod());
+        response.setHeader("X-RateLimit-Limit", Long.toString(config.getCapacity()));
+        response.setHeader("X-RateLimit-Remaining", Long.toString(decision.getRemaining()));
+        if (decision.isAllowed()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        policy.rejected.increment();
+        long retryAfterSeconds = Math.max(1, (decision.getRetryAfter().toMillis() + 999) / 1000);
+        logger.debug("Rate limit '{}' exceeded for {} on {}", config.getName(), key, request.getRequestURI());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+        body.put("error", "Too Many Requests");
+        body.put("message", "Rate limit exceeded, retry in " + retryAfterSeconds + "s");
+        body.put("path", request.getServletPath());
+        body.put("timestamp", System.currentTimeMillis());
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    private CompiledPolicy match(HttpServletRequest request) {
+        // Les requêtes CORS préalables ne sont jamais comptées
+        if ("OPTIONS".equalsIgnoreCase(request.getMethod())) {
+            return null;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (CompiledPolicy policy : policies) {
+            if (policy.matches(request.getMethod(), path, pathMatcher)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    private static String clientKey(HttpServletRequest request, RateLimitProperties.KeyType keyType) {
+        if (keyType == RateLimitProperties.KeyType.USER_OR_IP) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+                return "user:" + user.getId();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static final class CompiledPolicy {
+        private final RateLimitProperties.Policy config;
+        private final Set<String> methods;
+        private final Counter rejected;
+
+        private CompiledPolicy(RateLimitProperties.Policy config, Counter rejected) {
+            this.config = config;
+            this.methods = config.getMethods().stream().map(String::toUpperCase).collect(Collectors.toSet());
+            this.rejected = rejected;
+        }
+
+        private boolean matches(String method, String path, AntPathMatcher pathMatcher) {
+            if (!methods.isEmpty() && !methods.contains(method.toUpperCase())) {
+                return false;
+            }
+            for (String pattern : config.getPatterns()) {
+                if (pathMatcher.match(pattern, path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package gw.precaju.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration du limiteur de débit ({@code app.rate-limit}) : backend de
+ * stockage des seaux et politiques par route, évaluées dans l'ordre
+ */
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /** local : seaux en mémoire par instance ; redis : seaux partagés entre instances */
+    private String backend = "local";
+
+    private int stripes = 64;
+
+    private int maxKeysPerStripe = 4096;
+
+    private String redisKeyPrefix = "precaju:ratelimit:";
+
+    /** Après un échec Redis, durée pendant laquelle les seaux locaux servent sans réessayer Redis */
+    private Duration redisRetryBackoff = Duration.ofSeconds(5);
+
+    private List<Policy> policies = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    public int getMaxKeysPerStripe() {
+        return maxKeysPerStripe;
+    }
+
+    public void setMaxKeysPerStripe(int maxKeysPerStripe) {
+        this.maxKeysPerStripe = maxKeysPerStripe;
+    }
+
+    public String getRedisKeyPrefix() {
+        return redisKeyPrefix;
+    }
+
+    public void setRedisKeyPrefix(String redisKeyPrefix) {
+        this.redisKeyPrefix = redisKeyPrefix;
+    }
+
+    public Duration getRedisRetryBackoff() {
+        return redisRetryBackoff;
+    }
+
+    public void setRedisRetryBackoff(Duration redisRetryBackoff) {
+        this.redisRetryBackoff = redisRetryBackoff;
+    }
+
+    public List<Policy> getPolicies() {
+        return policies;
+    }
+
+    public void setPolicies(List<Policy> policies) {
+        this.policies = policies;
+    }
+
+    /**
+     * Seau à jetons appliqué aux requêtes dont le chemin correspond à l'un des
+     * motifs : {@code capacity} requêtes en rafale, rechargées en totalité sur
+     * {@code refillPeriod}
+     */
+    public static class Policy {
+
+        private String name;
+        private List<String> patterns = new ArrayList<>();
+        /** Méthodes HTTP concernées ; toutes si vide */
+        private List<String> methods = new ArrayList<>();
+        private long capacity = 60;
+        private Duration refillPeriod = Duration.ofMinutes(1);
+        private KeyType key = KeyType.USER_OR_IP;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<String> getPatterns() {
+            return patterns;
+        }
+
+        public void setPatterns(List<String> patterns) {
+            this.patterns = patterns;
+        }
+
+        public List<String> getMethods() {
+            return methods;
+        }
+
+        public void setMethods(List<String> methods) {
+            this.methods = methods;
+        }
+
+        public long getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(long capacity) {
+            this.capacity = capacity;
+        }
+
+        public Duration getRefillPeriod() {
+            return refillPeriod;
+        }
+
+        public void setRefillPeriod(Duration refillPeriod) {
+            this.refillPeriod = refillPeriod;
+        }
+
+        public KeyType getKey() {
+            return key;
+        }
+
+        public void setKey(KeyType key) {
+            this.key = key;
+        }
+    }
+
+    public enum KeyType {
+        /** Identifiant de l'utilisateur authentifié, sinon adresse IP */
+        USER_OR_IP,
+        /** Toujours l'adresse IP (connexion, inscription) */
+        IP
+    }
+}
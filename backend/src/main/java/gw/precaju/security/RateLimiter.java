@@ -0,0 +1,47 @@
+package gw.precaju.security;
+
+import java.time.Duration;
+
+/**
+ * Seaux à jetons indexés par clé
+ */
+public interface RateLimiter {
+
+    /**
+     * Consomme un jeton du seau {@code key}, créé plein s'il n'existe pas
+     */
+    Decision tryConsume(String key, long capacity, Duration refillPeriod);
+
+    final class Decision {
+        private final boolean allowed;
+        private final long remaining;
+        private final Duration retryAfter;
+
+        Decision(boolean allowed, long remaining, Duration retryAfter) {
+            this.allowed = allowed;
+            this.remaining = remaining;
+            this.retryAfter = retryAfter;
+        }
+
+        static Decision allowed(long remaining) {
+            return new Decision(true, remaining, Duration.ZERO);
+        }
+
+        static Decision rejected(Duration retryAfter) {
+            return new Decision(false, 0, retryAfter);
+        }
+
+        public boolean isAllowed() {
+            return allowed;
+        }
+
+        public long getRemaining() {
+            return remaining;
+        }
+
+        /** Délai avant qu'un jeton soit de nouveau disponible */
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package gw.precaju.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Seaux à jetons partagés entre instances, stockés dans Redis.
+ *
+ * Recharge et consommation s'exécutent atomiquement dans un script Lua qui
+ * utilise l'horloge du serveur Redis (pas de dérive entre instances) ; la clé
+ * expire après une période d'inactivité, quand le seau serait de toute façon
+ * plein. Si Redis est indisponible, le limiteur local prend le relais : les
+ * requêtes suivantes vont directement aux seaux locaux, sans attendre le délai
+ * d'expiration Redis, et une seule requête sonde Redis à chaque fin de
+ * {@code retryBackoff}.
+ */
+public class RedisRateLimiter implements RateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisRateLimiter.class);
+
+    private static final RedisScript<List> TOKEN_BUCKET = new DefaultRedisScript<>(
+            "local capacity = tonumber(ARGV[1])\n" +
+            "local period = tonumber(ARGV[2])\n" +
+            "local time = redis.call('TIME')\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+            "local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n" +
+            "local tokens = tonumber(state[1])\n" +
+            "local ts = tonumber(state[2])\n" +
+            "if tokens == nil or ts == nil then\n" +
+            "  tokens = capacity\n" +
+            "else\n" +
+            "  tokens = math.min(capacity, tokens + math.max(0, now - ts) * capacity / period)\n" +
+            "end\n" +
+            "local allowed = 0\n" +
+            "local retry = 0\n" +
+            "if tokens >= 1 then\n" +
+            "  tokens = tokens - 1\n" +
+            "  allowed = 1\n" +
+            "else\n" +
+            "  retry = math.ceil((1 - tokens) * period / capacity)\n" +
+            "end\n" +
+            "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))\n" +
+            "redis.call('PEXPIRE', KEYS[1], period)\n" +
+            "return {allowed, math.floor(tokens), retry}",
+            List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String keyPrefix;
+    private final RateLimiter fallback;
+    private final long retryBackoffNanos;
+    private final LongSupplier nanoClock;
+    private volatile boolean degraded;
+    // Instant (nanoTime) à partir duquel Redis peut être sondé de nouveau
+    private final AtomicLong retryAt = new AtomicLong();
+
+    public RedisRateLimiter(StringRedisTemplate redisTemplate, String keyPrefix, RateLimiter fallback,
+            Duration retryBackoff) {
+        this(redisTemplate, keyPrefix, fallback, retryBackoff, System::nanoTime);
+    }
+
+    RedisRateLimiter(StringRedisTemplate redisTemplate, String keyPrefix, RateLimiter fallback,
+            Duration retryBackoff, LongSupplier nanoClock) {
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = keyPrefix;
+        this.fallback = fallback;
+        this.retryBackoffNanos = Math.max(0, retryBackoff.toNanos());
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public Decision tryConsume(String key, long capacity, Duration refillPeriod) {
+        if (degraded) {
+            long now = nanoClock.getAsLong();
+            long next = retryAt.get();
+            // Circuit ouvert : seul le premier appel après le délai sonde Redis
+            if (now - next < 0 || !retryAt.compareAndSet(next, now + retryBackoffNanos)) {
+                return fallback.tryConsume(key, capacity, refillPeriod);
+            }
+        }
+        long periodMillis = Math.max(1, refillPeriod.toMillis());
+        try {
+            List<?> result = redisTemplate.execute(TOKEN_BUCKET, List.of(keyPrefix + key),
+                    Long.toString(capacity), Long.toString(periodMillis));
+            if (result == null || result.size() < 3) {
+                throw new IllegalStateException("Unexpected rate limit script result: " + result);
+            }
+            if (degraded) {
+                degraded = false;
+                logger.info("Redis rate limiter available again");
+            }
+            if (((Number) result.get(0)).longValue() == 1) {
+                return Decision.allowed(((Number) result.get(1)).longValue());
+            }
+            return Decision.rejected(Duration.ofMillis(((Number) result.get(2)).longValue()));
+        } catch (RuntimeException e) {
+            retryAt.set(nanoClock.getAsLong() + retryBackoffNanos);
+            if (!degraded) {
+                degraded = true;
+                logger.warn("Redis rate limiter unavailable, using local buckets: {}", e.getMessage());
+            }
+            return fallback.tryConsume(key, capacity, refillPeriod);
+        }
+    }
+}
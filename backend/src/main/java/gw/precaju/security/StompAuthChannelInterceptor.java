@@ -0,0 +1,91 @@
+package gw.precaju.security;
+
+import gw.precaju.entity.enums.UserRole;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.UUID;
+
+/**
+ * Authentifie les sessions WebSocket au niveau de la trame STOMP CONNECT.
+ *
+ * Le token est lu dans l'en-tête natif Authorization (Bearer) et le principal
+ * est construit à partir de ses claims, sans requête en base : une vague de
+ * reconnexions ne coûte que des vérifications de signature. Un CONNECT sans
+ * token ouvre une session anonyme, mais toute SUBSCRIBE y est refusée.
+ */
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StompAuthChannelInterceptor.class);
+
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtTokenProvider tokenProvider;
+
+    public StompAuthChannelInterceptor(JwtTokenProvider tokenProvider) {
+        this.tokenProvider = tokenProvider;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        switch (accessor.getCommand()) {
+            case CONNECT, STOMP -> {
+                String token = resolveToken(accessor);
+                if (token != null) {
+                    accessor.setUser(authenticate(token));
+                }
+            }
+            case SUBSCRIBE -> {
+                if (!(accessor.getUser() instanceof StompPrincipal)) {
+                    logger.debug("Rejected unauthenticated subscription to {}", accessor.getDestination());
+                    throw new AccessDeniedException("Authentication required to subscribe");
+                }
+            }
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    private StompPrincipal authenticate(String token) {
+        try {
+            Claims claims = tokenProvider.parseClaims(token);
+            String userId = claims.get(JwtTokenProvider.CLAIM_USER_ID, String.class);
+            String role = claims.get(JwtTokenProvider.CLAIM_ROLE, String.class);
+            if (!JwtTokenProvider.isAccessToken(claims) || userId == null || role == null) {
+                throw new BadCredentialsException("Access token is missing user claims");
+            }
+            return new StompPrincipal(UUID.fromString(userId), UserRole.valueOf(role),
+                    claims.get(JwtTokenProvider.CLAIM_LANGUAGE, String.class));
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.warn("Rejected WebSocket CONNECT: {}", e.getMessage());
+            throw new BadCredentialsException("Invalid access token");
+        }
+    }
+
+    private static String resolveToken(StompHeaderAccessor accessor) {
+        String header = accessor.getFirstNativeHeader(AUTHORIZATION_HEADER);
+        if (StringUtils.hasText(header) && header.startsWith(BEARER_PREFIX)) {
+            return header.substring(BEARER_PREFIX.length());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,46 @@
+package gw.precaju.security;
+
+import gw.precaju.entity.enums.UserRole;
+
+import java.security.Principal;
+import java.util.UUID;
+
+/**
+ * Identité immuable d'une session WebSocket, construite à partir des claims
+ * de l'access token. Le nom du principal est l'id de l'utilisateur, utilisé
+ * pour les destinations /user.
+ */
+public final class StompPrincipal implements Principal {
+
+    private final UUID id;
+    private final UserRole role;
+    private final String language;
+
+    public StompPrincipal(UUID id, UserRole role, String language) {
+        this.id = id;
+        this.role = role;
+        this.language = language;
+    }
+
+    @Override
+    public String getName() {
+        return id.toString();
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public UserRole getRole() {
+        return role;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    @Override
+    public String toString() {
+        return "StompPrincipal{id=" + id + ", role=" + role + "}";
+    }
+}
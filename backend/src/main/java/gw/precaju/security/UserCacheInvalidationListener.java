@@ -0,0 +1,53 @@
+package gw.precaju.security;
+
+import gw.precaju.entity.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+
+/**
+ * Invalide le cache des principaux à chaque modification d'un utilisateur
+ * (changement de rôle, désactivation, suppression).
+ *
+ * Les callbacks JPA s'exécutent au flush, avant le commit : une requête
+ * concurrente pourrait alors remettre en cache l'état encore validé. L'éviction
+ * est donc faite après le commit de la transaction.
+ */
+@Component
+public class UserCacheInvalidationListener {
+
+    // Résolu à la demande : le listener est instancié pendant la création de l'EntityManagerFactory
+    private final ObjectProvider<UserDetailsCache> userDetailsCache;
+
+    public UserCacheInvalidationListener(ObjectProvider<UserDetailsCache> userDetailsCache) {
+        this.userDetailsCache = userDetailsCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onUserChanged(User user) {
+        UUID userId = user.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(userId);
+                }
+            });
+        } else {
+            invalidate(userId);
+        }
+    }
+
+    private void invalidate(UUID userId) {
+        UserDetailsCache cache = userDetailsCache.getIfAvailable();
+        if (cache != null) {
+            cache.invalidate(userId);
+        }
+    }
+}
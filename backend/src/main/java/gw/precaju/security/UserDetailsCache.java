@@ -0,0 +1,102 @@
+package gw.precaju.security;
+
+import gw.precaju.entity.User;
+import gw.precaju.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache à courte durée de vie des principaux authentifiés, indexé par id.
+ *
+ * Le filtre JWT y résout l'utilisateur sans requête en base tant que l'entrée
+ * est fraîche ; {@link UserCacheInvalidationListener} l'invalide dès qu'un
+ * utilisateur est modifié (rôle, désactivation), la durée de vie bornant le
+ * retard des modifications faites par une autre instance.
+ */
+@Component
+public class UserDetailsCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDetailsCache.class);
+
+    private final UserRepository userRepository;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Map<UUID, CachedUser> cache = new ConcurrentHashMap<>();
+
+    public UserDetailsCache(UserRepository userRepository,
+            @Value("${app.security.user-cache.ttl:PT60S}") Duration ttl,
+            @Value("${app.security.user-cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Résout le principal d'un access token déjà vérifié.
+     * Retourne null si le jeton n'est pas un access token, ou si l'utilisateur
+     * n'existe plus ou est désactivé.
+     */
+    public AuthenticatedUser resolve(Claims claims) {
+        if (!JwtTokenProvider.isAccessToken(claims)) {
+            // Refresh token, ou token émis sans l'identifiant utilisateur
+            return null;
+        }
+        String userId = claims.get(JwtTokenProvider.CLAIM_USER_ID, String.class);
+        UUID id = UUID.fromString(userId);
+        long now = System.currentTimeMillis();
+        CachedUser cached = cache.get(id);
+        if (cached == null || cached.expiresAt <= now) {
+            return cacheLoaded(userRepository.findById(id));
+        }
+        return cached.user.isActive() ? cached.user : null;
+    }
+
+    public void invalidate(UUID userId) {
+        if (userId != null && cache.remove(userId) != null) {
+            logger.debug("Evicted user {} from the user-details cache", userId);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    private AuthenticatedUser cacheLoaded(Optional<User> user) {
+        if (user.isEmpty()) {
+            return null;
+        }
+        AuthenticatedUser principal = AuthenticatedUser.from(user.get());
+        if (cache.size() >= maxEntries) {
+            long now = System.currentTimeMillis();
+            cache.values().removeIf(entry -> entry.expiresAt <= now);
+            if (cache.size() >= maxEntries) {
+                cache.clear();
+            }
+        }
+        cache.put(principal.getId(), new CachedUser(principal, System.currentTimeMillis() + ttlMillis));
+        return principal.isActive() ? principal : null;
+    }
+
+    private static final class CachedUser {
+        private final AuthenticatedUser user;
+        private final long expiresAt;
+
+        private CachedUser(AuthenticatedUser user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
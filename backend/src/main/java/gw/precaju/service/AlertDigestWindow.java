@@ -0,0 +1,152 @@
+package gw.precaju.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fenêtre de regroupement d'alertes par clé, bornée en mémoire.
+ *
+ * La première alerte d'une clé part immédiatement et ouvre une fenêtre ; les
+ * suivantes reçues pendant la fenêtre sont fusionnées (seule la dernière est
+ * conservée) et ressortent en un seul message à l'expiration via
+ * {@link #drainExpired(long)}. Les clés sont gardées dans l'ordre d'ouverture
+ * de leur fenêtre : le balayage s'arrête à la première fenêtre encore ouverte
+ * et, au-delà de {@code maxEntries}, la plus ancienne est évincée. Un résumé en
+ * attente dans une fenêtre évincée n'est pas perdu : il sort au prochain
+ * {@link #drainExpired(long)}, avant l'expiration de sa fenêtre.
+ */
+public class AlertDigestWindow<K, A> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertDigestWindow.class);
+
+    private final long windowMillis;
+    private final int maxEntries;
+    private final LinkedHashMap<K, Slot<A>> slots;
+    // Résumés des fenêtres évincées, envoyés au prochain vidage
+    private final List<Digest<K, A>> evicted = new ArrayList<>();
+    private long evictedPending;
+
+    public AlertDigestWindow(long windowMillis, int maxEntries) {
+        this.windowMillis = windowMillis;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.slots = new LinkedHashMap<>(256, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Slot<A>> eldest) {
+                if (size() <= AlertDigestWindow.this.maxEntries) {
+                    return false;
+                }
+                Slot<A> slot = eldest.getValue();
+                if (slot.pending != null) {
+                    evicted.add(new Digest<>(eldest.getKey(), slot.pending, slot.merged));
+                    evictedPending++;
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Retourne true si l'alerte doit être envoyée tout de suite, false si elle
+     * a été mise en attente dans la fenêtre courante.
+     */
+    public synchronized boolean offer(K key, A alert, long now) {
+        if (windowMillis <= 0) {
+            return true;
+        }
+        Slot<A> slot = slots.get(key);
+        if (slot == null || now - slot.openedAt >= windowMillis) {
+            // Une alerte plus récente remplace un éventuel résumé non encore vidé
+            slots.remove(key);
+            slots.put(key, new Slot<>(now));
+            return true;
+        }
+        slot.pending = alert;
+        slot.merged++;
+        return false;
+    }
+
+    /**
+     * Retire les fenêtres expirées et renvoie les résumés à envoyer, précédés de
+     * ceux des fenêtres évincées faute de place. Chaque résumé d'une fenêtre
+     * expirée ouvre une nouvelle fenêtre pour sa clé.
+     */
+    public synchronized List<Digest<K, A>> drainExpired(long now) {
+        List<Digest<K, A>> flushedEarly = new ArrayList<>(evicted);
+        evicted.clear();
+        if (!flushedEarly.isEmpty()) {
+            logger.warn("Alert digest window full ({} keys): {} pending digests flushed early", maxEntries,
+                    flushedEarly.size());
+        }
+        List<Digest<K, A>> digests = new ArrayList<>();
+        Iterator<Map.Entry<K, Slot<A>>> it = slots.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Slot<A>> entry = it.next();
+            Slot<A> slot = entry.getValue();
+            if (now - slot.openedAt < windowMillis) {
+                break;
+            }
+            it.remove();
+            if (slot.pending != null) {
+                digests.add(new Digest<>(entry.getKey(), slot.pending, slot.merged));
+            }
+        }
+        for (Digest<K, A> digest : digests) {
+            slots.put(digest.getKey(), new Slot<>(now));
+        }
+        flushedEarly.addAll(digests);
+        return flushedEarly;
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    /**
+     * Nombre de résumés sortis avant l'expiration de leur fenêtre, faute de place
+     */
+    public synchronized long getEvictedPending() {
+        return evictedPending;
+    }
+
+    private static final class Slot<A> {
+        private final long openedAt;
+        private A pending;
+        private int merged;
+
+        private Slot(long openedAt) {
+            this.openedAt = openedAt;
+        }
+    }
+
+    public static final class Digest<K, A> {
+        private final K key;
+        private final A alert;
+        private final int merged;
+
+        Digest(K key, A alert, int merged) {
+            this.key = key;
+            this.alert = alert;
+            this.merged = merged;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        /** Dernière alerte reçue pendant la fenêtre */
+        public A getAlert() {
+            return alert;
+        }
+
+        /** Nombre d'alertes fusionnées dans ce résumé */
+        public int getMerged() {
+            return merged;
+        }
+    }
+}
@@ -8,12 +8,15 @@ import gw.precaju.dto.request.RefreshTokenRequest;
 import gw.precaju.entity.RefreshToken;
 import gw.precaju.entity.User;
 import gw.precaju.entity.enums.UserRole;
+import gw.precaju.exception.InvalidRefreshTokenException;
 import gw.precaju.mapper.UserMapper;
 import gw.precaju.repository.RefreshTokenRepository;
 import gw.precaju.repository.UserRepository;
 import gw.precaju.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -22,7 +25,13 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -37,19 +46,28 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider tokenProvider;
     private final UserMapper userMapper;
+    private final LastLoginTracker lastLoginTracker;
+    private final int maxFamiliesPerUser;
+    private final Duration reuseGrace;
 
     public AuthService(AuthenticationManager authenticationManager,
             UserRepository userRepository,
             RefreshTokenRepository refreshTokenRepository,
             PasswordEncoder passwordEncoder,
             JwtTokenProvider tokenProvider,
-            UserMapper userMapper) {
+            UserMapper userMapper,
+            LastLoginTracker lastLoginTracker,
+            @Value("${app.security.refresh-token.max-families-per-user:5}") int maxFamiliesPerUser,
+            @Value("${app.security.refresh-token.reuse-grace:PT10S}") Duration reuseGrace) {
         this.authenticationManager = authenticationManager;
         this.userRepository = userRepository;
         this.refreshTokenRepository = refreshTokenRepository;
         this.passwordEncoder = passwordEncoder;
         this.tokenProvider = tokenProvider;
         this.userMapper = userMapper;
+        this.lastLoginTracker = lastLoginTracker;
+        this.maxFamiliesPerUser = Math.max(1, maxFamiliesPerUser);
+        this.reuseGrace = reuseGrace;
     }
 
     public AuthResponse login(LoginRequest loginRequest) {
@@ -73,19 +91,12 @@ public class AuthService {
         User user = userRepository.findByEmailAndActiveTrue(loginRequest.getEmail())
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        // Update last login
-        user.updateLastLogin();
-        userRepository.save(user);
+        // Record last login, written in batches by the tracker
+        lastLoginTracker.record(user.getId(), Instant.now());
 
         // Generate tokens
-        String accessToken = tokenProvider.generateAccessToken(authentication);
-        String refreshToken = tokenProvider.generateRefreshToken(user.getEmail());
-
-        // Save refresh token
-        saveRefreshToken(user, refreshToken);
-
-        // Clean old tokens if needed
-        cleanupOldTokensForUser(user);
+        String accessToken = tokenProvider.generateAccessToken(user);
+        String refreshToken = startRefreshTokenFamily(user);
 
         UserDTO userDTO = userMapper.toDTO(user);
 
@@ -124,11 +135,8 @@ public class AuthService {
                 registerRequest.getPassword());
 
         // Generate tokens
-        String accessToken = tokenProvider.generateAccessToken(user.getEmail());
-        String refreshToken = tokenProvider.generateRefreshToken(user.getEmail());
-
-        // Save refresh token
-        saveRefreshToken(user, refreshToken);
+        String accessToken = tokenProvider.generateAccessToken(user);
+        String refreshToken = startRefreshTokenFamily(user);
 
         UserDTO userDTO = userMapper.toDTO(user);
 
@@ -141,28 +149,48 @@ public class AuthService {
                 userDTO);
     }
 
+    @Transactional(noRollbackFor = InvalidRefreshTokenException.class)
     public AuthResponse refreshToken(RefreshTokenRequest request) {
         String refreshTokenValue = request.getRefreshToken();
 
-        RefreshToken refreshToken = refreshTokenRepository.findByToken(refreshTokenValue)
-                .orElseThrow(() -> new RuntimeException("Invalid refresh token"));
+        Claims claims = tokenProvider.parseValidClaims(refreshTokenValue);
+        if (claims == null || JwtTokenProvider.TOKEN_TYPE_ACCESS.equals(
+                claims.get(JwtTokenProvider.CLAIM_TOKEN_TYPE, String.class))) {
+            throw new InvalidRefreshTokenException("Invalid refresh token");
+        }
 
-        if (refreshToken.isExpired()) {
+        String tokenHash = hashToken(refreshTokenValue);
+        String familyId = claims.get(JwtTokenProvider.CLAIM_FAMILY, String.class);
+        Optional<RefreshToken> family = familyId != null
+                ? refreshTokenRepository.findFamilyForUpdate(UUID.fromString(familyId))
+                : refreshTokenRepository.findByTokenHashForUpdate(tokenHash);
+        RefreshToken refreshToken = family
+                .orElseThrow(() -> new InvalidRefreshTokenException("Invalid refresh token"));
+
+        if (!tokenHash.equals(refreshToken.getTokenHash())) {
+            if (isRecentlyRotated(refreshToken, tokenHash)) {
+                // Rafraîchissement concurrent du même jeton (plusieurs onglets) : refusé sans révocation
+                throw new InvalidRefreshTokenException("Refresh token already rotated");
+            }
+            // Un jeton déjà remplacé est rejoué : la famille entière est révoquée
             refreshTokenRepository.delete(refreshToken);
-            throw new RuntimeException("Refresh token has expired");
+            logger.warn("Refresh token reuse detected for user {}, token family {} revoked",
+                    refreshToken.getUser().getId(), refreshToken.getId());
+            throw new InvalidRefreshTokenException("Refresh token reuse detected");
         }
 
         User user = refreshToken.getUser();
+        if (refreshToken.isExpired() || !Boolean.TRUE.equals(user.getActive())) {
+            refreshTokenRepository.delete(refreshToken);
+            throw new InvalidRefreshTokenException("Refresh token has expired");
+        }
 
         // Generate new access token
-        String newAccessToken = tokenProvider.generateAccessToken(user.getEmail());
-
-        // Optionally generate new refresh token
-        String newRefreshToken = tokenProvider.generateRefreshToken(user.getEmail());
+        String newAccessToken = tokenProvider.generateAccessToken(user);
 
-        // Delete old refresh token and save new one
-        refreshTokenRepository.delete(refreshToken);
-        saveRefreshToken(user, newRefreshToken);
+        // Rotation : le nouveau jeton remplace l'ancien dans la même famille
+        String newRefreshToken = tokenProvider.generateRefreshToken(user.getEmail(), refreshToken.getId());
+        refreshToken.rotate(hashToken(newRefreshToken), refreshTokenExpiry());
 
         UserDTO userDTO = userMapper.toDTO(user);
 
@@ -176,7 +204,7 @@ public class AuthService {
     }
 
     public void logout(String refreshTokenValue) {
-        RefreshToken refreshToken = refreshTokenRepository.findByToken(refreshTokenValue)
+        RefreshToken refreshToken = refreshTokenRepository.findByTokenHash(hashToken(refreshTokenValue))
                 .orElse(null);
 
         if (refreshToken != null) {
@@ -185,19 +213,38 @@ public class AuthService {
         }
     }
 
-    private void saveRefreshToken(User user, String tokenValue) {
-        Instant expiryDate = Instant.now().plusMillis(tokenProvider.getRefreshTokenExpirationMs());
+    /**
+     * Ouvre une nouvelle famille de refresh tokens : une suppression indexée
+     * (familles expirées ou en surnombre) puis une insertion
+     */
+    private String startRefreshTokenFamily(User user) {
+        refreshTokenRepository.pruneFamiliesForUser(user.getId(), Instant.now(), maxFamiliesPerUser - 1);
 
-        RefreshToken refreshToken = new RefreshToken(tokenValue, user, expiryDate);
-        refreshTokenRepository.save(refreshToken);
+        UUID familyId = UUID.randomUUID();
+        String tokenValue = tokenProvider.generateRefreshToken(user.getEmail(), familyId);
+        refreshTokenRepository.save(new RefreshToken(familyId, hashToken(tokenValue), user, refreshTokenExpiry()));
+        return tokenValue;
     }
 
-    private void cleanupOldTokensForUser(User user) {
-        int maxTokensPerUser = 5; // Allow max 5 active sessions per user
-        int currentTokenCount = refreshTokenRepository.countByUser(user);
+    private boolean isRecentlyRotated(RefreshToken refreshToken, String tokenHash) {
+        return tokenHash.equals(refreshToken.getPreviousTokenHash())
+                && refreshToken.getRotatedAt() != null
+                && refreshToken.getRotatedAt().plus(reuseGrace).isAfter(Instant.now());
+    }
+
+    private Instant refreshTokenExpiry() {
+        return Instant.now().plusMillis(tokenProvider.getRefreshTokenExpirationMs());
+    }
 
-        if (currentTokenCount >= maxTokensPerUser) {
-            refreshTokenRepository.deleteOldestTokensForUser(user, maxTokensPerUser - 1);
+    /**
+     * Seul le hash SHA-256 (hexadécimal, 64 caractères) du jeton est stocké
+     */
+    static String hashToken(String tokenValue) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(tokenValue.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 
@@ -212,10 +259,11 @@ public class AuthService {
         return userRepository.findByEmailAndActiveTrue(email).orElse(null);
     }
 
-    // Cleanup expired tokens (should be called periodically)
-    public void cleanupExpiredTokens() {
-        refreshTokenRepository.deleteExpiredTokens(Instant.now());
-        logger.info("Expired refresh tokens cleaned up");
+    /**
+     * Supprime un lot de familles expirées, chaque lot dans sa propre transaction
+     */
+    public int purgeExpiredTokenBatch(int batchSize) {
+        return refreshTokenRepository.deleteExpiredBatch(Instant.now(), batchSize);
     }
 
     /**
@@ -0,0 +1,149 @@
+package gw.precaju.service;
+
+import gw.precaju.dto.ExportateurDTO;
+import gw.precaju.event.ExportateurChangedEvent;
+import gw.precaju.event.ExportateurStatusChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches des exportateurs consultés par la vérification des QR codes.
+ *
+ * Les entrées ont une durée de vie courte, qui borne le retard d'une
+ * modification faite par une autre instance, et le nombre d'entrées est
+ * plafonné. Sur cette instance, les entrées d'un exportateur modifié sont
+ * évincées après le commit (événements exportateur) ; une lecture commencée
+ * avant une éviction ne remet pas en cache l'état qu'elle a lu.
+ */
+@Component
+public class ExportateurLookupCache {
+
+    private final ExpiringCache<UUID> byId;
+    private final ExpiringCache<String> byQrCodeToken;
+
+    @Autowired
+    public ExportateurLookupCache(@Value("${app.exportateurs.cache.ttl:PT30S}") Duration ttl,
+            @Value("${app.exportateurs.cache.max-entries:10000}") int maxEntries) {
+        this(ttl, maxEntries, System::currentTimeMillis);
+    }
+
+    ExportateurLookupCache(Duration ttl, int maxEntries, LongSupplier clock) {
+        this.byId = new ExpiringCache<>(ttl.toMillis(), maxEntries, clock);
+        this.byQrCodeToken = new ExpiringCache<>(ttl.toMillis(), maxEntries, clock);
+    }
+
+    /**
+     * Exportateur par id, chargé par {@code loader} si absent ou expiré
+     */
+    public Optional<ExportateurDTO> findById(UUID id, Function<UUID, Optional<ExportateurDTO>> loader) {
+        return byId.get(id, loader);
+    }
+
+    /**
+     * Exportateur par token QR historique, chargé par {@code loader} si absent ou expiré
+     */
+    public Optional<ExportateurDTO> findByQrCodeToken(String qrCodeToken,
+            Function<String, Optional<ExportateurDTO>> loader) {
+        return byQrCodeToken.get(qrCodeToken, loader);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExportateurChanged(ExportateurChangedEvent event) {
+        evict(Set.of(event.getExportateurId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExportateurStatusChanged(ExportateurStatusChangedEvent event) {
+        evict(Set.copyOf(event.getExportateurIds()));
+    }
+
+    /**
+     * Évince toutes les entrées des exportateurs donnés
+     */
+    public void evict(Collection<UUID> exportateurIds) {
+        byId.evict(exportateurIds);
+        byQrCodeToken.evict(exportateurIds);
+    }
+
+    int size() {
+        return byId.size() + byQrCodeToken.size();
+    }
+
+    /**
+     * Map à durée de vie bornée ; la génération, incrémentée à chaque éviction,
+     * écarte les chargements commencés avant celle-ci
+     */
+    static final class ExpiringCache<K> {
+
+        private final Map<K, Entry> entries = new ConcurrentHashMap<>();
+        private final AtomicLong generation = new AtomicLong();
+        private final long ttlMillis;
+        private final int maxEntries;
+        private final LongSupplier clock;
+
+        ExpiringCache(long ttlMillis, int maxEntries, LongSupplier clock) {
+            this.ttlMillis = ttlMillis;
+            this.maxEntries = Math.max(1, maxEntries);
+            this.clock = clock;
+        }
+
+        Optional<ExportateurDTO> get(K key, Function<K, Optional<ExportateurDTO>> loader) {
+            Entry cached = entries.get(key);
+            if (cached != null && cached.expiresAt > clock.getAsLong()) {
+                return Optional.of(cached.value);
+            }
+
+            long loadGeneration = generation.get();
+            Optional<ExportateurDTO> loaded = loader.apply(key);
+            if (loaded.isEmpty() || ttlMillis <= 0) {
+                return loaded;
+            }
+            if (entries.size() >= maxEntries) {
+                long now = clock.getAsLong();
+                entries.values().removeIf(entry -> entry.expiresAt <= now);
+                if (entries.size() >= maxEntries) {
+                    entries.clear();
+                }
+            }
+            Entry entry = new Entry(loaded.get(), clock.getAsLong() + ttlMillis);
+            entries.put(key, entry);
+            if (generation.get() != loadGeneration) {
+                // Une éviction a eu lieu pendant le chargement : la valeur lue peut être périmée
+                entries.remove(key, entry);
+            }
+            return loaded;
+        }
+
+        void evict(Collection<UUID> exportateurIds) {
+            generation.incrementAndGet();
+            entries.values().removeIf(entry -> exportateurIds.contains(entry.value.getId()));
+        }
+
+        int size() {
+            return entries.size();
+        }
+    }
+
+    private static final class Entry {
+        private final ExportateurDTO value;
+        private final long expiresAt;
+
+        private Entry(ExportateurDTO value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
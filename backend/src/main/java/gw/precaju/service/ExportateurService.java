@@ -1,7 +1,10 @@
 package gw.precaju.service;
 
 import gw.precaju.dto.ExportateurDTO;
+import gw.precaju.dto.ExportateurImportResultDTO;
+import gw.precaju.dto.ExportateurImportResultDTO.RowResult;
 import gw.precaju.dto.PageResponse;
+import gw.precaju.dto.QRRevocationDTO;
 import gw.precaju.dto.VerificationResultDTO;
 import gw.precaju.dto.request.ExportateurCreateRequest;
 import gw.precaju.dto.request.ExportateurUpdateRequest;
@@ -10,19 +13,31 @@ import gw.precaju.entity.Region;
 import gw.precaju.entity.VerificationLog;
 import gw.precaju.entity.enums.ExportateurType;
 import gw.precaju.entity.enums.StatutType;
+import gw.precaju.event.ExportateurChangedEvent;
+import gw.precaju.event.ExportateurStatusChangedEvent;
+import gw.precaju.event.VerificationLoggedEvent;
 import gw.precaju.mapper.ExportateurMapper;
 import gw.precaju.repository.ExportateurRepository;
 import gw.precaju.repository.RegionRepository;
 import gw.precaju.repository.VerificationLogRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -31,23 +46,39 @@ import java.util.stream.Collectors;
 public class ExportateurService {
 
     private static final Logger logger = LoggerFactory.getLogger(ExportateurService.class);
+    private static final int IMPORT_BATCH_SIZE = 50;
+    private static final int MAX_TOKEN_RESOLUTION_ROUNDS = 5;
 
     private final ExportateurRepository exportateurRepository;
     private final RegionRepository regionRepository;
     private final VerificationLogRepository verificationLogRepository;
     private final ExportateurMapper exportateurMapper;
     private final QRCodeService qrCodeService;
+    private final SignedQRTokenService signedQRTokenService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+
+    // Caches par token QR et par id (vérification des tokens signés)
+    private final ExportateurLookupCache lookupCache;
 
     public ExportateurService(ExportateurRepository exportateurRepository,
             RegionRepository regionRepository,
             VerificationLogRepository verificationLogRepository,
             ExportateurMapper exportateurMapper,
-            QRCodeService qrCodeService) {
+            QRCodeService qrCodeService,
+            SignedQRTokenService signedQRTokenService,
+            ApplicationEventPublisher eventPublisher,
+            Validator validator,
+            ExportateurLookupCache lookupCache) {
         this.exportateurRepository = exportateurRepository;
         this.regionRepository = regionRepository;
         this.verificationLogRepository = verificationLogRepository;
         this.exportateurMapper = exportateurMapper;
         this.qrCodeService = qrCodeService;
+        this.signedQRTokenService = signedQRTokenService;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
+        this.lookupCache = lookupCache;
     }
 
     /**
@@ -66,8 +97,9 @@ public class ExportateurService {
     @Transactional(readOnly = true)
     public Optional<ExportateurDTO> findByQrCodeToken(String qrCodeToken) {
         logger.info("Finding exportateur by QR code token: {}", qrCodeToken);
-        return exportateurRepository.findByQrCodeToken(qrCodeToken)
-                .map(exportateurMapper::toDTO);
+
+        return lookupCache.findByQrCodeToken(qrCodeToken,
+                token -> exportateurRepository.findByQrCodeToken(token).map(exportateurMapper::toDTO));
     }
 
     /**
@@ -78,6 +110,10 @@ public class ExportateurService {
             String userAgent) {
         logger.info("Verifying exportateur by QR code token: {}", qrCodeToken);
 
+        if (signedQRTokenService.isSignedToken(qrCodeToken)) {
+            return verifySignedToken(qrCodeToken, userSession, ipAddress, userAgent);
+        }
+
         Optional<Exportateur> exportateurOpt = exportateurRepository.findByQrCodeToken(qrCodeToken);
 
         if (exportateurOpt.isEmpty()) {
@@ -88,8 +124,9 @@ public class ExportateurService {
 
         Exportateur exportateur = exportateurOpt.get();
 
-        // Vérifier le statut
-        if (exportateur.isExpire()) {
+        // Vérifier le statut (maintenu en base par expireOverdueExportateurs,
+        // la date n'est qu'un filet de sécurité entre deux exécutions)
+        if (StatutType.EXPIRE.equals(exportateur.getStatut()) || exportateur.isExpire()) {
             logger.warn("Exportateur expired: {}", exportateur.getId());
             logVerification(exportateur, userSession, "EXPIRED", ipAddress, userAgent);
             return VerificationResultDTO.expired();
@@ -106,6 +143,74 @@ public class ExportateurService {
         return exportateurMapper.toSuccessVerificationResult(exportateur);
     }
 
+    /**
+     * Vérifie un token signé : signature et expiration sans accès à la base, puis
+     * contrôle de révocation sur l'exportateur (servi depuis le cache par id)
+     */
+    private VerificationResultDTO verifySignedToken(String token, String userSession, String ipAddress,
+            String userAgent) {
+        Optional<SignedQRTokenService.SignedQRToken> signedOpt = signedQRTokenService.verify(token);
+        if (signedOpt.isEmpty()) {
+            logger.warn("Invalid signed QR code token");
+            logVerification(token, userSession, "INVALID_TOKEN", ipAddress, userAgent);
+            return VerificationResultDTO.invalidToken();
+        }
+
+        SignedQRTokenService.SignedQRToken signed = signedOpt.get();
+        Optional<ExportateurDTO> exportateurOpt = findCachedById(signed.getExportateurId());
+        if (exportateurOpt.isEmpty()) {
+            logger.warn("Exportateur not found for signed QR code token: {}", signed.getExportateurId());
+            logVerification(token, userSession, "NOT_FOUND", ipAddress, userAgent);
+            return VerificationResultDTO.notFound();
+        }
+
+        ExportateurDTO exportateur = exportateurOpt.get();
+        Exportateur reference = exportateurRepository.getReferenceById(exportateur.getId());
+
+        if (signed.isExpired(LocalDate.now()) || StatutType.EXPIRE.equals(exportateur.getStatut())) {
+            logger.warn("Exportateur expired: {}", exportateur.getId());
+            logVerification(reference, userSession, "EXPIRED", ipAddress, userAgent);
+            return VerificationResultDTO.expired();
+        }
+
+        if (StatutType.SUSPENDU.equals(exportateur.getStatut())) {
+            logger.warn("Exportateur suspended: {}", exportateur.getId());
+            logVerification(reference, userSession, "SUSPENDED", ipAddress, userAgent);
+            return VerificationResultDTO.suspended();
+        }
+
+        if (signed.getStatutVersion() != exportateur.getStatutVersion()) {
+            logger.warn("Revoked signed QR code token for exportateur: {}", exportateur.getId());
+            logVerification(reference, userSession, "REVOKED", ipAddress, userAgent);
+            return VerificationResultDTO.revoked();
+        }
+
+        logger.info("Exportateur verified successfully: {}", exportateur.getId());
+        logVerification(reference, userSession, "SUCCESS", ipAddress, userAgent);
+        return VerificationResultDTO.success(exportateur);
+    }
+
+    private Optional<ExportateurDTO> findCachedById(UUID id) {
+        return lookupCache.findById(id, key -> exportateurRepository.findById(key).map(exportateurMapper::toDTO));
+    }
+
+    /**
+     * Émet le token QR signé d'un exportateur (contenu des badges imprimés)
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> getSignedQrCodeToken(UUID id) {
+        return exportateurRepository.findById(id)
+                .map(e -> signedQRTokenService.sign(e.getId(), e.getDateExpiration(), e.getStatutVersion()));
+    }
+
+    /**
+     * Liste de révocation pour la vérification hors ligne des tokens signés
+     */
+    @Transactional(readOnly = true)
+    public List<QRRevocationDTO> getRevocations() {
+        return exportateurRepository.findRevocations(StatutType.ACTIF);
+    }
+
     /**
      * Crée un nouvel exportateur (admin seulement)
      */
@@ -146,11 +251,176 @@ public class ExportateurService {
         exportateur.setStatut(request.getStatut());
 
         Exportateur saved = exportateurRepository.save(exportateur);
+        eventPublisher.publishEvent(ExportateurChangedEvent.saved(saved));
         logger.info("Exportateur created successfully with id: {}", saved.getId());
 
         return exportateurMapper.toDTO(saved);
     }
 
+    /**
+     * Importe un lot d'exportateurs (admin seulement).
+     * Les lignes sont validées contre un seul pré-chargement des régions, des numéros
+     * d'agrément et des tokens QR existants, puis insérées par lots JDBC. Les lignes
+     * invalides sont rejetées individuellement sans bloquer le reste de l'import.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public ExportateurImportResultDTO importBulk(List<ExportateurCreateRequest> requests, boolean dryRun) {
+        logger.info("Importing {} exportateurs (dryRun: {})", requests.size(), dryRun);
+
+        Map<String, Region> regionsByCode = new HashMap<>();
+        for (Region region : regionRepository.findByActiveTrue()) {
+            regionsByCode.put(region.getCode(), region);
+        }
+
+        Set<String> numeros = new HashSet<>();
+        for (ExportateurCreateRequest request : requests) {
+            if (request != null && request.getNumeroAgrement() != null) {
+                numeros.add(request.getNumeroAgrement());
+            }
+        }
+        Set<String> existingNumeros = numeros.isEmpty() ? Set.of()
+                : exportateurRepository.findExistingNumerosAgrement(numeros);
+
+        // 1. Validation de chaque ligne
+        List<RowResult> rows = new ArrayList<>(requests.size());
+        Set<String> numerosInFile = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ExportateurCreateRequest request = requests.get(i);
+            RowResult row = new RowResult(i, request != null ? request.getNumeroAgrement() : null);
+            rows.add(row);
+
+            if (request == null) {
+                row.reject("Ligne vide");
+                continue;
+            }
+            for (ConstraintViolation<ExportateurCreateRequest> violation : validator.validate(request)) {
+                row.reject(violation.getPropertyPath() + ": " + violation.getMessage());
+            }
+            if (request.getRegionCode() != null && !regionsByCode.containsKey(request.getRegionCode())) {
+                row.reject("Région non trouvée: " + request.getRegionCode());
+            }
+            if (request.getDateCertification() != null && request.getDateExpiration() != null
+                    && !request.getDateExpiration().isAfter(request.getDateCertification())) {
+                row.reject("La date d'expiration doit être postérieure à la date de certification");
+            }
+            if (request.getNumeroAgrement() != null) {
+                if (existingNumeros.contains(request.getNumeroAgrement())) {
+                    row.reject("Un exportateur avec ce numéro d'agrément existe déjà");
+                } else if (!numerosInFile.add(request.getNumeroAgrement())) {
+                    row.reject("Numéro d'agrément en double dans le fichier");
+                }
+            }
+            if (!row.isRejected()) {
+                row.setResult(RowResult.VALID);
+            }
+        }
+
+        // 2. Génération des tokens QR uniques en mémoire
+        List<Integer> validIndexes = new ArrayList<>();
+        for (RowResult row : rows) {
+            if (!row.isRejected()) {
+                validIndexes.add(row.getRowIndex());
+            }
+        }
+        Map<Integer, String> tokens = generateImportTokens(requests, validIndexes);
+
+        // 3. Insertion par lots
+        if (!dryRun && !validIndexes.isEmpty()) {
+            List<Exportateur> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            List<RowResult> batchRows = new ArrayList<>(IMPORT_BATCH_SIZE);
+            for (Integer index : validIndexes) {
+                ExportateurCreateRequest request = requests.get(index);
+                batch.add(toEntity(request, regionsByCode.get(request.getRegionCode()), tokens.get(index)));
+                batchRows.add(rows.get(index));
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    saveImportBatch(batch, batchRows);
+                }
+            }
+            saveImportBatch(batch, batchRows);
+        } else {
+            for (Integer index : validIndexes) {
+                rows.get(index).setQrCodeToken(tokens.get(index));
+            }
+        }
+
+        ExportateurImportResultDTO result = new ExportateurImportResultDTO(dryRun, rows);
+        logger.info("Exportateur import finished - total: {}, created: {}, rejected: {}",
+                result.getTotalRows(), result.getCreatedCount(), result.getRejectedCount());
+        return result;
+    }
+
+    /**
+     * Attribue un token QR unique à chaque ligne valide. Les collisions internes au
+     * fichier sont résolues en mémoire ; celles avec la base sont détectées par une
+     * requête IN par passe (une seule dans le cas normal).
+     */
+    private Map<Integer, String> generateImportTokens(List<ExportateurCreateRequest> requests,
+            List<Integer> indexes) {
+        Map<Integer, String> tokens = new HashMap<>();
+        Set<String> takenTokens = new HashSet<>();
+        List<Integer> pending = indexes;
+
+        for (int round = 0; !pending.isEmpty(); round++) {
+            if (round >= MAX_TOKEN_RESOLUTION_ROUNDS) {
+                throw new IllegalStateException("Impossible de générer des tokens QR uniques pour l'import");
+            }
+
+            for (Integer index : pending) {
+                ExportateurCreateRequest request = requests.get(index);
+                tokens.put(index, qrCodeService.generateUniqueQRCodeTokenForExportateur(
+                        request.getNumeroAgrement(), request.getRegionCode(), takenTokens));
+            }
+
+            Set<String> candidates = new HashSet<>();
+            for (Integer index : pending) {
+                candidates.add(tokens.get(index));
+            }
+            Set<String> existing = exportateurRepository.findExistingQrCodeTokens(candidates);
+
+            List<Integer> conflicting = new ArrayList<>();
+            for (Integer index : pending) {
+                if (existing.contains(tokens.get(index))) {
+                    conflicting.add(index);
+                }
+            }
+            // Les tokens pris en base restent dans takenTokens pour la passe suivante
+            pending = conflicting;
+        }
+        return tokens;
+    }
+
+    private Exportateur toEntity(ExportateurCreateRequest request, Region region, String qrCodeToken) {
+        Exportateur exportateur = new Exportateur();
+        exportateur.setNom(request.getNom());
+        exportateur.setNumeroAgrement(request.getNumeroAgrement());
+        exportateur.setType(request.getType());
+        exportateur.setRegion(region);
+        exportateur.setTelephone(request.getTelephone());
+        exportateur.setEmail(request.getEmail());
+        exportateur.setQrCodeToken(qrCodeToken);
+        exportateur.setDateCertification(request.getDateCertification());
+        exportateur.setDateExpiration(request.getDateExpiration());
+        exportateur.setStatut(request.getStatut() != null ? request.getStatut() : StatutType.ACTIF);
+        return exportateur;
+    }
+
+    private void saveImportBatch(List<Exportateur> batch, List<RowResult> batchRows) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Exportateur> saved = exportateurRepository.saveAll(batch);
+        exportateurRepository.flush();
+        for (int i = 0; i < saved.size(); i++) {
+            RowResult row = batchRows.get(i);
+            row.setResult(RowResult.CREATED);
+            row.setExportateurId(saved.get(i).getId());
+            row.setQrCodeToken(saved.get(i).getQrCodeToken());
+            eventPublisher.publishEvent(ExportateurChangedEvent.saved(saved.get(i)));
+        }
+        batch.clear();
+        batchRows.clear();
+    }
+
     /**
      * Met à jour un exportateur (admin seulement)
      */
@@ -172,14 +442,23 @@ public class ExportateurService {
                     if (request.getDateCertification() != null) {
                         existing.setDateCertification(request.getDateCertification());
                     }
-                    if (request.getDateExpiration() != null) {
+                    boolean statutChanged = false;
+                    if (request.getDateExpiration() != null
+                            && !request.getDateExpiration().equals(existing.getDateExpiration())) {
                         existing.setDateExpiration(request.getDateExpiration());
+                        statutChanged = true;
                     }
-                    if (request.getStatut() != null) {
+                    if (request.getStatut() != null && request.getStatut() != existing.getStatut()) {
                         existing.setStatut(request.getStatut());
+                        statutChanged = true;
+                    }
+                    if (statutChanged) {
+                        // Les tokens signés émis avant ce changement deviennent révoqués
+                        existing.incrementStatutVersion();
                     }
 
                     Exportateur saved = exportateurRepository.save(existing);
+                    eventPublisher.publishEvent(ExportateurChangedEvent.saved(saved));
                     logger.info("Exportateur updated successfully: {}", saved.getId());
                     return exportateurMapper.toDTO(saved);
                 });
@@ -192,8 +471,10 @@ public class ExportateurService {
     public boolean delete(UUID id) {
         logger.info("Deleting exportateur: {}", id);
 
-        if (exportateurRepository.existsById(id)) {
-            exportateurRepository.deleteById(id);
+        Optional<Exportateur> existing = exportateurRepository.findById(id);
+        if (existing.isPresent()) {
+            exportateurRepository.delete(existing.get());
+            eventPublisher.publishEvent(ExportateurChangedEvent.deleted(id));
             logger.info("Exportateur deleted successfully: {}", id);
             return true;
         }
@@ -203,12 +484,46 @@ public class ExportateurService {
     }
 
     /**
-     * Récupère les statistiques des exportateurs
+     * Passe au statut EXPIRE, en un seul UPDATE, tous les exportateurs actifs
+     * dont la date d'expiration est dépassée. Les exportateurs suspendus gardent
+     * leur statut.
+     *
+     * @return le nombre d'exportateurs mis à jour
+     */
+    public int expireOverdueExportateurs() {
+        LocalDate today = LocalDate.now();
+
+        List<Object[]> overdue = exportateurRepository.findOverdueIdAndTokenByStatut(today, StatutType.ACTIF);
+        if (overdue.isEmpty()) {
+            logger.debug("No overdue exportateurs to expire");
+            return 0;
+        }
+
+        int updated = exportateurRepository.updateOverdueStatut(today, StatutType.ACTIF, StatutType.EXPIRE);
+
+        List<UUID> ids = new ArrayList<>(overdue.size());
+        for (Object[] row : overdue) {
+            ids.add((UUID) row[0]);
+        }
+
+        eventPublisher.publishEvent(new ExportateurStatusChangedEvent(ids, StatutType.ACTIF, StatutType.EXPIRE));
+        logger.info("Expired {} exportateurs past their expiration date", updated);
+        return updated;
+    }
+
+    /**
+     * Récupère les tokens QR signés des exportateurs d'une région, indexés par
+     * numéro d'agrément (impression des badges)
      */
     @Transactional(readOnly = true)
-    public List<Object[]> getStatistics() {
-        logger.info("Getting exportateur statistics");
-        return exportateurRepository.countByRegionAndStatut();
+    public Map<String, String> getSignedQrCodeTokensByRegion(String regionCode) {
+        logger.info("Issuing signed QR tokens for region: {}", regionCode);
+        Map<String, String> tokens = new LinkedHashMap<>();
+        for (Exportateur e : exportateurRepository.findByRegionCodeOrderByNomAsc(regionCode)) {
+            tokens.put(e.getNumeroAgrement(),
+                    signedQRTokenService.sign(e.getId(), e.getDateExpiration(), e.getStatutVersion()));
+        }
+        return tokens;
     }
 
     /**
@@ -233,6 +548,7 @@ public class ExportateurService {
             String userAgent) {
         VerificationLog log = new VerificationLog(exportateur, userSession, result, ipAddress, userAgent);
         verificationLogRepository.save(log);
+        eventPublisher.publishEvent(new VerificationLoggedEvent(exportateur.getId(), result));
     }
 
     /**
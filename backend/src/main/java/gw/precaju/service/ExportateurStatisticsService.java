@@ -0,0 +1,278 @@
+package gw.precaju.service;
+
+import gw.precaju.entity.enums.ExportateurType;
+import gw.precaju.entity.enums.StatutType;
+import gw.precaju.event.ExportateurChangedEvent;
+import gw.precaju.event.ExportateurStatusChangedEvent;
+import gw.precaju.event.VerificationLoggedEvent;
+import gw.precaju.repository.ExportateurRepository;
+import gw.precaju.repository.VerificationLogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiques des exportateurs servies depuis la mémoire.
+ *
+ * Les compteurs région×statut, type×statut et le nombre de vérifications par
+ * exportateur sont maintenus de façon incrémentale à partir des événements
+ * exportateur/vérification (après commit), et une tâche de réconciliation les
+ * reconstruit périodiquement depuis la base pour corriger toute dérive.
+ *
+ * La base est lue hors verrou : les événements exportateur reçus pendant la
+ * lecture sont rejoués sur l'état reconstruit, et les compteurs de
+ * vérifications ne sont remplacés que si aucune vérification n'a été comptée
+ * entre-temps.
+ */
+@Service
+public class ExportateurStatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportateurStatisticsService.class);
+
+    private final ExportateurRepository exportateurRepository;
+    private final VerificationLogRepository verificationLogRepository;
+
+    // Index id -> attributs comptés, nécessaire pour calculer les deltas
+    private Map<UUID, Entry> entries = new HashMap<>();
+    private Map<String, Map<StatutType, Long>> countsByRegion = new TreeMap<>();
+    private Map<ExportateurType, Map<StatutType, Long>> countsByType = new TreeMap<>();
+    private volatile Map<UUID, LongAdder> verificationCounts = new ConcurrentHashMap<>();
+    // Événements exportateur reçus pendant une réconciliation, null hors réconciliation
+    private List<Object> eventsDuringReconcile;
+    private final AtomicLong verificationEvents = new AtomicLong();
+    private final Object reconcileLock = new Object();
+
+    public ExportateurStatisticsService(ExportateurRepository exportateurRepository,
+                                        VerificationLogRepository verificationLogRepository) {
+        this.exportateurRepository = exportateurRepository;
+        this.verificationLogRepository = verificationLogRepository;
+    }
+
+    /**
+     * Comptes par région et statut : [regionCode, statut, count]
+     */
+    public synchronized List<Object[]> getCountsByRegionAndStatut() {
+        List<Object[]> rows = new ArrayList<>();
+        countsByRegion.forEach((region, counts) ->
+                counts.forEach((statut, count) -> rows.add(new Object[] { region, statut, count })));
+        return rows;
+    }
+
+    /**
+     * Comptes par type et statut : [type, statut, count]
+     */
+    public synchronized List<Object[]> getCountsByTypeAndStatut() {
+        List<Object[]> rows = new ArrayList<>();
+        countsByType.forEach((type, counts) ->
+                counts.forEach((statut, count) -> rows.add(new Object[] { type, statut, count })));
+        return rows;
+    }
+
+    /**
+     * Exportateurs les plus vérifiés, par nombre décroissant de vérifications
+     */
+    public List<Map<String, Object>> getMostVerified(int limit) {
+        List<Map.Entry<UUID, Long>> counts = new ArrayList<>();
+        verificationCounts.forEach((id, adder) -> counts.add(Map.entry(id, adder.sum())));
+        counts.sort(Map.Entry.<UUID, Long>comparingByValue(Comparator.reverseOrder()));
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<UUID, Long> count : counts) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                Entry entry = entries.get(count.getKey());
+                if (entry == null) {
+                    continue;
+                }
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("exportateurId", count.getKey());
+                row.put("nom", entry.nom);
+                row.put("regionCode", entry.regionCode);
+                row.put("verificationCount", count.getValue());
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onExportateurChanged(ExportateurChangedEvent event) {
+        applyChanged(event);
+        if (eventsDuringReconcile != null) {
+            eventsDuringReconcile.add(event);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onExportateurStatusChanged(ExportateurStatusChangedEvent event) {
+        applyStatusChanged(event);
+        if (eventsDuringReconcile != null) {
+            eventsDuringReconcile.add(event);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVerificationLogged(VerificationLoggedEvent event) {
+        if (event.getExportateurId() != null) {
+            verificationEvents.incrementAndGet();
+            verificationCounts.computeIfAbsent(event.getExportateurId(), id -> new LongAdder()).increment();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reconcile();
+    }
+
+    /**
+     * Reconstruit les compteurs depuis la base et remplace l'état en mémoire
+     */
+    @Scheduled(fixedDelayString = "${app.exportateurs.statistics.reconcile-interval:PT15M}",
+            initialDelayString = "${app.exportateurs.statistics.reconcile-interval:PT15M}")
+    public void reconcile() {
+        synchronized (reconcileLock) {
+            synchronized (this) {
+                eventsDuringReconcile = new ArrayList<>();
+            }
+            try {
+                long verificationsBefore = verificationEvents.get();
+                Map<UUID, Entry> newEntries = new HashMap<>();
+                for (Object[] row : exportateurRepository.findStatisticsRows()) {
+                    newEntries.put((UUID) row[0],
+                            new Entry((String) row[1], (String) row[2], (ExportateurType) row[3], (StatutType) row[4]));
+                }
+
+                Map<UUID, LongAdder> newVerificationCounts = new ConcurrentHashMap<>();
+                for (Object[] row : verificationLogRepository.countVerificationsByExportateur()) {
+                    if (row[0] != null) {
+                        LongAdder adder = new LongAdder();
+                        adder.add((Long) row[1]);
+                        newVerificationCounts.put((UUID) row[0], adder);
+                    }
+                }
+
+                synchronized (this) {
+                    Map<String, Map<StatutType, Long>> previousByRegion = countsByRegion;
+                    entries = new HashMap<>();
+                    countsByRegion = new TreeMap<>();
+                    countsByType = new TreeMap<>();
+                    newEntries.forEach((id, entry) -> {
+                        entries.put(id, entry);
+                        apply(entry, 1);
+                    });
+                    // Rejoue les modifications validées pendant la lecture (idempotentes)
+                    for (Object event : eventsDuringReconcile) {
+                        if (event instanceof ExportateurChangedEvent changed) {
+                            applyChanged(changed);
+                        } else if (event instanceof ExportateurStatusChangedEvent statusChanged) {
+                            applyStatusChanged(statusChanged);
+                        }
+                    }
+                    // Une vérification comptée pendant la lecture peut manquer (ou figurer) dans le
+                    // comptage : les compteurs courants sont conservés jusqu'à la prochaine réconciliation
+                    if (verificationEvents.get() == verificationsBefore) {
+                        verificationCounts = newVerificationCounts;
+                    }
+
+                    if (!previousByRegion.isEmpty() && !previousByRegion.equals(countsByRegion)) {
+                        logger.warn("Exportateur statistics drifted from database, counters rebuilt");
+                    }
+                }
+                logger.debug("Exportateur statistics reconciled: {} exportateurs", newEntries.size());
+            } catch (Exception e) {
+                logger.error("Error reconciling exportateur statistics", e);
+            } finally {
+                synchronized (this) {
+                    eventsDuringReconcile = null;
+                }
+            }
+        }
+    }
+
+    private void applyChanged(ExportateurChangedEvent event) {
+        Entry previous = entries.remove(event.getExportateurId());
+        if (previous != null) {
+            apply(previous, -1);
+        }
+        if (event.isDeleted()) {
+            verificationCounts.remove(event.getExportateurId());
+            return;
+        }
+
+        Entry entry = new Entry(event.getNom(), event.getRegionCode(), event.getType(), event.getStatut());
+        entries.put(event.getExportateurId(), entry);
+        apply(entry, 1);
+    }
+
+    private void applyStatusChanged(ExportateurStatusChangedEvent event) {
+        for (UUID id : event.getExportateurIds()) {
+            Entry previous = entries.get(id);
+            if (previous == null || previous.statut == event.getNewStatut()) {
+                continue;
+            }
+            apply(previous, -1);
+            Entry entry = new Entry(previous.nom, previous.regionCode, previous.type, event.getNewStatut());
+            entries.put(id, entry);
+            apply(entry, 1);
+        }
+    }
+
+    private void apply(Entry entry, long delta) {
+        if (entry.regionCode != null && entry.statut != null) {
+            adjust(countsByRegion.computeIfAbsent(entry.regionCode, k -> new TreeMap<>()), entry.statut, delta);
+            if (countsByRegion.get(entry.regionCode).isEmpty()) {
+                countsByRegion.remove(entry.regionCode);
+            }
+        }
+        if (entry.type != null && entry.statut != null) {
+            adjust(countsByType.computeIfAbsent(entry.type, k -> new TreeMap<>()), entry.statut, delta);
+            if (countsByType.get(entry.type).isEmpty()) {
+                countsByType.remove(entry.type);
+            }
+        }
+    }
+
+    private void adjust(Map<StatutType, Long> counts, StatutType statut, long delta) {
+        long value = counts.getOrDefault(statut, 0L) + delta;
+        if (value > 0) {
+            counts.put(statut, value);
+        } else {
+            counts.remove(statut);
+        }
+    }
+
+    /**
+     * Attributs d'un exportateur pris en compte dans les compteurs
+     */
+    private static final class Entry {
+        private final String nom;
+        private final String regionCode;
+        private final ExportateurType type;
+        private final StatutType statut;
+
+        private Entry(String nom, String regionCode, ExportateurType type, StatutType statut) {
+            this.nom = nom;
+            this.regionCode = regionCode;
+            this.type = type;
+            this.statut = statut;
+        }
+    }
+}
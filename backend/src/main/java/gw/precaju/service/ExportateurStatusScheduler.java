@@ -0,0 +1,44 @@
+package gw.precaju.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tâche planifiée qui maintient le statut des exportateurs à jour en base,
+ * afin que les filtres par statut restent de simples lectures indexées
+ */
+@Component
+public class ExportateurStatusScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportateurStatusScheduler.class);
+
+    private final ExportateurService exportateurService;
+
+    public ExportateurStatusScheduler(ExportateurService exportateurService) {
+        this.exportateurService = exportateurService;
+    }
+
+    /**
+     * Rattrape les expirations survenues pendant que l'application était arrêtée
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void expireOnStartup() {
+        expireOverdueExportateurs();
+    }
+
+    /**
+     * Exécution quotidienne, juste après minuit par défaut
+     */
+    @Scheduled(cron = "${app.exportateurs.expiry.cron:0 5 0 * * *}")
+    public void expireOverdueExportateurs() {
+        try {
+            exportateurService.expireOverdueExportateurs();
+        } catch (Exception e) {
+            logger.error("Error while expiring overdue exportateurs", e);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package gw.precaju.service;
 
+import gw.precaju.service.ImageProcessingService.ImageProcessingBusyException;
+import gw.precaju.service.ImageProcessingService.Variant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,28 +10,62 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 public class FileStorageService {
 
     private static final Logger logger = LoggerFactory.getLogger(FileStorageService.class);
 
+    // Variante désignée par suffixe : {base}_thumb.jpg, {base}_feed.jpg
+    private static final Pattern VARIANT_FILE_NAME = Pattern.compile("^(.+)_(thumb|feed)(\\.[A-Za-z]+)$");
+
     private final Path fileStorageLocation;
     private final long maxFileSize;
+    private final ImageProcessingService imageProcessingService;
+    private final long maxWaitMillis;
+    private final int maxCachedFiles;
+    // Les fichiers ne sont jamais réécrits sous le même nom : leurs métadonnées
+    // restent valides jusqu'à leur suppression
+    private final Map<String, StoredFile> storedFiles = new ConcurrentHashMap<>();
 
     // Allowed file types for images
     private static final String[] ALLOWED_IMAGE_TYPES = {
         "image/jpeg", "image/jpg", "image/png", "image/gif", "image/webp"
     };
 
+    private static final String[] ALLOWED_IMAGE_EXTENSIONS = {
+        ".jpg", ".jpeg", ".png", ".gif", ".webp"
+    };
+
     public FileStorageService(@Value("${file.upload.dir:./uploads}") String uploadDir,
-                             @Value("${file.upload.max-size:5242880}") long maxFileSize) {
+                             @Value("${file.upload.max-size:5242880}") long maxFileSize,
+                             ImageProcessingService imageProcessingService,
+                             @Value("${app.images.max-wait:PT20S}") Duration maxWait,
+                             @Value("${file.serving.metadata-cache-size:10000}") int maxCachedFiles) {
         this.maxFileSize = maxFileSize;
+        this.imageProcessingService = imageProcessingService;
+        this.maxWaitMillis = maxWait.toMillis();
+        this.maxCachedFiles = Math.max(1, maxCachedFiles);
         this.fileStorageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
 
         try {
@@ -41,38 +77,164 @@ public class FileStorageService {
         }
     }
 
+    /**
+     * Enregistre une photo et attend la fin de son traitement ; renvoie le nom de
+     * la variante pleine taille. Au-delà de l'attente permise le traitement est
+     * annulé et ses variantes supprimées.
+     */
     public String storeFile(MultipartFile file) {
-        // Validate file
-        validateFile(file);
+        CompletableFuture<Map<Variant, String>> processing = submitImage(file);
+        try {
+            return storedFileName(processing.get(maxWaitMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            processing.cancel(false);
+            throw new ImageProcessingBusyException("Image processing timed out");
+        } catch (InterruptedException e) {
+            processing.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new ImageProcessingBusyException("Image processing interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Valide la photo et planifie son traitement (suppression des EXIF, variantes
+     * miniature / fil / pleine taille) sur le pool d'images. Le contenu est lu ici,
+     * le fichier multipart n'existant plus une fois la requête terminée.
+     */
+    public CompletableFuture<String> storeImage(MultipartFile file) {
+        return submitImage(file).thenApply(this::storedFileName);
+    }
 
-        // Generate unique filename
-        String originalFileName = StringUtils.cleanPath(file.getOriginalFilename());
-        String fileExtension = getFileExtension(originalFileName);
-        String fileName = UUID.randomUUID().toString() + fileExtension;
+    private CompletableFuture<Map<Variant, String>> submitImage(MultipartFile file) {
+        validateFile(file);
 
+        byte[] data;
         try {
-            // Check if the file's name contains invalid characters
-            if (fileName.contains("..")) {
-                throw new RuntimeException("Sorry! Filename contains invalid path sequence " + fileName);
-            }
+            data = file.getBytes();
+        } catch (IOException ex) {
+            logger.error("Could not read uploaded file {}.", file.getOriginalFilename(), ex);
+            throw new RuntimeException("Could not store file. Please try again!", ex);
+        }
 
-            // Copy file to the target location (Replacing existing file with the same name)
-            Path targetLocation = this.fileStorageLocation.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+        String baseName = UUID.randomUUID().toString();
+        return imageProcessingService.submit(data, fileStorageLocation, baseName);
+    }
+
+    private String storedFileName(Map<Variant, String> variants) {
+        String fileName = variants.get(Variant.FULL);
+        logger.info("File stored successfully: {}", fileName);
+        return fileName;
+    }
 
-            logger.info("File stored successfully: {}", fileName);
+    /**
+     * Nom d'une variante de taille à partir du nom de la pleine taille
+     */
+    public String getVariantFileName(String fileName, Variant variant) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot <= 0) {
+            return fileName + variant.getSuffix();
+        }
+        return fileName.substring(0, dot) + variant.getSuffix() + fileName.substring(dot);
+    }
+
+    /**
+     * Fichier à servir pour un nom demandé : les photos enregistrées avant la
+     * génération des variantes n'ont que leur original, servi à la place de la
+     * miniature ou de la taille fil. Renvoie null si rien ne correspond.
+     */
+    public String resolveFileName(String fileName) {
+        if (fileExists(fileName)) {
             return fileName;
+        }
+        Matcher matcher = VARIANT_FILE_NAME.matcher(fileName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String original = matcher.group(1) + matcher.group(3);
+        if (fileExists(original)) {
+            return original;
+        }
+        for (String extension : ALLOWED_IMAGE_EXTENSIONS) {
+            if (fileExists(matcher.group(1) + extension)) {
+                return matcher.group(1) + extension;
+            }
+        }
+        return null;
+    }
 
+    /**
+     * Métadonnées du fichier servi pour un nom demandé (voir {@link #resolveFileName}),
+     * calculées au premier accès puis gardées en mémoire ; null si introuvable
+     */
+    public StoredFile getStoredFile(String fileName) {
+        StoredFile cached = storedFiles.get(fileName);
+        if (cached != null) {
+            return cached;
+        }
+        String storedName = resolveFileName(fileName);
+        if (storedName == null) {
+            return null;
+        }
+        Path path = getFilePath(storedName);
+        if (!path.startsWith(fileStorageLocation) || !Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            StoredFile storedFile = new StoredFile(storedName, path, attributes.size(),
+                    attributes.lastModifiedTime().toInstant(), contentEtag(path));
+            if (storedFiles.size() >= maxCachedFiles) {
+                storedFiles.clear();
+            }
+            storedFiles.put(fileName, storedFile);
+            return storedFile;
         } catch (IOException ex) {
-            logger.error("Could not store file {}.", fileName, ex);
-            throw new RuntimeException("Could not store file " + fileName + ". Please try again!", ex);
+            logger.error("Could not read file metadata: {}", storedName, ex);
+            return null;
         }
     }
 
+    /**
+     * Oublie les métadonnées d'un fichier disparu du disque
+     */
+    public void evictStoredFile(String fileName) {
+        storedFiles.remove(fileName);
+    }
+
+    private static String contentEtag(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        // 128 bits suffisent à distinguer les contenus
+        return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
     public void deleteFile(String fileName) {
         try {
             Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
             Files.deleteIfExists(filePath);
+            for (Variant variant : new Variant[] { Variant.THUMB, Variant.FEED }) {
+                Files.deleteIfExists(getFilePath(getVariantFileName(fileName, variant)));
+            }
+            Set<String> deleted = Set.of(fileName, getVariantFileName(fileName, Variant.THUMB),
+                    getVariantFileName(fileName, Variant.FEED));
+            storedFiles.entrySet().removeIf(entry -> deleted.contains(entry.getKey())
+                    || deleted.contains(entry.getValue().getFileName()));
             logger.info("File deleted successfully: {}", fileName);
         } catch (IOException ex) {
             logger.error("Could not delete file: {}", fileName, ex);
@@ -137,9 +299,12 @@ public class FileStorageService {
     }
 
     private boolean isValidImageExtension(String extension) {
-        return extension.equals(".jpg") || extension.equals(".jpeg") || 
-               extension.equals(".png") || extension.equals(".gif") || 
-               extension.equals(".webp");
+        for (String allowedExtension : ALLOWED_IMAGE_EXTENSIONS) {
+            if (allowedExtension.equals(extension)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private String getFileExtension(String fileName) {
@@ -152,22 +317,44 @@ public class FileStorageService {
     public long getMaxFileSize() {
         return maxFileSize;
     }
-}
-
-
-
-
-
-
-
-
-
-
-
-
 
+    /**
+     * Fichier stocké tel que servi : nom réel, taille, date et ETag de contenu
+     */
+    public static final class StoredFile {
+
+        private final String fileName;
+        private final Path path;
+        private final long size;
+        private final Instant lastModified;
+        private final String etag;
+
+        public StoredFile(String fileName, Path path, long size, Instant lastModified, String etag) {
+            this.fileName = fileName;
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = etag;
+        }
 
+        public String getFileName() {
+            return fileName;
+        }
 
+        public Path getPath() {
+            return path;
+        }
 
+        public long getSize() {
+            return size;
+        }
 
+        public Instant getLastModified() {
+            return lastModified;
+        }
 
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
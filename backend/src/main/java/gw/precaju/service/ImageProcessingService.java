@@ -0,0 +1,433 @@
+package gw.precaju.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chaîne de traitement des photos de prix.
+ *
+ * Chaque photo est décodée puis réencodée en trois tailles (miniature, fil,
+ * pleine) : rien de l'original n'est conservé, en particulier ses métadonnées
+ * EXIF (position GPS, appareil). L'orientation EXIF est appliquée aux pixels
+ * avant d'être perdue. Le travail s'exécute sur un pool dédié et borné ; au-delà
+ * de sa file d'attente la demande est refusée ({@link ImageProcessingBusyException}).
+ */
+@Service
+public class ImageProcessingService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageProcessingService.class);
+
+    /**
+     * Tailles produites, désignées par le suffixe du nom de fichier
+     */
+    public enum Variant {
+        THUMB("_thumb"),
+        FEED("_feed"),
+        FULL("");
+
+        private final String suffix;
+
+        Variant(String suffix) {
+            this.suffix = suffix;
+        }
+
+        public String getSuffix() {
+            return suffix;
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final Map<Variant, Integer> maxEdges = new EnumMap<>(Variant.class);
+    private final float quality;
+    private final long maxPixels;
+    private final String formatName;
+    private final String extension;
+    private final Timer processTimer;
+    private final Counter rejected;
+
+    public ImageProcessingService(MeterRegistry meterRegistry,
+            @Value("${app.images.threads:2}") int threads,
+            @Value("${app.images.queue-capacity:16}") int queueCapacity,
+            @Value("${app.images.thumb-size:160}") int thumbSize,
+            @Value("${app.images.feed-size:640}") int feedSize,
+            @Value("${app.images.full-size:1600}") int fullSize,
+            @Value("${app.images.quality:0.8}") float quality,
+            @Value("${app.images.max-pixels:50000000}") long maxPixels,
+            @Value("${app.images.format:webp}") String format) {
+        this.maxEdges.put(Variant.THUMB, thumbSize);
+        this.maxEdges.put(Variant.FEED, feedSize);
+        this.maxEdges.put(Variant.FULL, fullSize);
+        this.quality = Math.min(1f, Math.max(0.1f, quality));
+        this.maxPixels = maxPixels;
+        if ("webp".equalsIgnoreCase(format) && !ImageIO.getImageWritersByFormatName("webp").hasNext()) {
+            logger.info("No WebP image writer available, photo variants will be encoded as JPEG");
+            format = "jpeg";
+        }
+        this.formatName = "webp".equalsIgnoreCase(format) ? "webp" : "jpeg";
+        this.extension = "webp".equals(formatName) ? ".webp" : ".jpg";
+
+        AtomicInteger counter = new AtomicInteger();
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                    Thread thread = new Thread(r, "image-processing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.processTimer = Timer.builder("images.process").register(meterRegistry);
+        this.rejected = meterRegistry.counter("images.rejected");
+        meterRegistry.gauge("images.queue.depth", executor, e -> e.getQueue().size());
+    }
+
+    /**
+     * Extension des fichiers produits (".jpg" ou ".webp")
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Nom du fichier d'une taille donnée pour une photo
+     */
+    public String variantFileName(String baseName, Variant variant) {
+        return baseName + variant.getSuffix() + extension;
+    }
+
+    /**
+     * Planifie le traitement d'une photo sur le pool dédié. Annuler le résultat
+     * retire la photo de la file si elle n'a pas démarré, et supprime ses variantes
+     * si elle était déjà en cours.
+     */
+    public CompletableFuture<Map<Variant, String>> submit(byte[] data, Path directory, String baseName) {
+        CompletableFuture<Map<Variant, String>> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    Map<Variant, String> fileNames = processTimer.record(() -> process(data, directory, baseName));
+                    if (!result.complete(fileNames)) {
+                        logger.info("Image {} was cancelled during processing, deleting its variants", baseName);
+                        fileNames.values().forEach(name -> deleteQuietly(directory.resolve(name)));
+                    }
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ImageProcessingBusyException("Image processing queue is full");
+        }
+        return result;
+    }
+
+    /**
+     * Décode la photo et écrit ses variantes dans le répertoire ; la pleine taille
+     * est écrite en dernier, sa présence garantit donc celle des autres
+     */
+    Map<Variant, String> process(byte[] data, Path directory, String baseName) {
+        BufferedImage image = orient(decode(data), readExifOrientation(data));
+        Map<Variant, String> fileNames = new EnumMap<>(Variant.class);
+        try {
+            // Du plus grand au plus petit : chaque taille part de la précédente
+            BufferedImage full = resize(image, maxEdges.get(Variant.FULL));
+            BufferedImage feed = resize(full, maxEdges.get(Variant.FEED));
+            BufferedImage thumb = resize(feed, maxEdges.get(Variant.THUMB));
+            fileNames.put(Variant.THUMB, write(thumb, directory, variantFileName(baseName, Variant.THUMB)));
+            fileNames.put(Variant.FEED, write(feed, directory, variantFileName(baseName, Variant.FEED)));
+            fileNames.put(Variant.FULL, write(full, directory, variantFileName(baseName, Variant.FULL)));
+        } catch (IOException e) {
+            fileNames.values().forEach(name -> deleteQuietly(directory.resolve(name)));
+            throw new IllegalStateException("Could not write image variants for " + baseName, e);
+        }
+        logger.debug("Processed image {} ({}x{})", baseName, image.getWidth(), image.getHeight());
+        return Collections.unmodifiableMap(fileNames);
+    }
+
+    /**
+     * Décode l'image sans ses métadonnées, sous-échantillonnée à la lecture si
+     * elle dépasse largement la plus grande taille produite
+     */
+    private BufferedImage decode(byte[] data) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                throw new InvalidImageException("Unsupported or corrupted image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new InvalidImageException("Image dimensions exceed the allowed maximum");
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.max(width, height) / (2 * maxEdges.get(Variant.FULL)));
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return flatten(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        } catch (InvalidImageException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            throw new InvalidImageException("Unsupported or corrupted image", e);
+        }
+    }
+
+    /**
+     * Recopie l'image en RGB opaque, la transparence sur fond blanc
+     */
+    private static BufferedImage flatten(BufferedImage source) {
+        BufferedImage rgb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, source.getWidth(), source.getHeight());
+            g.drawImage(source, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    /**
+     * Réduit l'image pour que son plus grand côté tienne dans {@code maxEdge}, par
+     * divisions successives par deux (bilinéaire) pour éviter le crénelage
+     */
+    static BufferedImage resize(BufferedImage source, int maxEdge) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int longEdge = Math.max(width, height);
+        if (longEdge <= maxEdge) {
+            return source;
+        }
+        double scale = (double) maxEdge / longEdge;
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = source;
+        do {
+            width = width / 2 >= targetWidth ? width / 2 : targetWidth;
+            height = height / 2 >= targetHeight ? height / 2 : targetHeight;
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    /**
+     * Applique l'orientation EXIF (1 à 8) aux pixels
+     */
+    static BufferedImage orient(BufferedImage source, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return source;
+        }
+        int w = source.getWidth();
+        int h = source.getHeight();
+        AffineTransform t = new AffineTransform();
+        switch (orientation) {
+            case 2 -> { t.translate(w, 0); t.scale(-1, 1); }
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+            case 4 -> { t.translate(0, h); t.scale(1, -1); }
+            case 5 -> { t.rotate(-Math.PI / 2); t.scale(-1, 1); }
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+            case 7 -> { t.translate(h, w); t.rotate(Math.PI / 2); t.scale(-1, 1); }
+            default -> { t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+        }
+        boolean swap = orientation >= 5;
+        BufferedImage oriented = new BufferedImage(swap ? h : w, swap ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = oriented.createGraphics();
+        try {
+            g.drawImage(source, t, null);
+        } finally {
+            g.dispose();
+        }
+        return oriented;
+    }
+
+    /**
+     * Lit la balise Orientation (0x0112) de l'IFD0 d'un JPEG ; 1 si absente
+     */
+    static int readExifOrientation(byte[] data) {
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            return 1;
+        }
+        int pos = 2;
+        while (pos + 4 <= data.length && (data[pos] & 0xFF) == 0xFF) {
+            int marker = data[pos + 1] & 0xFF;
+            if (marker == 0xDA || marker == 0xD9) {
+                break;
+            }
+            int length = readUnsignedShort(data, pos + 2, false);
+            int end = Math.min(data.length, pos + 2 + length);
+            if (marker == 0xE1 && pos + 10 <= end && data[pos + 4] == 'E' && data[pos + 5] == 'x'
+                    && data[pos + 6] == 'i' && data[pos + 7] == 'f' && data[pos + 8] == 0 && data[pos + 9] == 0) {
+                return readTiffOrientation(data, pos + 10, end);
+            }
+            pos += 2 + length;
+        }
+        return 1;
+    }
+
+    private static int readTiffOrientation(byte[] data, int start, int end) {
+        if (start + 8 > end) {
+            return 1;
+        }
+        boolean littleEndian;
+        if (data[start] == 'I' && data[start + 1] == 'I') {
+            littleEndian = true;
+        } else if (data[start] == 'M' && data[start + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return 1;
+        }
+        long ifdOffset = readUnsignedInt(data, start + 4, littleEndian);
+        if (ifdOffset < 8 || start + ifdOffset + 2 > end) {
+            return 1;
+        }
+        int ifd = start + (int) ifdOffset;
+        int entries = readUnsignedShort(data, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (readUnsignedShort(data, entry, littleEndian) == 0x0112) {
+                int orientation = readUnsignedShort(data, entry + 8, littleEndian);
+                return orientation >= 1 && orientation <= 8 ? orientation : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int readUnsignedShort(byte[] data, int offset, boolean littleEndian) {
+        int b0 = data[offset] & 0xFF;
+        int b1 = data[offset + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static long readUnsignedInt(byte[] data, int offset, boolean littleEndian) {
+        long first = readUnsignedShort(data, offset, littleEndian);
+        long second = readUnsignedShort(data, offset + 2, littleEndian);
+        return littleEndian ? (second << 16) | first : (first << 16) | second;
+    }
+
+    /**
+     * Écriture dans un fichier temporaire puis renommage atomique : un lecteur
+     * concurrent ne voit jamais d'image partielle
+     */
+    private String write(BufferedImage image, Path directory, String fileName) throws IOException {
+        Path target = directory.resolve(fileName);
+        Path temp = Files.createTempFile(directory, fileName, ".tmp");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName(formatName).next();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (param.canWriteCompressed()) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    String[] types = param.getCompressionTypes();
+                    if (types != null && types.length > 0 && param.getCompressionType() == null) {
+                        param.setCompressionType(types[0]);
+                    }
+                    param.setCompressionQuality(quality);
+                }
+                if (param.canWriteProgressive()) {
+                    param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+                }
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return fileName;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete partial image variant {}", path, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Pool de traitement saturé : l'envoi doit être retenté plus tard
+     */
+    public static class ImageProcessingBusyException extends RuntimeException {
+
+        public ImageProcessingBusyException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Fichier illisible, format non pris en charge ou dimensions excessives
+     */
+    public static class InvalidImageException extends RuntimeException {
+
+        public InvalidImageException(String message) {
+            super(message);
+        }
+
+        public InvalidImageException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
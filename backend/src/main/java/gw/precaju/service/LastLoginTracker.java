@@ -0,0 +1,77 @@
+package gw.precaju.service;
+
+import gw.precaju.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dates de dernière connexion, regroupées en mémoire et écrites en lot.
+ *
+ * Une connexion ne touche plus la ligne users : la date est notée dans une map
+ * concurrente (une entrée par utilisateur, la plus récente gagne) et une tâche
+ * périodique l'écrit avec un seul UPDATE ... FROM (VALUES ...). Les lectures
+ * d'administration fusionnent les valeurs encore en attente via
+ * {@link #effectiveLastLogin(UUID, Instant)}.
+ */
+@Service
+public class LastLoginTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(LastLoginTracker.class);
+
+    private final UserRepository userRepository;
+    private final ConcurrentHashMap<UUID, Instant> pending = new ConcurrentHashMap<>();
+
+    public LastLoginTracker(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    public void record(UUID userId, Instant loginAt) {
+        pending.merge(userId, loginAt, (current, candidate) -> candidate.isAfter(current) ? candidate : current);
+    }
+
+    /**
+     * Date de dernière connexion la plus récente entre la valeur persistée et
+     * celle en attente d'écriture
+     */
+    public Instant effectiveLastLogin(UUID userId, Instant persisted) {
+        Instant recorded = userId != null ? pending.get(userId) : null;
+        if (recorded == null) {
+            return persisted;
+        }
+        return persisted == null || recorded.isAfter(persisted) ? recorded : persisted;
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.last-login.flush-interval:PT30S}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<UUID, Instant> batch = new HashMap<>(pending);
+        try {
+            int updated = userRepository.updateLastLogins(batch);
+            // Une connexion survenue pendant l'écriture reste en attente pour le prochain lot
+            batch.forEach(pending::remove);
+            logger.debug("Flushed {} last-login timestamps ({} rows updated)", batch.size(), updated);
+        } catch (Exception e) {
+            logger.warn("Failed to flush {} last-login timestamps, will retry: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,200 @@
+package gw.precaju.service;
+
+import gw.precaju.entity.NotificationOutbox;
+import gw.precaju.entity.Price;
+import gw.precaju.repository.NotificationOutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Outbox des notifications de variation de prix.
+ *
+ * L'événement est inséré dans la transaction du prix qui le déclenche : il
+ * n'existe que si le prix est validé, et survit à un redémarrage. Le poller
+ * réclame les lignes par lots avec FOR UPDATE SKIP LOCKED et un bail, si bien
+ * que plusieurs instances se partagent la charge sans double traitement ; une
+ * ligne dont le bail expire (instance arrêtée en cours d'envoi) est reprise.
+ *
+ * Tant que l'envoi est en cours, le bail est prolongé plutôt que la ligne
+ * remise en file : une reprise pendant l'envoi le doublerait.
+ */
+@Service
+public class NotificationOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutboxService.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    // Bornes de variation_pourcentage DECIMAL(7,2) ; au-delà l'insertion échouerait
+    static final BigDecimal MAX_VARIATION_PCT = new BigDecimal("99999.99");
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final NotificationService notificationService;
+    private final WebPushFanoutService webPushFanoutService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration lease;
+    private final int maxAttempts;
+    private final Duration retention;
+
+    public NotificationOutboxService(NotificationOutboxRepository outboxRepository,
+            NotificationService notificationService,
+            WebPushFanoutService webPushFanoutService,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.notifications.outbox.batch-size:10}") int batchSize,
+            @Value("${app.notifications.outbox.lease:PT5M}") Duration lease,
+            @Value("${app.notifications.outbox.max-attempts:5}") int maxAttempts,
+            @Value("${app.notifications.outbox.retention:P7D}") Duration retention) {
+        this.outboxRepository = outboxRepository;
+        this.notificationService = notificationService;
+        this.webPushFanoutService = webPushFanoutService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.lease = lease;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retention = retention;
+    }
+
+    /**
+     * Enregistre une variation de prix à notifier, dans la transaction courante ;
+     * un échec de l'insertion annule cette transaction (pas de prix sans événement)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueuePriceVariation(Price price, BigDecimal ancienPrix, BigDecimal variationPct) {
+        if (!webPushFanoutService.isEnabled()) {
+            return;
+        }
+        ZonedDateTime now = ZonedDateTime.now();
+        NotificationOutbox event = new NotificationOutbox();
+        event.setPrixId(price.getId());
+        event.setRegionCode(price.getRegionCode());
+        event.setQualityGrade(price.getQualityGradeCode());
+        event.setAncienPrix(ancienPrix);
+        event.setNouveauPrix(price.getPriceFcfa());
+        event.setVariationPourcentage(clampVariation(variationPct));
+        event.setAvailableAt(now);
+        event.setCreatedAt(now);
+        outboxRepository.save(event);
+    }
+
+    /**
+     * Réclame et livre les événements en attente, lot par lot
+     */
+    @Scheduled(fixedDelayString = "${app.notifications.outbox.poll-interval:PT2S}")
+    public void poll() {
+        List<NotificationOutbox> claimed;
+        do {
+            claimed = claimBatch();
+            for (NotificationOutbox event : claimed) {
+                deliver(event);
+            }
+        } while (claimed.size() == batchSize);
+    }
+
+    private List<NotificationOutbox> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            ZonedDateTime now = ZonedDateTime.now();
+            List<NotificationOutbox> batch = outboxRepository.lockNextBatch(now, batchSize);
+            for (NotificationOutbox event : batch) {
+                event.setStatut(NotificationOutbox.OutboxStatut.PROCESSING);
+                event.setAttempts(event.getAttempts() + 1);
+                event.setLockedUntil(now.plus(lease));
+            }
+            return batch;
+        });
+    }
+
+    private void deliver(NotificationOutbox event) {
+        try {
+            CompletableFuture<Void> delivery = notificationService.deliverPriceVariation(event);
+            if (!awaitDelivery(event, delivery)) {
+                delivery.cancel(false);
+                logger.warn("Lost the lease on notification outbox event {} during delivery", event.getId());
+                return;
+            }
+            outboxRepository.markDone(event.getId(), ZonedDateTime.now());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Le bail expirera et la ligne sera reprise
+        } catch (Exception e) {
+            Throwable cause = e;
+            while ((cause instanceof ExecutionException || cause instanceof CompletionException)
+                    && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            String error = truncate(String.valueOf(cause.getMessage()));
+            if (event.getAttempts() >= maxAttempts) {
+                logger.error("Giving up on notification outbox event {} after {} attempts", event.getId(),
+                        event.getAttempts(), cause);
+                outboxRepository.markFailed(event.getId(), ZonedDateTime.now(), error);
+            } else {
+                long backoffSeconds = 30L << Math.min(event.getAttempts() - 1, 6);
+                logger.warn("Notification outbox event {} failed (attempt {}), retrying in {}s: {}",
+                        event.getId(), event.getAttempts(), backoffSeconds, error);
+                outboxRepository.reschedule(event.getId(), ZonedDateTime.now().plusSeconds(backoffSeconds), error);
+            }
+        }
+    }
+
+    /**
+     * Attend la fin de l'envoi en prolongeant le bail à mi-parcours
+     *
+     * @return false si la ligne a été reprise entre-temps
+     */
+    private boolean awaitDelivery(NotificationOutbox event, CompletableFuture<Void> delivery)
+            throws InterruptedException, ExecutionException {
+        long renewMillis = Math.max(1, lease.toMillis() / 2);
+        while (true) {
+            try {
+                delivery.get(renewMillis, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                if (outboxRepository.extendLease(event.getId(), event.getAttempts(),
+                        ZonedDateTime.now().plus(lease)) == 0) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Supprime les événements traités au-delà de la durée de rétention
+     */
+    @Scheduled(cron = "${app.notifications.outbox.purge-cron:0 30 3 * * *}")
+    public void purgeProcessed() {
+        int purged = outboxRepository.purgeProcessedBefore(ZonedDateTime.now().minus(retention));
+        if (purged > 0) {
+            logger.info("Purged {} processed notification outbox events", purged);
+        }
+    }
+
+    /**
+     * Arrondit la variation à 2 décimales et la borne à la précision de la colonne
+     * (une moyenne très faible peut donner une variation de plusieurs millions de %)
+     */
+    static BigDecimal clampVariation(BigDecimal variationPct) {
+        BigDecimal rounded = variationPct.setScale(2, RoundingMode.HALF_UP);
+        return rounded.max(MAX_VARIATION_PCT.negate()).min(MAX_VARIATION_PCT);
+    }
+
+    private static String truncate(String value) {
+        return value.length() <= MAX_ERROR_LENGTH ? value : value.substring(0, MAX_ERROR_LENGTH);
+    }
+}
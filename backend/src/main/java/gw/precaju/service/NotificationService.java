@@ -6,28 +6,33 @@ import gw.precaju.dto.NotificationHistoryDTO;
 import gw.precaju.dto.NotificationSubscriptionDTO;
 import gw.precaju.entity.NotificationConfig;
 import gw.precaju.entity.NotificationEnvoyee;
-import gw.precaju.entity.Price;
+import gw.precaju.entity.NotificationOutbox;
+import gw.precaju.entity.NotificationPreferences;
 import gw.precaju.entity.User;
 import gw.precaju.repository.NotificationConfigRepository;
 import gw.precaju.repository.NotificationEnvoyeeRepository;
 import gw.precaju.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import nl.martijndwars.webpush.Notification;
-import nl.martijndwars.webpush.PushService;
-import nl.martijndwars.webpush.Subscription;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.time.ZonedDateTime;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 @Service
@@ -38,28 +43,25 @@ public class NotificationService {
     private final NotificationConfigRepository notificationConfigRepository;
     private final NotificationEnvoyeeRepository notificationEnvoyeeRepository;
     private final UserRepository userRepository;
+    private final UserService userService;
     private final ObjectMapper objectMapper;
+    private final WebPushFanoutService webPushFanoutService;
+    private final PushSubscriptionRegistry pushSubscriptionRegistry;
 
     @Value("${app.vapid.public-key:}")
     private String vapidPublicKey;
 
-    @Value("${app.vapid.private-key:}")
-    private String vapidPrivateKey;
+    @Value("${app.notifications.digest.window:PT5M}")
+    private Duration digestWindow;
 
-    @Value("${app.vapid.subject:mailto:admin@precaju.gw}")
-    private String vapidSubject;
+    @Value("${app.notifications.digest.max-entries:50000}")
+    private int digestMaxEntries;
 
-    private PushService pushService;
+    private AlertDigestWindow<DigestKey, PriceAlert> priceAlertDigest;
 
-    private PushService getPushService() {
-        if (pushService == null && vapidPrivateKey != null && !vapidPrivateKey.isEmpty()) {
-            try {
-                pushService = new PushService(vapidPublicKey, vapidPrivateKey, vapidSubject);
-            } catch (Exception e) {
-                log.error("Failed to initialize PushService", e);
-            }
-        }
-        return pushService;
+    @PostConstruct
+    void initDigestWindow() {
+        priceAlertDigest = new AlertDigestWindow<>(digestWindow.toMillis(), digestMaxEntries);
     }
 
     /**
@@ -71,16 +73,17 @@ public class NotificationService {
             // Update user's push subscription and preferences
             user.setPushSubscription(subscriptionDTO.getPushSubscription());
             user.setAbonnementNotifications(true);
+            userRepository.save(user);
 
-            // Update notification preferences
-            Map<String, Object> preferences = new HashMap<>();
-            preferences.put("prix_variations", subscriptionDTO.getPrixVariations());
+            // Update notification preferences, keeping region/quality interests
+            NotificationPreferences delta = new NotificationPreferences();
+            delta.setPrixVariations(subscriptionDTO.getPrixVariations());
             if (subscriptionDTO.getSeuilPersonnalise() != null) {
-                preferences.put("seuil_perso", subscriptionDTO.getSeuilPersonnalise());
+                delta.setSeuilPerso(BigDecimal.valueOf(subscriptionDTO.getSeuilPersonnalise()));
             }
-
-            user.setNotificationPreferences(objectMapper.writeValueAsString(preferences));
-            userRepository.save(user);
+            userService.patchNotificationPreferences(user, delta,
+                    delta.getSeuilPerso() == null ? new String[] { "seuil_perso" } : new String[0]);
+            pushSubscriptionRegistry.refresh(user);
 
             log.info("User {} subscribed to push notifications", user.getEmail());
         } catch (Exception e) {
@@ -97,114 +100,224 @@ public class NotificationService {
         user.setPushSubscription(null);
         user.setAbonnementNotifications(false);
         userRepository.save(user);
+        pushSubscriptionRegistry.unregister(user.getId());
 
         log.info("User {} unsubscribed from push notifications", user.getEmail());
     }
 
     /**
-     * Send price variation notification to all subscribed users
+     * Delivers a price variation event claimed from the outbox to subscribed
+     * users interested in its region and quality. Users already alerted for
+     * that region/quality within the digest window only get a merged alert when
+     * the window closes. The returned future completes once every push of this
+     * event has been attempted and recorded.
      */
-    @Transactional
-    public void sendPriceVariationNotification(Price price, BigDecimal ancienPrix, BigDecimal variationPct) {
-        try {
-            // Get all subscribed users
-            List<User> subscribedUsers = userRepository.findByAbonnementNotificationsTrueAndPushSubscriptionIsNotNull();
-
-            if (subscribedUsers.isEmpty()) {
-                log.info("No subscribed users found for price variation notification");
-                return;
+    public CompletableFuture<Void> deliverPriceVariation(NotificationOutbox event) {
+        if (!webPushFanoutService.isEnabled()) {
+            log.warn("PushService not initialized, skipping price variation notification");
+            return CompletableFuture.completedFuture(null);
+        }
+        PriceAlert alert = new PriceAlert(event.getPrixId(), event.getRegionCode(), event.getQualityGrade(),
+                event.getAncienPrix(), event.getNouveauPrix(), event.getVariationPourcentage());
+
+        // A re-claimed event (instance stopped mid fan-out) skips users already notified
+        Set<UUID> alreadySent = event.getAttempts() > 1
+                ? notificationEnvoyeeRepository.findUserIdsByPrixIdAndStatut(event.getPrixId(),
+                        NotificationEnvoyee.NotificationStatut.ENVOYEE)
+                : Set.of();
+        long now = System.nanoTime() / 1_000_000;
+
+        List<WebPushFanoutService.PushTarget> targets = new ArrayList<>();
+        for (PushSubscriptionRegistry.Entry entry : pushSubscriptionRegistry.findCurrentRecipients(alert.regionCode,
+                alert.qualityCode, alert.variationPct)) {
+            if (!alreadySent.contains(entry.getUserId()) && priceAlertDigest.offer(
+                    new DigestKey(entry.getUserId(), alert.regionCode, alert.qualityCode), alert, now)) {
+                targets.add(new WebPushFanoutService.PushTarget(entry.getUserId(), entry.getSubscription()));
             }
-
-            // Prepare notification message
-            String message = buildPriceVariationMessage(price, ancienPrix, variationPct);
-            Map<String, Object> payload = buildNotificationPayload(price, message);
-
-            // Send notifications asynchronously
-            CompletableFuture.runAsync(() -> {
-                for (User user : subscribedUsers) {
-                    try {
-                        sendNotificationToUser(user, payload, price, ancienPrix, price.getPriceFcfa(), variationPct,
-                                message);
-                    } catch (Exception e) {
-                        log.error("Failed to send notification to user {}", user.getEmail(), e);
-                    }
-                }
-            });
-
-        } catch (Exception e) {
-            log.error("Failed to send price variation notifications", e);
         }
+        if (targets.isEmpty()) {
+            log.info("No price variation notification to send now for price {}", alert.priceId);
+            return CompletableFuture.completedFuture(null);
+        }
+        return fanOut(alert, targets);
     }
 
-    private void sendNotificationToUser(User user, Map<String, Object> payload, Price price,
-            BigDecimal ancienPrix, BigDecimal nouveauPrix,
-            BigDecimal variationPct, String message) {
-        try {
-            PushService service = getPushService();
-            if (service == null) {
-                log.warn("PushService not initialized, skipping notification for user {}", user.getEmail());
-                return;
+    /**
+     * Sends the merged alerts of closed digest windows
+     */
+    @Scheduled(fixedDelayString = "${app.notifications.digest.flush-interval:PT15S}")
+    public void flushPriceAlertDigests() {
+        List<AlertDigestWindow.Digest<DigestKey, PriceAlert>> digests =
+                priceAlertDigest.drainExpired(System.nanoTime() / 1_000_000);
+        if (digests.isEmpty()) {
+            return;
+        }
+        // Users deactivated or unsubscribed since, possibly on another instance, are skipped
+        Map<UUID, PushSubscriptionRegistry.Entry> current = pushSubscriptionRegistry.revalidate(
+                digests.stream().map(digest -> digest.getKey().userId).toList());
+        // Users whose latest alert is the same price event share one fan-out
+        Map<PriceAlert, List<WebPushFanoutService.PushTarget>> targetsByAlert = new LinkedHashMap<>();
+        for (AlertDigestWindow.Digest<DigestKey, PriceAlert> digest : digests) {
+            PushSubscriptionRegistry.Entry entry = current.get(digest.getKey().userId);
+            if (entry != null) {
+                targetsByAlert.computeIfAbsent(digest.getAlert(), a -> new ArrayList<>())
+                        .add(new WebPushFanoutService.PushTarget(entry.getUserId(), entry.getSubscription()));
             }
+        }
+        log.info("Sending {} digested price alerts", digests.size());
+        targetsByAlert.forEach((alert, targets) -> fanOut(alert, targets).exceptionally(e -> {
+            log.error("Failed to send digested price alert for price {}", alert.priceId, e);
+            return null;
+        }));
+    }
 
-            // Parse user's push subscription
-            Subscription subscription = objectMapper.readValue(user.getPushSubscription(), Subscription.class);
-
-            // Create notification
-            String payloadJson = objectMapper.writeValueAsString(payload);
-            Notification notification = new Notification(subscription, payloadJson);
-
-            // Send notification
-            service.send(notification);
-
-            // Record successful notification
-            recordNotification(user, price, ancienPrix, nouveauPrix, variationPct, message,
-                    NotificationEnvoyee.NotificationStatut.ENVOYEE);
-
-            log.info("Successfully sent notification to user {}", user.getEmail());
-
+    private CompletableFuture<Void> fanOut(PriceAlert alert, List<WebPushFanoutService.PushTarget> targets) {
+        String message = buildPriceVariationMessage(alert);
+        String payloadJson;
+        try {
+            payloadJson = objectMapper.writeValueAsString(buildNotificationPayload(alert, message));
         } catch (Exception e) {
-            log.error("Failed to send notification to user {}", user.getEmail(), e);
-
-            // Record failed notification
-            recordNotification(user, price, ancienPrix, nouveauPrix, variationPct, message,
-                    NotificationEnvoyee.NotificationStatut.ECHEC);
+            return CompletableFuture.failedFuture(e);
         }
+        DeliveryRecorder recorder = new DeliveryRecorder(alert, message);
+
+        return webPushFanoutService.fanOutAsync(targets, payloadJson, recorder::record)
+                .whenComplete((report, e) -> recorder.flush())
+                .thenAccept(report -> {
+                });
     }
 
-    private String buildPriceVariationMessage(Price price, BigDecimal ancienPrix, BigDecimal variationPct) {
-        String direction = price.getPriceFcfa().compareTo(ancienPrix) > 0 ? "📈 Hausse" : "📉 Baisse";
+    private String buildPriceVariationMessage(PriceAlert alert) {
+        String direction = alert.nouveauPrix.compareTo(alert.ancienPrix) > 0 ? "📈 Hausse" : "📉 Baisse";
         return String.format("%s du cajou : %.0f FCFA (%.1f%%) à %s",
-                direction, price.getPriceFcfa(), variationPct, price.getRegionCode());
+                direction, alert.nouveauPrix, alert.variationPct, alert.regionCode);
     }
 
-    private Map<String, Object> buildNotificationPayload(Price price, String message) {
+    private Map<String, Object> buildNotificationPayload(PriceAlert alert, String message) {
         Map<String, Object> payload = new HashMap<>();
         payload.put("title", "Preço di Caju - Variation de prix");
         payload.put("body", message);
         payload.put("icon", "/icon-192.png");
         payload.put("badge", "/icon-192.png");
-        payload.put("tag", "prix-" + price.getId());
+        // Same tag per region/quality so the browser replaces an older alert
+        payload.put("tag", "prix-" + alert.regionCode + "-" + alert.qualityCode);
         payload.put("data", Map.of(
-                "url", "/prices/" + price.getId(),
-                "priceId", price.getId().toString()));
+                "url", "/prices/" + alert.priceId,
+                "priceId", alert.priceId.toString()));
         return payload;
     }
 
-    private void recordNotification(User user, Price price, BigDecimal ancienPrix, BigDecimal nouveauPrix,
-            BigDecimal variationPct, String message, NotificationEnvoyee.NotificationStatut statut) {
-        try {
-            NotificationEnvoyee notification = new NotificationEnvoyee();
-            notification.setUtilisateur(user);
-            notification.setPrix(price);
-            notification.setAncienPrix(ancienPrix);
-            notification.setNouveauPrix(nouveauPrix);
-            notification.setVariationPourcentage(variationPct);
-            notification.setMessage(message);
-            notification.setStatut(statut);
-
-            notificationEnvoyeeRepository.save(notification);
-        } catch (Exception e) {
-            log.error("Failed to record notification", e);
+    /**
+     * Price event snapshot, safe to keep after the originating transaction
+     */
+    private static final class PriceAlert {
+        private final UUID priceId;
+        private final String regionCode;
+        private final String qualityCode;
+        private final BigDecimal ancienPrix;
+        private final BigDecimal nouveauPrix;
+        private final BigDecimal variationPct;
+
+        private PriceAlert(UUID priceId, String regionCode, String qualityCode, BigDecimal ancienPrix,
+                BigDecimal nouveauPrix, BigDecimal variationPct) {
+            this.priceId = priceId;
+            this.regionCode = regionCode;
+            this.qualityCode = qualityCode;
+            this.ancienPrix = ancienPrix;
+            this.nouveauPrix = nouveauPrix;
+            this.variationPct = variationPct;
+        }
+    }
+
+    private static final class DigestKey {
+        private final UUID userId;
+        private final String regionCode;
+        private final String qualityCode;
+
+        private DigestKey(UUID userId, String regionCode, String qualityCode) {
+            this.userId = userId;
+            this.regionCode = regionCode;
+            this.qualityCode = qualityCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DigestKey)) {
+                return false;
+            }
+            DigestKey other = (DigestKey) o;
+            return userId.equals(other.userId) && Objects.equals(regionCode, other.regionCode)
+                    && Objects.equals(qualityCode, other.qualityCode);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, regionCode, qualityCode);
+        }
+    }
+
+    /**
+     * Accumulates delivery outcomes of one fan-out and writes them with JDBC
+     * batch inserts instead of one INSERT per user.
+     */
+    private class DeliveryRecorder {
+        private static final int FLUSH_SIZE = 500;
+
+        private final PriceAlert alert;
+        private final String message;
+        private Map<UUID, NotificationEnvoyee.NotificationStatut> pending = new LinkedHashMap<>();
+
+        DeliveryRecorder(PriceAlert alert, String message) {
+            this.alert = alert;
+            this.message = message;
+        }
+
+        void record(WebPushFanoutService.PushDelivery delivery) {
+            if (delivery.getStatus() == WebPushFanoutService.DeliveryStatus.GONE) {
+                pushSubscriptionRegistry.unregister(delivery.getUserId());
+            }
+            Map<UUID, NotificationEnvoyee.NotificationStatut> batch = null;
+            synchronized (this) {
+                pending.put(delivery.getUserId(),
+                        delivery.getStatus() == WebPushFanoutService.DeliveryStatus.DELIVERED
+                                ? NotificationEnvoyee.NotificationStatut.ENVOYEE
+                                : NotificationEnvoyee.NotificationStatut.ECHEC);
+                if (pending.size() >= FLUSH_SIZE) {
+                    batch = drain();
+                }
+            }
+            if (batch != null) {
+                write(batch);
+            }
+        }
+
+        void flush() {
+            Map<UUID, NotificationEnvoyee.NotificationStatut> batch;
+            synchronized (this) {
+                batch = drain();
+            }
+            write(batch);
+        }
+
+        private Map<UUID, NotificationEnvoyee.NotificationStatut> drain() {
+            Map<UUID, NotificationEnvoyee.NotificationStatut> batch = pending;
+            pending = new LinkedHashMap<>();
+            return batch;
+        }
+
+        private void write(Map<UUID, NotificationEnvoyee.NotificationStatut> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                notificationEnvoyeeRepository.insertDeliveries(alert.priceId, alert.ancienPrix, alert.nouveauPrix,
+                        alert.variationPct, message, batch);
+            } catch (Exception e) {
+                log.error("Failed to record {} notifications for price {}", batch.size(), alert.priceId, e);
+            }
         }
     }
 
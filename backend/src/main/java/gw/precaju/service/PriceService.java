@@ -10,14 +10,19 @@ import gw.precaju.repository.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -37,6 +42,10 @@ public class PriceService {
     private final WebSocketController webSocketController;
     private final GpsValidationService gpsValidationService;
     private final GpsGeocodingService gpsGeocodingService;
+    private final NotificationOutboxService notificationOutboxService;
+
+    // Regroupement des alertes WebSocket par région/qualité
+    private final AlertDigestWindow<String, Map<String, Object>> priceAlertDigest;
 
     public PriceService(PriceRepository priceRepository,
             RegionRepository regionRepository,
@@ -46,7 +55,10 @@ public class PriceService {
             FileStorageService fileStorageService,
             WebSocketController webSocketController,
             GpsValidationService gpsValidationService,
-            GpsGeocodingService gpsGeocodingService) {
+            GpsGeocodingService gpsGeocodingService,
+            NotificationOutboxService notificationOutboxService,
+            @Value("${app.notifications.digest.window:PT5M}") Duration digestWindow,
+            @Value("${app.notifications.digest.max-entries:50000}") int digestMaxEntries) {
         this.priceRepository = priceRepository;
         this.regionRepository = regionRepository;
         this.qualityGradeRepository = qualityGradeRepository;
@@ -56,6 +68,8 @@ public class PriceService {
         this.webSocketController = webSocketController;
         this.gpsValidationService = gpsValidationService;
         this.gpsGeocodingService = gpsGeocodingService;
+        this.notificationOutboxService = notificationOutboxService;
+        this.priceAlertDigest = new AlertDigestWindow<>(digestWindow.toMillis(), digestMaxEntries);
     }
 
     @Transactional(readOnly = true)
@@ -108,7 +122,11 @@ public class PriceService {
                 .map(price -> priceMapper.toDTOWithLocalizedNames(price, language));
     }
 
-    public PriceDTO createPrice(CreatePriceRequest request, User currentUser) {
+    /**
+     * Crée un prix ; la photo éventuelle est déjà enregistrée par l'appelant, hors
+     * de la transaction, sous le nom photoFileName
+     */
+    public PriceDTO createPrice(CreatePriceRequest request, User currentUser, String photoFileName) {
         logger.info("Creating new price for region {} and quality {}",
                 request.getRegionCode(), request.getQualityGrade());
 
@@ -152,16 +170,7 @@ public class PriceService {
         price.setCreatedBy(currentUser);
         price.setVerified(false); // New prices are unverified by default
 
-        // Handle photo upload
-        if (request.getPhotoFile() != null && !request.getPhotoFile().isEmpty()) {
-            try {
-                String photoUrl = fileStorageService.storeFile(request.getPhotoFile());
-                price.setPhotoUrl(photoUrl);
-            } catch (Exception e) {
-                logger.error("Error uploading photo for price", e);
-                throw new RuntimeException("Failed to upload photo: " + e.getMessage());
-            }
-        }
+        price.setPhotoUrl(photoFileName);
 
         price = priceRepository.save(price);
 
@@ -170,21 +179,27 @@ public class PriceService {
 
         logger.info("Price created successfully with ID: {}", price.getId());
 
+        PriceDTO priceDTO = priceMapper.toDTO(price);
+
         // Broadcast new price via WebSocket
         try {
-            PriceDTO priceDTO = priceMapper.toDTO(price);
             webSocketController.broadcastNewPrice(priceDTO);
-
-            // Check for significant price variations and send notifications
-            checkAndNotifyPriceVariation(priceDTO);
         } catch (Exception e) {
             logger.error("Error broadcasting new price via WebSocket", e);
         }
 
-        return priceMapper.toDTO(price);
+        // Check for significant price variations and send notifications. The outbox insert
+        // belongs to this transaction: if it fails, the price is not created either
+        checkAndNotifyPriceVariation(price, priceDTO);
+
+        return priceDTO;
     }
 
-    public PriceDTO updatePrice(UUID id, CreatePriceRequest request, User currentUser) {
+    /**
+     * Met à jour un prix ; une nouvelle photo est déjà enregistrée par l'appelant
+     * sous le nom photoFileName, l'ancienne n'est supprimée qu'après validation
+     */
+    public PriceDTO updatePrice(UUID id, CreatePriceRequest request, User currentUser, String photoFileName) {
         Price price = priceRepository.findById(id)
                 .filter(p -> p.getActive())
                 .orElseThrow(() -> new RuntimeException("Price not found"));
@@ -212,19 +227,11 @@ public class PriceService {
         }
 
         // Handle photo update
-        if (request.getPhotoFile() != null && !request.getPhotoFile().isEmpty()) {
-            try {
-                // Delete old photo if exists
-                if (price.getPhotoUrl() != null) {
-                    fileStorageService.deleteFile(price.getPhotoUrl());
-                }
-
-                String photoUrl = fileStorageService.storeFile(request.getPhotoFile());
-                price.setPhotoUrl(photoUrl);
-            } catch (Exception e) {
-                logger.error("Error updating photo for price", e);
-                throw new RuntimeException("Failed to update photo: " + e.getMessage());
+        if (photoFileName != null) {
+            if (price.getPhotoUrl() != null) {
+                deleteFileAfterCommit(price.getPhotoUrl());
             }
+            price.setPhotoUrl(photoFileName);
         }
 
         // Reset verification if significant changes made
@@ -471,6 +478,23 @@ public class PriceService {
         return prices.map(price -> priceMapper.toDTOWithLocalizedNames(price, language));
     }
 
+    /**
+     * Supprime une photo remplacée une fois la transaction validée : un échec
+     * laisse le prix pointer vers un fichier toujours présent
+     */
+    private void deleteFileAfterCommit(String fileName) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    fileStorageService.deleteFile(fileName);
+                }
+            });
+        } else {
+            fileStorageService.deleteFile(fileName);
+        }
+    }
+
     private boolean canUserModifyPrice(User user, Price price) {
         // Admins and moderators can modify any price
         if (user.isAdmin() || user.isModerator()) {
@@ -512,59 +536,86 @@ public class PriceService {
     }
 
     /**
-     * Check for significant price variations and send notifications
+     * Check for significant price variations and send notifications.
+     *
+     * Only the WebSocket alert is best effort; a failure of the queries or of the
+     * outbox insert propagates and rolls back the price transaction.
      */
-    private void checkAndNotifyPriceVariation(PriceDTO newPrice) {
+    private void checkAndNotifyPriceVariation(Price price, PriceDTO newPrice) {
+        // Get recent prices for the same region and quality
+        LocalDate fromDate = LocalDate.now().minusDays(7); // Last 7 days
+        List<Price> recentPrices = priceRepository.findPricesForStatisticsWithAllParams(
+                newPrice.getRegion(),
+                newPrice.getQuality(),
+                fromDate);
+
+        if (recentPrices.size() <= 1) {
+            return;
+        }
+        // Calculate average price excluding the new one
+        BigDecimal avgPrice = recentPrices.stream()
+                .filter(p -> !p.getId().toString().equals(newPrice.getId()))
+                .map(Price::getPriceFcfa)
+                .filter(Objects::nonNull)
+                .reduce(BigDecimal.ZERO, BigDecimal::add)
+                .divide(BigDecimal.valueOf(recentPrices.size() - 1), 2, BigDecimal.ROUND_HALF_UP);
+
+        if (avgPrice.compareTo(BigDecimal.ZERO) <= 0) {
+            return;
+        }
+        BigDecimal newPriceValue = newPrice.getPriceFcfa();
+        BigDecimal percentChange = newPriceValue.subtract(avgPrice)
+                .divide(avgPrice, 4, BigDecimal.ROUND_HALF_UP)
+                .abs();
+
+        // If price variation is more than 10%, send notification
+        if (percentChange.compareTo(BigDecimal.valueOf(0.1)) <= 0) {
+            return;
+        }
+        BigDecimal variationPct = percentChange.multiply(BigDecimal.valueOf(100));
         try {
-            // Get recent prices for the same region and quality
-            LocalDate fromDate = LocalDate.now().minusDays(7); // Last 7 days
-            List<Price> recentPrices = priceRepository.findPricesForStatisticsWithAllParams(
-                    newPrice.getRegion(),
-                    newPrice.getQuality(),
-                    fromDate);
-
-            if (recentPrices.size() > 1) {
-                // Calculate average price excluding the new one
-                BigDecimal avgPrice = recentPrices.stream()
-                        .filter(p -> !p.getId().toString().equals(newPrice.getId()))
-                        .map(Price::getPriceFcfa)
-                        .filter(Objects::nonNull)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add)
-                        .divide(BigDecimal.valueOf(recentPrices.size() - 1), 2, BigDecimal.ROUND_HALF_UP);
-
-                if (avgPrice.compareTo(BigDecimal.ZERO) > 0) {
-                    BigDecimal newPriceValue = newPrice.getPriceFcfa();
-                    BigDecimal percentChange = newPriceValue.subtract(avgPrice)
-                            .divide(avgPrice, 4, BigDecimal.ROUND_HALF_UP)
-                            .abs();
-
-                    // If price variation is more than 10%, send notification
-                    if (percentChange.compareTo(BigDecimal.valueOf(0.1)) > 0) {
-                        String direction = newPriceValue.compareTo(avgPrice) > 0 ? "augmentation" : "diminution";
-                        String message = String.format(
-                                "Variation significative de prix détectée: %s de %.1f%% pour %s en %s",
-                                direction,
-                                percentChange.multiply(BigDecimal.valueOf(100)).doubleValue(),
-                                newPrice.getQualityName(),
-                                newPrice.getRegionName());
-
-                        // Broadcast price alert to all users
-                        Map<String, Object> alert = new HashMap<>();
-                        alert.put("type", "price_alert");
-                        alert.put("title", "Alerte Prix");
-                        alert.put("message", message);
-                        alert.put("price", newPrice);
-                        alert.put("variation", percentChange.multiply(BigDecimal.valueOf(100)).doubleValue());
-                        alert.put("timestamp", System.currentTimeMillis());
-
-                        webSocketController.broadcastToTopic("/topic/price_alerts", alert);
-                        logger.info("Price variation alert sent: {}% change",
-                                percentChange.multiply(BigDecimal.valueOf(100)));
-                    }
-                }
+            String direction = newPriceValue.compareTo(avgPrice) > 0 ? "augmentation" : "diminution";
+            String message = String.format(
+                    "Variation significative de prix détectée: %s de %.1f%% pour %s en %s",
+                    direction,
+                    variationPct.doubleValue(),
+                    newPrice.getQualityName(),
+                    newPrice.getRegionName());
+
+            // Broadcast price alert to all users
+            Map<String, Object> alert = new HashMap<>();
+            alert.put("type", "price_alert");
+            alert.put("title", "Alerte Prix");
+            alert.put("message", message);
+            alert.put("price", newPrice);
+            alert.put("variation", variationPct.doubleValue());
+            alert.put("timestamp", System.currentTimeMillis());
+
+            String digestKey = newPrice.getRegion() + "|" + newPrice.getQuality();
+            if (priceAlertDigest.offer(digestKey, alert, System.nanoTime() / 1_000_000)) {
+                webSocketController.broadcastToTopic("/topic/price_alerts", alert);
             }
         } catch (Exception e) {
-            logger.error("Error checking price variation", e);
+            logger.error("Error broadcasting price variation alert", e);
+        }
+        notificationOutboxService.enqueuePriceVariation(price, avgPrice, variationPct);
+        logger.info("Price variation alert sent: {}% change", variationPct);
+    }
+
+    /**
+     * Broadcast the latest alert of each closed region/quality digest window
+     */
+    @Scheduled(fixedDelayString = "${app.notifications.digest.flush-interval:PT15S}")
+    public void flushPriceAlertDigests() {
+        for (AlertDigestWindow.Digest<String, Map<String, Object>> digest : priceAlertDigest
+                .drainExpired(System.nanoTime() / 1_000_000)) {
+            try {
+                Map<String, Object> alert = new HashMap<>(digest.getAlert());
+                alert.put("digestCount", digest.getMerged());
+                webSocketController.broadcastToTopic("/topic/price_alerts", alert);
+            } catch (Exception e) {
+                logger.error("Error broadcasting digested price alert", e);
+            }
         }
     }
 
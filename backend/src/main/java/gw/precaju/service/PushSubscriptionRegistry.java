@@ -0,0 +1,504 @@
+package gw.precaju.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gw.precaju.entity.NotificationPreferences;
+import gw.precaju.entity.User;
+import gw.precaju.repository.UserRepository;
+import nl.martijndwars.webpush.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Registre en mémoire des abonnements push déjà désérialisés, avec les
+ * préférences de notification de prix de chaque utilisateur.
+ *
+ * Chaque abonné occupe un emplacement entier ; un index inversé associe
+ * chaque clé (région, qualité) au tableau trié des emplacements intéressés,
+ * "*" représentant "toutes les régions/qualités". La sélection des
+ * destinataires d'un prix ne parcourt donc que les abonnés concernés.
+ *
+ * Chargé au démarrage, tenu à jour par les abonnements/désabonnements et les
+ * mises à jour d'utilisateurs faits sur cette instance, et rechargé
+ * périodiquement. Les modifications faites sur une autre instance ne sont pas
+ * diffusées : les destinataires sont relus en base au moment de l'envoi
+ * (voir {@link #revalidate(Collection)}), ce qui écarte les comptes désactivés
+ * ou désabonnés ailleurs ; les préférences modifiées ailleurs sont prises en
+ * compte au rechargement suivant.
+ */
+@Service
+public class PushSubscriptionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushSubscriptionRegistry.class);
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+    private static final int REVALIDATE_BATCH_SIZE = 1000;
+    private static final String ANY = "*";
+    private static final int[] EMPTY = new int[0];
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+
+    // Écritures sérialisées sur lock, lectures sans verrou
+    private final Object lock = new Object();
+    private final Map<UUID, Integer> slotByUser = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private volatile AtomicReferenceArray<Entry> slots = new AtomicReferenceArray<>(64);
+    private int nextSlot;
+    private volatile Map<String, int[]> index = new ConcurrentHashMap<>();
+    // Utilisateurs modifiés pendant un rechargement, null hors rechargement
+    private Set<UUID> touchedDuringReload;
+    private final Object reloadLock = new Object();
+
+    public PushSubscriptionRegistry(UserRepository userRepository, ObjectMapper objectMapper) {
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Recharge le registre depuis la table users.
+     *
+     * La lecture se fait hors verrou ; les utilisateurs modifiés pendant ce
+     * temps gardent leur état courant plutôt que celui, plus ancien, de la
+     * lecture.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.push.registry.reload-interval:PT30M}",
+            initialDelayString = "${app.push.registry.reload-interval:PT30M}")
+    public void reload() {
+        synchronized (reloadLock) {
+            synchronized (lock) {
+                touchedDuringReload = new HashSet<>();
+            }
+            try {
+                Map<UUID, Entry> loaded = new LinkedHashMap<>();
+                UUID lastId = new UUID(0L, 0L);
+                List<Object[]> rows;
+                do {
+                    rows = userRepository.findPushSubscriptionsAfter(lastId, PageRequest.of(0, LOAD_PAGE_SIZE));
+                    for (Object[] row : rows) {
+                        lastId = (UUID) row[0];
+                        parse(lastId, (String) row[1], (NotificationPreferences) row[2]).ifPresent(e -> loaded.put(e.getUserId(), e));
+                    }
+                } while (rows.size() == LOAD_PAGE_SIZE);
+
+                synchronized (lock) {
+                    for (UUID userId : touchedDuringReload) {
+                        Integer slot = slotByUser.get(userId);
+                        Entry current = slot == null ? null : slots.get(slot);
+                        if (current != null) {
+                            loaded.put(userId, current);
+                        } else {
+                            loaded.remove(userId);
+                        }
+                    }
+                    rebuild(loaded.values());
+                }
+                logger.info("Push subscription registry loaded: {} subscribers", loaded.size());
+            } catch (Exception e) {
+                logger.error("Failed to load push subscription registry", e);
+            } finally {
+                synchronized (lock) {
+                    touchedDuringReload = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Met à jour l'entrée d'un utilisateur à partir de son état persisté
+     */
+    public void refresh(User user) {
+        Optional<Entry> entry = Boolean.TRUE.equals(user.getActive())
+                && Boolean.TRUE.equals(user.getAbonnementNotifications())
+                        ? parse(user.getId(), user.getPushSubscription(), user.getNotificationPreferences())
+                        : Optional.empty();
+        synchronized (lock) {
+            if (entry.isPresent()) {
+                put(entry.get());
+            } else {
+                remove(user.getId());
+            }
+        }
+    }
+
+    public void unregister(UUID userId) {
+        synchronized (lock) {
+            remove(userId);
+        }
+    }
+
+    public void unregisterAll(Collection<UUID> userIds) {
+        synchronized (lock) {
+            userIds.forEach(this::remove);
+        }
+    }
+
+    /**
+     * Vérifie en base que les utilisateurs donnés sont toujours actifs et abonnés,
+     * met le registre à jour et retourne leurs entrées courantes. Seules les
+     * colonnes d'état et une empreinte de l'abonnement sont relues ; l'abonnement
+     * n'est rechargé et désérialisé que si cette empreinte a changé.
+     */
+    public Map<UUID, Entry> revalidate(Collection<UUID> userIds) {
+        List<UUID> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        Map<UUID, String> versions = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += REVALIDATE_BATCH_SIZE) {
+            List<UUID> batch = ids.subList(from, Math.min(ids.size(), from + REVALIDATE_BATCH_SIZE));
+            for (Object[] row : userRepository.findPushSubscriptionVersionsByIdIn(batch)) {
+                versions.put((UUID) row[0], (String) row[1]);
+            }
+        }
+
+        Map<UUID, Entry> current = new HashMap<>();
+        List<UUID> changed = new ArrayList<>();
+        synchronized (lock) {
+            for (UUID userId : ids) {
+                String version = versions.get(userId);
+                Entry cached = find(userId).orElse(null);
+                if (version == null) {
+                    remove(userId);
+                } else if (cached != null && version.equals(cached.subscriptionVersion)) {
+                    current.put(userId, cached);
+                } else {
+                    changed.add(userId);
+                }
+            }
+        }
+        if (changed.isEmpty()) {
+            return current;
+        }
+
+        // Abonnement modifié ailleurs : relecture complète des seuls utilisateurs concernés
+        Map<UUID, Entry> reloaded = new HashMap<>();
+        for (int from = 0; from < changed.size(); from += REVALIDATE_BATCH_SIZE) {
+            List<UUID> batch = changed.subList(from, Math.min(changed.size(), from + REVALIDATE_BATCH_SIZE));
+            for (Object[] row : userRepository.findPushSubscriptionsByIdIn(batch)) {
+                UUID userId = (UUID) row[0];
+                parse(userId, (String) row[1], (NotificationPreferences) row[2])
+                        .ifPresent(e -> reloaded.put(userId, e));
+            }
+        }
+        synchronized (lock) {
+            for (UUID userId : changed) {
+                Entry entry = reloaded.get(userId);
+                if (entry == null) {
+                    remove(userId);
+                } else {
+                    put(entry);
+                    current.put(userId, entry);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Destinataires d'une variation de prix, vérifiés en base au moment de l'envoi
+     */
+    public List<Entry> findCurrentRecipients(String regionCode, String qualityCode, BigDecimal variationPct) {
+        List<Entry> candidates = findRecipients(regionCode, qualityCode, variationPct);
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        Map<UUID, Entry> current = revalidate(candidates.stream().map(Entry::getUserId).toList());
+        String region = normalize(regionCode);
+        String quality = normalize(qualityCode);
+        List<Entry> recipients = new ArrayList<>(current.size());
+        for (Entry candidate : candidates) {
+            Entry entry = current.get(candidate.getUserId());
+            if (entry != null && entry.isInterestedIn(region, quality) && entry.accepts(variationPct)) {
+                recipients.add(entry);
+            }
+        }
+        return recipients;
+    }
+
+    /**
+     * Abonnés intéressés par une variation de prix pour une région et une qualité
+     */
+    public List<Entry> findRecipients(String regionCode, String qualityCode, BigDecimal variationPct) {
+        String region = normalize(regionCode);
+        String quality = normalize(qualityCode);
+        AtomicReferenceArray<Entry> current = slots;
+        List<Entry> recipients = new ArrayList<>();
+        // Un abonné n'apparaît que sous une seule de ces clés pour un couple donné
+        for (String key : new String[] { key(region, quality), key(region, ANY), key(ANY, quality), key(ANY, ANY) }) {
+            for (int slot : index.getOrDefault(key, EMPTY)) {
+                Entry entry = slot < current.length() ? current.get(slot) : null;
+                // L'emplacement a pu être réattribué depuis la lecture de l'index
+                if (entry != null && entry.isInterestedIn(region, quality) && entry.accepts(variationPct)) {
+                    recipients.add(entry);
+                }
+            }
+        }
+        return recipients;
+    }
+
+    /**
+     * Entrée courante d'un abonné, vide s'il n'est plus abonné
+     */
+    public Optional<Entry> find(UUID userId) {
+        synchronized (lock) {
+            Integer slot = slotByUser.get(userId);
+            return slot == null ? Optional.empty() : Optional.ofNullable(slots.get(slot));
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return slotByUser.size();
+        }
+    }
+
+    /**
+     * Reconstruit emplacements et index d'un bloc, sans copie tableau par abonné
+     */
+    private void rebuild(Collection<Entry> entries) {
+        AtomicReferenceArray<Entry> rebuilt = new AtomicReferenceArray<>(Math.max(64, entries.size() * 2));
+        Map<String, List<Integer>> slotsByKey = new HashMap<>();
+        slotByUser.clear();
+        freeSlots.clear();
+        int slot = 0;
+        for (Entry entry : entries) {
+            rebuilt.set(slot, entry);
+            slotByUser.put(entry.getUserId(), slot);
+            for (String key : entry.indexKeys()) {
+                slotsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(slot);
+            }
+            slot++;
+        }
+        Map<String, int[]> rebuiltIndex = new ConcurrentHashMap<>();
+        // Emplacements attribués dans l'ordre croissant : les tableaux sont déjà triés
+        slotsByKey.forEach((key, list) -> rebuiltIndex.put(key, list.stream().mapToInt(Integer::intValue).toArray()));
+        nextSlot = slot;
+        slots = rebuilt;
+        index = rebuiltIndex;
+    }
+
+    private void put(Entry entry) {
+        remove(entry.getUserId());
+        if (touchedDuringReload != null) {
+            touchedDuringReload.add(entry.getUserId());
+        }
+        int slot = freeSlots.isEmpty() ? nextSlot++ : freeSlots.pop();
+        if (slot >= slots.length()) {
+            AtomicReferenceArray<Entry> grown = new AtomicReferenceArray<>(slots.length() * 2);
+            for (int i = 0; i < slots.length(); i++) {
+                grown.set(i, slots.get(i));
+            }
+            slots = grown;
+        }
+        slots.set(slot, entry);
+        slotByUser.put(entry.getUserId(), slot);
+        for (String key : entry.indexKeys()) {
+            index.compute(key, (k, slotsForKey) -> insert(slotsForKey == null ? EMPTY : slotsForKey, slot));
+        }
+    }
+
+    private void remove(UUID userId) {
+        if (touchedDuringReload != null) {
+            touchedDuringReload.add(userId);
+        }
+        Integer slot = slotByUser.remove(userId);
+        if (slot == null) {
+            return;
+        }
+        Entry entry = slots.get(slot);
+        slots.set(slot, null);
+        freeSlots.push(slot);
+        if (entry != null) {
+            for (String key : entry.indexKeys()) {
+                index.computeIfPresent(key, (k, slotsForKey) -> {
+                    int[] updated = delete(slotsForKey, slot);
+                    return updated.length == 0 ? null : updated;
+                });
+            }
+        }
+    }
+
+    // Tableaux triés en copie sur écriture : les lecteurs voient toujours un tableau complet
+    private static int[] insert(int[] sorted, int value) {
+        int pos = Arrays.binarySearch(sorted, value);
+        if (pos >= 0) {
+            return sorted;
+        }
+        int at = -pos - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, at);
+        result[at] = value;
+        System.arraycopy(sorted, at, result, at + 1, sorted.length - at);
+        return result;
+    }
+
+    private static int[] delete(int[] sorted, int value) {
+        int pos = Arrays.binarySearch(sorted, value);
+        if (pos < 0) {
+            return sorted;
+        }
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, pos);
+        System.arraycopy(sorted, pos + 1, result, pos, sorted.length - pos - 1);
+        return result;
+    }
+
+    private static String key(String region, String quality) {
+        return region + '|' + quality;
+    }
+
+    private static String normalize(String code) {
+        return code == null || code.isBlank() ? ANY : code.trim().toUpperCase();
+    }
+
+    private Optional<Entry> parse(UUID userId, String pushSubscription, NotificationPreferences preferences) {
+        Optional<Subscription> subscription = parseSubscription(userId, pushSubscription);
+        if (subscription.isEmpty()) {
+            return Optional.empty();
+        }
+        boolean prixVariations = true;
+        BigDecimal seuil = null;
+        Set<String> regions = new TreeSet<>();
+        Set<String> qualities = new TreeSet<>();
+        if (preferences != null) {
+            prixVariations = !Boolean.FALSE.equals(preferences.getPrixVariations())
+                    && !Boolean.FALSE.equals(preferences.getPriceAlerts())
+                    && !Boolean.FALSE.equals(preferences.getPushNotifications());
+            seuil = preferences.getSeuilPerso();
+            if (preferences.getAlertRegions() != null) {
+                preferences.getAlertRegions().forEach(r -> regions.add(normalize(r)));
+            }
+            if (preferences.getAlertQualities() != null) {
+                preferences.getAlertQualities().forEach(q -> qualities.add(normalize(q)));
+            }
+        }
+        return Optional.of(new Entry(userId, subscription.get(), prixVariations, seuil, regions, qualities,
+                subscriptionVersion(pushSubscription)));
+    }
+
+    /**
+     * Empreinte du JSON d'abonnement, identique au md5() calculé par PostgreSQL
+     */
+    static String subscriptionVersion(String pushSubscription) {
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            return HexFormat.of().formatHex(md5.digest(pushSubscription.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    private Optional<Subscription> parseSubscription(UUID userId, String pushSubscription) {
+        if (pushSubscription == null || pushSubscription.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            Subscription subscription = objectMapper.readValue(pushSubscription, Subscription.class);
+            if (subscription.endpoint == null || subscription.keys == null) {
+                logger.warn("Incomplete push subscription for user {}", userId);
+                return Optional.empty();
+            }
+            return Optional.of(subscription);
+        } catch (Exception e) {
+            logger.warn("Invalid push subscription for user {}: {}", userId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public static class Entry {
+        private final UUID userId;
+        private final Subscription subscription;
+        private final boolean prixVariations;
+        private final BigDecimal seuilPersonnalise;
+        private final Set<String> regions;
+        private final Set<String> qualities;
+        // Empreinte du JSON d'abonnement dont l'entrée est issue
+        private final String subscriptionVersion;
+
+        public Entry(UUID userId, Subscription subscription, boolean prixVariations, BigDecimal seuilPersonnalise,
+                Set<String> regions, Set<String> qualities) {
+            this(userId, subscription, prixVariations, seuilPersonnalise, regions, qualities, null);
+        }
+
+        Entry(UUID userId, Subscription subscription, boolean prixVariations, BigDecimal seuilPersonnalise,
+                Set<String> regions, Set<String> qualities, String subscriptionVersion) {
+            this.userId = userId;
+            this.subscription = subscription;
+            this.prixVariations = prixVariations;
+            this.seuilPersonnalise = seuilPersonnalise;
+            this.regions = regions.contains(ANY) ? Set.of() : Set.copyOf(regions);
+            this.qualities = qualities.contains(ANY) ? Set.of() : Set.copyOf(qualities);
+            this.subscriptionVersion = subscriptionVersion;
+        }
+
+        public UUID getUserId() {
+            return userId;
+        }
+
+        public Subscription getSubscription() {
+            return subscription;
+        }
+
+        public boolean isPrixVariations() {
+            return prixVariations;
+        }
+
+        public BigDecimal getSeuilPersonnalise() {
+            return seuilPersonnalise;
+        }
+
+        /**
+         * Indique si une variation (en %) doit être notifiée à cet utilisateur
+         */
+        public boolean accepts(BigDecimal variationPct) {
+            if (!prixVariations) {
+                return false;
+            }
+            return seuilPersonnalise == null || variationPct == null
+                    || variationPct.abs().compareTo(seuilPersonnalise) >= 0;
+        }
+
+        boolean isInterestedIn(String region, String quality) {
+            return (regions.isEmpty() || regions.contains(region))
+                    && (qualities.isEmpty() || qualities.contains(quality));
+        }
+
+        List<String> indexKeys() {
+            Collection<String> r = regions.isEmpty() ? List.of(ANY) : regions;
+            Collection<String> q = qualities.isEmpty() ? List.of(ANY) : qualities;
+            List<String> keys = new ArrayList<>(r.size() * q.size());
+            for (String region : r) {
+                for (String quality : q) {
+                    keys.add(key(region, quality));
+                }
+            }
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package gw.precaju.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Rendu côté serveur des images QR code des exportateurs (PNG/SVG).
+ * Les images sont mises en cache sur disque, adressées par le hash du contenu
+ * (token, format, taille) : un même token n'est jamais rendu deux fois. Chaque
+ * lecture rafraîchit la date du fichier ; le nettoyage périodique supprime les
+ * images inutilisées depuis max-age, puis les plus anciennes au-delà de max-bytes
+ * (tokens renouvelés, tailles demandées une seule fois).
+ */
+@Service
+public class QRCodeImageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QRCodeImageService.class);
+
+    public static final int MIN_SIZE = 64;
+    public static final int MAX_SIZE = 2048;
+
+    public enum ImageFormat {
+        PNG("png", "image/png"),
+        SVG("svg", "image/svg+xml");
+
+        private final String extension;
+        private final String contentType;
+
+        ImageFormat(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static ImageFormat fromString(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return PNG;
+            }
+            return ImageFormat.valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    // Une lecture ne réécrit la date du fichier qu'au-delà de ce délai
+    private static final long TOUCH_INTERVAL_MILLIS = Duration.ofHours(1).toMillis();
+    // Fichier temporaire abandonné par un rendu interrompu
+    private static final long ORPHAN_TEMP_MILLIS = Duration.ofHours(1).toMillis();
+
+    private final Path cacheLocation;
+    private final int defaultSize;
+    private final long maxAgeMillis;
+    private final long maxBytes;
+    private final QRCodeWriter qrCodeWriter = new QRCodeWriter();
+
+    public QRCodeImageService(@Value("${app.qrcode.cache-dir:./qrcodes}") String cacheDir,
+                              @Value("${app.qrcode.default-size:300}") int defaultSize,
+                              @Value("${app.qrcode.cache.max-age:P30D}") Duration maxAge,
+                              @Value("${app.qrcode.cache.max-bytes:268435456}") long maxBytes) {
+        this.cacheLocation = Paths.get(cacheDir).toAbsolutePath().normalize();
+        this.defaultSize = defaultSize;
+        this.maxAgeMillis = maxAge.toMillis();
+        this.maxBytes = maxBytes;
+
+        try {
+            Files.createDirectories(this.cacheLocation);
+            logger.info("QR code image cache initialized at: {}", this.cacheLocation);
+        } catch (IOException ex) {
+            logger.error("Could not create the QR code image cache directory.", ex);
+            throw new RuntimeException("Could not create the QR code image cache directory.", ex);
+        }
+    }
+
+    public int getDefaultSize() {
+        return defaultSize;
+    }
+
+    /**
+     * Retourne le fichier image du QR code, en le générant au premier appel
+     */
+    public Path getOrRender(String token, ImageFormat format, int size) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("Le token QR code est obligatoire");
+        }
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IllegalArgumentException("La taille doit être comprise entre " + MIN_SIZE + " et " + MAX_SIZE);
+        }
+
+        String key = contentKey(token, format, size);
+        // Sous-répertoire à deux caractères pour éviter les répertoires trop volumineux
+        Path target = cacheLocation.resolve(key.substring(0, 2)).resolve(key + "." + format.getExtension());
+        if (Files.exists(target)) {
+            touch(target);
+            return target;
+        }
+
+        try {
+            Files.createDirectories(target.getParent());
+            // Écriture dans un fichier temporaire puis renommage atomique : un lecteur
+            // concurrent ne voit jamais d'image partielle
+            Path temp = Files.createTempFile(target.getParent(), key, ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    render(token, format, size, out);
+                }
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            logger.debug("Rendered QR code image {} for token {}", target.getFileName(), token);
+            return target;
+        } catch (IOException ex) {
+            logger.error("Could not render QR code image for token {}", token, ex);
+            throw new RuntimeException("Could not render QR code image", ex);
+        }
+    }
+
+    /**
+     * Supprime les images inutilisées depuis max-age, puis les moins récemment
+     * utilisées tant que le cache dépasse max-bytes ; renvoie le nombre supprimé
+     */
+    @Scheduled(fixedDelayString = "${app.qrcode.cache.cleanup-interval:PT1H}",
+            initialDelayString = "${app.qrcode.cache.cleanup-interval:PT1H}")
+    public int evictStaleImages() {
+        long now = System.currentTimeMillis();
+        List<CachedImage> images = new ArrayList<>();
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(cacheLocation, 2)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException ex) {
+                    // Supprimé entre-temps
+                    continue;
+                }
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                long lastUsed = attributes.lastModifiedTime().toMillis();
+                boolean temp = path.getFileName().toString().endsWith(".tmp");
+                if (now - lastUsed > (temp ? ORPHAN_TEMP_MILLIS : maxAgeMillis)) {
+                    deleted += delete(path) ? 1 : 0;
+                } else if (!temp) {
+                    images.add(new CachedImage(path, lastUsed, attributes.size()));
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("Could not scan the QR code image cache", ex);
+            return deleted;
+        }
+
+        long totalBytes = images.stream().mapToLong(image -> image.size).sum();
+        if (totalBytes > maxBytes) {
+            images.sort(Comparator.comparingLong(image -> image.lastUsed));
+            for (CachedImage image : images) {
+                if (totalBytes <= maxBytes) {
+                    break;
+                }
+                if (delete(image.path)) {
+                    deleted++;
+                    totalBytes -= image.size;
+                }
+            }
+        }
+        if (deleted > 0) {
+            logger.info("Evicted {} QR code images from the cache ({} bytes kept)", deleted, totalBytes);
+        }
+        return deleted;
+    }
+
+    private static final class CachedImage {
+        private final Path path;
+        private final long lastUsed;
+        private final long size;
+
+        private CachedImage(Path path, long lastUsed, long size) {
+            this.path = path;
+            this.lastUsed = lastUsed;
+            this.size = size;
+        }
+    }
+
+    private void touch(Path target) {
+        try {
+            long now = System.currentTimeMillis();
+            if (now - Files.getLastModifiedTime(target).toMillis() > TOUCH_INTERVAL_MILLIS) {
+                Files.setLastModifiedTime(target, FileTime.fromMillis(now));
+            }
+        } catch (IOException ex) {
+            logger.debug("Could not refresh QR code image date {}", target, ex);
+        }
+    }
+
+    private boolean delete(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            logger.warn("Could not delete cached QR code image {}", path, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Écrit une archive ZIP des badges QR (PNG), un par couple nom/token, directement
+     * dans le flux de sortie, entrée par entrée, sans construire l'archive en mémoire
+     */
+    public void writeBadgesZip(Map<String, String> tokensByName, int size, OutputStream outputStream)
+            throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(outputStream, StandardCharsets.UTF_8);
+        // Les PNG sont déjà compressés
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        Set<String> entryNames = new HashSet<>();
+
+        for (Map.Entry<String, String> badge : tokensByName.entrySet()) {
+            Path image = getOrRender(badge.getValue(), ImageFormat.PNG, size);
+
+            String baseName = badge.getKey().replaceAll("[^a-zA-Z0-9._-]", "_");
+            String entryName = baseName + ".png";
+            for (int i = 2; !entryNames.add(entryName); i++) {
+                entryName = baseName + "_" + i + ".png";
+            }
+
+            zip.putNextEntry(new ZipEntry(entryName));
+            Files.copy(image, zip);
+            zip.closeEntry();
+        }
+
+        zip.finish();
+        zip.flush();
+    }
+
+    private void render(String token, ImageFormat format, int size, OutputStream out) throws IOException {
+        BitMatrix matrix = encode(token, size);
+        switch (format) {
+            case PNG -> writePng(matrix, out);
+            case SVG -> writeSvg(matrix, out);
+        }
+    }
+
+    private BitMatrix encode(String token, int size) {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
+        hints.put(EncodeHintType.CHARACTER_SET, StandardCharsets.UTF_8.name());
+        hints.put(EncodeHintType.MARGIN, 2);
+        try {
+            return qrCodeWriter.encode(token, BarcodeFormat.QR_CODE, size, size, hints);
+        } catch (WriterException ex) {
+            throw new IllegalArgumentException("Token QR code impossible à encoder", ex);
+        }
+    }
+
+    private void writePng(BitMatrix matrix, OutputStream out) throws IOException {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = matrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF;
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        ImageIO.write(image, "png", out);
+    }
+
+    private void writeSvg(BitMatrix matrix, OutputStream out) throws IOException {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 " + width + " " + height
+                + "\" width=\"" + width + "\" height=\"" + height + "\" shape-rendering=\"crispEdges\">");
+        writer.write("<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path fill=\"#000\" d=\"");
+        // Un segment horizontal par suite de modules noirs contigus
+        for (int y = 0; y < height; y++) {
+            int x = 0;
+            while (x < width) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < width && matrix.get(x, y)) {
+                    x++;
+                }
+                writer.write("M" + start + " " + y + "h" + (x - start) + "v1h-" + (x - start) + "z");
+            }
+        }
+        writer.write("\"/></svg>");
+        writer.flush();
+    }
+
+    private String contentKey(String token, ImageFormat format, int size) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((token + "|" + format.name() + "|" + size).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
@@ -6,7 +6,9 @@ import org.springframework.stereotype.Service;
 
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.Set;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 @Service
 public class QRCodeService {
@@ -14,6 +16,16 @@ public class QRCodeService {
     private static final Logger logger = LoggerFactory.getLogger(QRCodeService.class);
     private static final SecureRandom secureRandom = new SecureRandom();
 
+    // qr_[uuid]_[timestamp]_[random] (generateQRCodeToken)
+    private static final Pattern RANDOM_TOKEN_PATTERN =
+            Pattern.compile("^qr_[a-f0-9]{8}_\\d+_[a-zA-Z0-9+/]{8}$");
+    // qr_[region]_[numero]_[epochSeconds](_[n]) (generateQRCodeTokenForExportateur) et jeux de données initiaux
+    private static final Pattern EXPORTATEUR_TOKEN_PATTERN =
+            Pattern.compile("^qr(_[a-z0-9]+){2,}$");
+    // pdc1.[payload].[signature] (SignedQRTokenService)
+    private static final Pattern SIGNED_TOKEN_PATTERN =
+            Pattern.compile("^pdc1\\.[A-Za-z0-9_-]+\\.[A-Za-z0-9_-]+$");
+
     /**
      * Génère un token QR code unique pour un exportateur
      */
@@ -43,8 +55,9 @@ public class QRCodeService {
             return false;
         }
         
-        // Format attendu: qr_[uuid]_[timestamp]_[random]
-        return token.matches("^qr_[a-f0-9]{8}_\\d+_[a-zA-Z0-9]{8}$");
+        return RANDOM_TOKEN_PATTERN.matcher(token).matches()
+                || EXPORTATEUR_TOKEN_PATTERN.matcher(token).matches()
+                || SIGNED_TOKEN_PATTERN.matcher(token).matches();
     }
 
     /**
@@ -65,11 +78,27 @@ public class QRCodeService {
         return token;
     }
 
+    /**
+     * Génère un token QR code pour un exportateur en évitant, sans accès à la base,
+     * les tokens déjà présents dans {@code takenTokens}. Le token retenu y est ajouté.
+     */
+    public String generateUniqueQRCodeTokenForExportateur(String numeroAgrement, String regionCode,
+                                                         Set<String> takenTokens) {
+        String baseToken = generateQRCodeTokenForExportateur(numeroAgrement, regionCode);
+        String token = baseToken;
+        int suffix = 1;
+        while (takenTokens.contains(token)) {
+            token = baseToken + "_" + (++suffix);
+        }
+        takenTokens.add(token);
+        return token;
+    }
+
     /**
      * Extrait les informations d'un token QR code
      */
     public QRCodeInfo parseQRCodeToken(String token) {
-        if (!isValidQRCodeFormat(token)) {
+        if (token == null || !RANDOM_TOKEN_PATTERN.matcher(token).matches()) {
             return null;
         }
         
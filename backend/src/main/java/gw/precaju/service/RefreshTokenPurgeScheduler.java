@@ -0,0 +1,43 @@
+package gw.precaju.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Purge planifiée des refresh tokens expirés, par lots pour ne pas tenir de
+ * longue transaction ni de verrous étendus sur la table
+ */
+@Component
+public class RefreshTokenPurgeScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenPurgeScheduler.class);
+
+    private final AuthService authService;
+    private final int batchSize;
+
+    public RefreshTokenPurgeScheduler(AuthService authService,
+            @Value("${app.security.refresh-token.purge-batch-size:1000}") int batchSize) {
+        this.authService = authService;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Scheduled(cron = "${app.security.refresh-token.purge-cron:0 15 * * * *}")
+    public void purgeExpiredTokens() {
+        try {
+            int total = 0;
+            int purged;
+            do {
+                purged = authService.purgeExpiredTokenBatch(batchSize);
+                total += purged;
+            } while (purged == batchSize);
+            if (total > 0) {
+                logger.info("Purged {} expired refresh tokens", total);
+            }
+        } catch (Exception e) {
+            logger.error("Error while purging expired refresh tokens", e);
+        }
+    }
+}
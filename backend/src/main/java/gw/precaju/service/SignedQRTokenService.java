@@ -0,0 +1,205 @@
+package gw.precaju.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Tokens QR auto-vérifiables, signés en Ed25519.
+ *
+ * Format : {@code pdc1.<payload>.<signature>} en base64url, où le payload contient
+ * l'id de l'exportateur, sa date d'expiration et sa version de statut. La signature
+ * se vérifie avec la seule clé publique : le serveur et la PWA n'ont besoin de la
+ * base que pour la liste de révocation.
+ */
+@Service
+public class SignedQRTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SignedQRTokenService.class);
+
+    public static final String TOKEN_PREFIX = "pdc1.";
+    private static final String ALGORITHM = "Ed25519";
+    // uuid (16) + jour d'expiration (4) + version de statut (4)
+    private static final int PAYLOAD_LENGTH = 24;
+
+    // Profils où une paire de clés éphémère est acceptée
+    private static final String[] EPHEMERAL_KEY_PROFILES = { "dev", "test" };
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final PrivateKey privateKey;
+    private final PublicKey publicKey;
+
+    @Autowired
+    public SignedQRTokenService(@Value("${app.qrcode.signing.private-key:}") String privateKeyBase64,
+                                @Value("${app.qrcode.signing.public-key:}") String publicKeyBase64,
+                                Environment environment) {
+        this(privateKeyBase64, publicKeyBase64, environment.matchesProfiles(EPHEMERAL_KEY_PROFILES));
+    }
+
+    /**
+     * Sans clés configurées, une paire éphémère n'est tolérée qu'en développement
+     * et en test : les badges imprimés ne se vérifieraient plus après un
+     * redémarrage, ni d'une instance à l'autre
+     */
+    SignedQRTokenService(String privateKeyBase64, String publicKeyBase64, boolean allowEphemeralKeys) {
+        try {
+            if (privateKeyBase64.isEmpty() || publicKeyBase64.isEmpty()) {
+                if (!allowEphemeralKeys) {
+                    throw new IllegalStateException("QR code signing keys are not configured: set "
+                            + "app.qrcode.signing.private-key and app.qrcode.signing.public-key "
+                            + "(QRCODE_SIGNING_PRIVATE_KEY / QRCODE_SIGNING_PUBLIC_KEY)");
+                }
+                logger.warn("QR code signing keys not configured, generating an ephemeral key pair. "
+                        + "Signed QR tokens will not survive a restart.");
+                KeyPair keyPair = KeyPairGenerator.getInstance(ALGORITHM).generateKeyPair();
+                this.privateKey = keyPair.getPrivate();
+                this.publicKey = keyPair.getPublic();
+            } else {
+                KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
+                this.privateKey = keyFactory.generatePrivate(
+                        new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKeyBase64)));
+                this.publicKey = keyFactory.generatePublic(
+                        new X509EncodedKeySpec(Base64.getDecoder().decode(publicKeyBase64)));
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid QR code signing key configuration", e);
+        }
+    }
+
+    /**
+     * Clé publique (X.509, base64) diffusée aux clients pour la vérification hors ligne
+     */
+    public String getPublicKeyBase64() {
+        return Base64.getEncoder().encodeToString(publicKey.getEncoded());
+    }
+
+    public boolean isSignedToken(String token) {
+        return token != null && token.startsWith(TOKEN_PREFIX);
+    }
+
+    /**
+     * Émet un token signé pour un exportateur
+     */
+    public String sign(UUID exportateurId, LocalDate dateExpiration, int statutVersion) {
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_LENGTH);
+        payload.putLong(exportateurId.getMostSignificantBits());
+        payload.putLong(exportateurId.getLeastSignificantBits());
+        payload.putInt((int) dateExpiration.toEpochDay());
+        payload.putInt(statutVersion);
+
+        String encodedPayload = ENCODER.encodeToString(payload.array());
+        try {
+            Signature signer = Signature.getInstance(ALGORITHM);
+            signer.initSign(privateKey);
+            signer.update(signingInput(encodedPayload));
+            return TOKEN_PREFIX + encodedPayload + "." + ENCODER.encodeToString(signer.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign QR code token", e);
+        }
+    }
+
+    /**
+     * Vérifie la signature d'un token sans accès à la base.
+     * Retourne vide si le token est mal formé ou si la signature est invalide ;
+     * l'expiration et la révocation restent à contrôler par l'appelant.
+     */
+    public Optional<SignedQRToken> verify(String token) {
+        if (!isSignedToken(token)) {
+            return Optional.empty();
+        }
+
+        String[] parts = token.substring(TOKEN_PREFIX.length()).split("\\.");
+        if (parts.length != 2) {
+            return Optional.empty();
+        }
+
+        try {
+            byte[] payload = DECODER.decode(parts[0]);
+            if (payload.length != PAYLOAD_LENGTH) {
+                return Optional.empty();
+            }
+
+            Signature verifier = Signature.getInstance(ALGORITHM);
+            verifier.initVerify(publicKey);
+            verifier.update(signingInput(parts[0]));
+            if (!verifier.verify(DECODER.decode(parts[1]))) {
+                logger.warn("Invalid signature for QR code token");
+                return Optional.empty();
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            UUID exportateurId = new UUID(buffer.getLong(), buffer.getLong());
+            LocalDate dateExpiration = LocalDate.ofEpochDay(buffer.getInt());
+            int statutVersion = buffer.getInt();
+            return Optional.of(new SignedQRToken(exportateurId, dateExpiration, statutVersion));
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            logger.debug("Malformed signed QR code token", e);
+            return Optional.empty();
+        }
+    }
+
+    private byte[] signingInput(String encodedPayload) {
+        return (TOKEN_PREFIX + encodedPayload).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Contenu vérifié d'un token signé
+     */
+    public static class SignedQRToken {
+        private final UUID exportateurId;
+        private final LocalDate dateExpiration;
+        private final int statutVersion;
+
+        public SignedQRToken(UUID exportateurId, LocalDate dateExpiration, int statutVersion) {
+            this.exportateurId = exportateurId;
+            this.dateExpiration = dateExpiration;
+            this.statutVersion = statutVersion;
+        }
+
+        public UUID getExportateurId() {
+            return exportateurId;
+        }
+
+        public LocalDate getDateExpiration() {
+            return dateExpiration;
+        }
+
+        public int getStatutVersion() {
+            return statutVersion;
+        }
+
+        public boolean isExpired(LocalDate today) {
+            return today.isAfter(dateExpiration);
+        }
+
+        @Override
+        public String toString() {
+            return "SignedQRToken{" +
+                    "exportateurId=" + exportateurId +
+                    ", dateExpiration=" + dateExpiration +
+                    ", statutVersion=" + statutVersion +
+                    '}';
+        }
+    }
+}
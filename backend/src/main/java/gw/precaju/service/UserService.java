@@ -1,43 +1,53 @@
 package gw.precaju.service;
 
+import gw.precaju.dto.CursorPageResponse;
 import gw.precaju.dto.UserConfigDTO;
 
 import gw.precaju.dto.request.UpdateUserConfigRequest;
+import gw.precaju.entity.NotificationPreferences;
 import gw.precaju.entity.User;
 import gw.precaju.entity.enums.UserRole;
 import gw.precaju.repository.UserRepository;
+import gw.precaju.repository.UserSearchCriteria;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Service
 @Transactional
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
     private final UserRepository userRepository;
     private final ObjectMapper objectMapper;
+    private final PushSubscriptionRegistry pushSubscriptionRegistry;
+    private final LastLoginTracker lastLoginTracker;
 
-    public UserService(UserRepository userRepository, ObjectMapper objectMapper) {
+    public UserService(UserRepository userRepository, ObjectMapper objectMapper,
+            PushSubscriptionRegistry pushSubscriptionRegistry, LastLoginTracker lastLoginTracker) {
         this.userRepository = userRepository;
         this.objectMapper = objectMapper;
+        this.pushSubscriptionRegistry = pushSubscriptionRegistry;
+        this.lastLoginTracker = lastLoginTracker;
     }
 
     @Override
@@ -49,6 +59,20 @@ public class UserService implements UserDetailsService {
         return user;
     }
 
+    /**
+     * Ré-hachage transparent à la connexion, appelé par Spring Security quand le
+     * hash stocké utilise un algorithme ou un coût obsolète
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newEncodedPassword) {
+        User user = userRepository.findByEmailAndActiveTrue(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: "
+                        + userDetails.getUsername()));
+        user.setPasswordHash(newEncodedPassword);
+        logger.info("Upgraded password hash encoding for user {}", user.getId());
+        return userRepository.save(user);
+    }
+
     @Transactional(readOnly = true)
     public User findById(UUID id) {
         return userRepository.findById(id)
@@ -61,8 +85,14 @@ public class UserService implements UserDetailsService {
                 .orElseThrow(() -> new RuntimeException("User not found with email: " + email));
     }
 
+    /**
+     * Enregistre l'utilisateur et met à jour son entrée du registre push
+     * (désactivation ou réactivation par un administrateur)
+     */
     public User save(User user) {
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        pushSubscriptionRegistry.refresh(saved);
+        return saved;
     }
 
     @Transactional(readOnly = true)
@@ -72,8 +102,7 @@ public class UserService implements UserDetailsService {
 
     public void updateLastLogin(String email) {
         User user = findByEmail(email);
-        user.updateLastLogin();
-        userRepository.save(user);
+        lastLoginTracker.record(user.getId(), Instant.now());
     }
 
     @Transactional(readOnly = true)
@@ -90,22 +119,11 @@ public class UserService implements UserDetailsService {
                     "UserService.findAllUsersWithFilters called with role: {}, active: {}, emailVerified: {}, search: {}, pageable: {}",
                     role, active, emailVerified, search, pageable);
 
-            // Nettoyer et valider les paramètres
-            String cleanSearch = cleanSearchParameter(search);
-            String roleString = cleanRoleParameter(role);
-            String searchPattern = createSearchPattern(cleanSearch);
-
-            logger.debug(
-                    "Cleaned parameters - roleString: {}, active: {}, emailVerified: {}, cleanSearch: {}, searchPattern: {}",
-                    roleString, active, emailVerified, cleanSearch, searchPattern);
-
-            // Nettoyer le Pageable pour éviter les conflits avec les noms de colonnes SQL
-            // natives
-            Pageable cleanPageable = createCleanPageable(pageable);
+            // Nettoyer et valider les paramètres ; seuls les filtres renseignés atteignent le SQL
+            UserSearchCriteria criteria = new UserSearchCriteria(cleanRoleParameter(role), active, emailVerified,
+                    cleanSearchParameter(search));
 
-            // Utiliser la méthode native SQL améliorée du repository
-            Page<User> result = userRepository.findAllUsersWithFiltersImproved(roleString, active, emailVerified,
-                    cleanSearch, searchPattern, cleanPageable);
+            Page<User> result = userRepository.searchUsers(criteria, pageable);
             logger.info("Successfully retrieved {} users with filters", result.getTotalElements());
             return result;
 
@@ -125,6 +143,51 @@ public class UserService implements UserDetailsService {
         }
     }
 
+    /**
+     * Recherche paginée par clé pour la console d'administration : le curseur
+     * opaque désigne le dernier utilisateur de la page précédente (created_at, id)
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<User> searchUsersAfterCursor(String role, Boolean active, Boolean emailVerified,
+            String search, String cursor, int size) {
+        UserSearchCriteria criteria = new UserSearchCriteria(cleanRoleParameter(role), active, emailVerified,
+                cleanSearchParameter(search));
+        Instant afterCreatedAt = null;
+        UUID afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = decodeCursor(cursor);
+            afterCreatedAt = Instant.parse(parts[0]);
+            afterId = UUID.fromString(parts[1]);
+        }
+
+        // Une ligne de plus que demandé indique s'il existe une page suivante
+        List<User> users = userRepository.searchUsersAfter(criteria, afterCreatedAt, afterId, size + 1);
+        boolean hasNext = users.size() > size;
+        List<User> content = hasNext ? users.subList(0, size) : users;
+        String nextCursor = hasNext ? encodeCursor(content.get(content.size() - 1)) : null;
+        return new CursorPageResponse<>(content, size, nextCursor);
+    }
+
+    private static String encodeCursor(User last) {
+        String key = last.getCreatedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = key.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Instant.parse(parts[0]);
+            UUID.fromString(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | java.time.format.DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
     /**
      * Nettoie et valide le paramètre de recherche
      */
@@ -150,87 +213,19 @@ public class UserService implements UserDetailsService {
     /**
      * Nettoie et valide le paramètre de rôle
      */
-    private String cleanRoleParameter(String role) {
+    private UserRole cleanRoleParameter(String role) {
         if (role == null || role.trim().isEmpty()) {
             return null;
         }
 
         try {
-            // Valider que le rôle est valide et retourner sa valeur (minuscule)
-            UserRole userRole = UserRole.valueOf(role.toUpperCase());
-            return userRole.getValue(); // Retourne "admin", "moderator", "contributor"
+            return UserRole.valueOf(role.trim().toUpperCase());
         } catch (IllegalArgumentException e) {
             logger.warn("Invalid role parameter: {}, ignoring role filter", role);
             return null;
         }
     }
 
-    /**
-     * Crée le pattern de recherche pour la méthode SQL native
-     * Utilise ILIKE avec % pour une recherche insensible à la casse
-     */
-    private String createSearchPattern(String search) {
-        if (search == null || search.isEmpty()) {
-            return null;
-        }
-        return "%" + search + "%";
-    }
-
-    /**
-     * Nettoie le Pageable pour éviter les conflits avec les noms de colonnes SQL
-     * natives
-     * Convertit les noms de propriétés camelCase vers snake_case
-     */
-    private Pageable createCleanPageable(Pageable pageable) {
-        if (pageable == null || pageable.getSort().isUnsorted()) {
-            // Si pas de tri, utiliser un tri par défaut par created_at DESC
-            return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
-                    Sort.by("created_at").descending());
-        }
-
-        // Mapper les noms de propriétés camelCase vers snake_case pour PostgreSQL
-        List<Sort.Order> orders = new ArrayList<>();
-        for (Sort.Order order : pageable.getSort()) {
-            String property = order.getProperty();
-
-            // Conversion des noms de propriétés
-            switch (property) {
-                case "createdAt":
-                    property = "created_at";
-                    break;
-                case "updatedAt":
-                    property = "updated_at";
-                    break;
-                case "fullName":
-                    property = "full_name";
-                    break;
-                case "emailVerified":
-                    property = "email_verified";
-                    break;
-                case "reputationScore":
-                    property = "reputation_score";
-                    break;
-                case "lastLoginAt":
-                    property = "last_login_at";
-                    break;
-                case "preferredRegions":
-                    property = "preferred_regions";
-                    break;
-                case "notificationPreferences":
-                    property = "notification_preferences";
-                    break;
-                // Les autres propriétés restent inchangées (id, email, role, active, etc.)
-                default:
-                    // Conserver la propriété telle quelle
-                    break;
-            }
-
-            orders.add(new Sort.Order(order.getDirection(), property));
-        }
-
-        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(orders));
-    }
-
     @Transactional(readOnly = true)
     public long countAllUsers() {
         try {
@@ -299,7 +294,7 @@ public class UserService implements UserDetailsService {
             configDTO.setEmailVerified(user.getEmailVerified());
             configDTO.setActive(user.getActive());
             configDTO.setCreatedAt(user.getCreatedAt());
-            configDTO.setLastLoginAt(user.getLastLoginAt());
+            configDTO.setLastLoginAt(lastLoginTracker.effectiveLastLogin(user.getId(), user.getLastLoginAt()));
 
             // User preferences
             UserConfigDTO.UserPreferencesDTO preferences = getUserPreferences(user);
@@ -367,34 +362,22 @@ public class UserService implements UserDetailsService {
      */
     @Transactional(readOnly = true)
     public UserConfigDTO.UserPreferencesDTO getUserPreferences(User user) {
-        try {
-            UserConfigDTO.UserPreferencesDTO preferences = new UserConfigDTO.UserPreferencesDTO();
-
-            // Parse preferred regions from JSON
-            List<String> preferredRegions = parseJsonToList(user.getPreferredRegions(), String.class);
-            preferences.setPreferredRegions(preferredRegions);
-
-            // Parse notification preferences to extract general preferences
-            Map<String, Object> notificationPrefs = parseJsonToMap(user.getNotificationPreferences());
-
-            // Set default values if not present
-            preferences.setLanguage((String) notificationPrefs.getOrDefault("language", "pt"));
-            preferences.setTheme((String) notificationPrefs.getOrDefault("theme", "system"));
-            preferences.setTimezone((String) notificationPrefs.getOrDefault("timezone", "Africa/Bissau"));
-            preferences.setOfflineMode((Boolean) notificationPrefs.getOrDefault("offlineMode", false));
-            preferences.setAutoSync((Boolean) notificationPrefs.getOrDefault("autoSync", true));
-
-            // Extract custom settings
-            @SuppressWarnings("unchecked")
-            Map<String, Object> customSettings = (Map<String, Object>) notificationPrefs.get("customSettings");
-            preferences.setCustomSettings(customSettings);
-
-            return preferences;
-
-        } catch (Exception e) {
-            logger.error("Error getting user preferences for user: {}", user.getEmail(), e);
-            throw new RuntimeException("Failed to get user preferences", e);
-        }
+        UserConfigDTO.UserPreferencesDTO preferences = new UserConfigDTO.UserPreferencesDTO();
+        NotificationPreferences stored = preferencesOf(user);
+
+        preferences.setPreferredRegions(user.getPreferredRegions() != null
+                ? user.getPreferredRegions()
+                : new ArrayList<>());
+
+        // Set default values if not present
+        preferences.setLanguage(valueOrDefault(stored.getLanguage(), "pt"));
+        preferences.setTheme(valueOrDefault(stored.getTheme(), "system"));
+        preferences.setTimezone(valueOrDefault(stored.getTimezone(), "Africa/Bissau"));
+        preferences.setOfflineMode(valueOrDefault(stored.getOfflineMode(), false));
+        preferences.setAutoSync(valueOrDefault(stored.getAutoSync(), true));
+        preferences.setCustomSettings(stored.getCustomSettings());
+
+        return preferences;
     }
 
     /**
@@ -426,39 +409,24 @@ public class UserService implements UserDetailsService {
     public UserConfigDTO.UserPreferencesDTO updateUserPreferences(User user,
             UpdateUserConfigRequest.UserPreferencesRequest request) {
         try {
-            // Parse existing notification preferences
-            Map<String, Object> notificationPrefs = parseJsonToMap(user.getNotificationPreferences());
-
-            // Update preferences
-            if (request.getLanguage() != null) {
-                notificationPrefs.put("language", request.getLanguage());
-            }
-            if (request.getTheme() != null) {
-                notificationPrefs.put("theme", request.getTheme());
-            }
-            if (request.getTimezone() != null) {
-                notificationPrefs.put("timezone", request.getTimezone());
-            }
-            if (request.getOfflineMode() != null) {
-                notificationPrefs.put("offlineMode", request.getOfflineMode());
-            }
-            if (request.getAutoSync() != null) {
-                notificationPrefs.put("autoSync", request.getAutoSync());
-            }
-            if (request.getCustomSettings() != null) {
-                notificationPrefs.put("customSettings", request.getCustomSettings());
-            }
+            // Only the provided fields are sent as a JSONB patch
+            NotificationPreferences delta = new NotificationPreferences();
+            delta.setLanguage(request.getLanguage());
+            delta.setTheme(request.getTheme());
+            delta.setTimezone(request.getTimezone());
+            delta.setOfflineMode(request.getOfflineMode());
+            delta.setAutoSync(request.getAutoSync());
+            delta.setCustomSettings(request.getCustomSettings());
 
             // Update preferred regions
             if (request.getPreferredRegions() != null) {
-                user.setPreferredRegions(convertListToJson(request.getPreferredRegions()));
+                user.setPreferredRegions(new ArrayList<>(request.getPreferredRegions()));
             }
 
-            // Save updated notification preferences
-            user.setNotificationPreferences(convertMapToJson(notificationPrefs));
-
-            // Save user
+            // Save user, then merge the preference changes
             User savedUser = save(user);
+            patchNotificationPreferences(savedUser, delta);
+            pushSubscriptionRegistry.refresh(savedUser);
 
             // Return updated preferences
             return getUserPreferences(savedUser);
@@ -474,40 +442,24 @@ public class UserService implements UserDetailsService {
      */
     @Transactional(readOnly = true)
     public UserConfigDTO.NotificationPreferencesDTO getUserNotificationPreferences(User user) {
-        try {
-            UserConfigDTO.NotificationPreferencesDTO preferences = new UserConfigDTO.NotificationPreferencesDTO();
-
-            // Parse notification preferences from JSON
-            Map<String, Object> notificationPrefs = parseJsonToMap(user.getNotificationPreferences());
-
-            // Set notification preferences with defaults
-            preferences.setPriceAlerts((Boolean) notificationPrefs.getOrDefault("priceAlerts", true));
-            preferences.setVerificationNotifications(
-                    (Boolean) notificationPrefs.getOrDefault("verificationNotifications", true));
-            preferences.setSystemNotifications((Boolean) notificationPrefs.getOrDefault("systemNotifications", true));
-            preferences.setEmailNotifications((Boolean) notificationPrefs.getOrDefault("emailNotifications", false));
-            preferences.setPushNotifications((Boolean) notificationPrefs.getOrDefault("pushNotifications", true));
-            preferences.setAlertThreshold((Integer) notificationPrefs.getOrDefault("alertThreshold", 10));
-            preferences.setFrequency((String) notificationPrefs.getOrDefault("frequency", "immediate"));
-            preferences.setQuietHours((Boolean) notificationPrefs.getOrDefault("quietHours", false));
-            preferences.setQuietStartTime((String) notificationPrefs.getOrDefault("quietStartTime", "22:00"));
-            preferences.setQuietEndTime((String) notificationPrefs.getOrDefault("quietEndTime", "08:00"));
-
-            // Parse alert regions and qualities
-            @SuppressWarnings("unchecked")
-            List<String> alertRegions = (List<String>) notificationPrefs.get("alertRegions");
-            preferences.setAlertRegions(alertRegions);
-
-            @SuppressWarnings("unchecked")
-            List<String> alertQualities = (List<String>) notificationPrefs.get("alertQualities");
-            preferences.setAlertQualities(alertQualities);
-
-            return preferences;
-
-        } catch (Exception e) {
-            logger.error("Error getting user notification preferences for user: {}", user.getEmail(), e);
-            throw new RuntimeException("Failed to get user notification preferences", e);
-        }
+        UserConfigDTO.NotificationPreferencesDTO preferences = new UserConfigDTO.NotificationPreferencesDTO();
+        NotificationPreferences stored = preferencesOf(user);
+
+        // Set notification preferences with defaults
+        preferences.setPriceAlerts(valueOrDefault(stored.getPriceAlerts(), true));
+        preferences.setVerificationNotifications(valueOrDefault(stored.getVerificationNotifications(), true));
+        preferences.setSystemNotifications(valueOrDefault(stored.getSystemNotifications(), true));
+        preferences.setEmailNotifications(valueOrDefault(stored.getEmailNotifications(), false));
+        preferences.setPushNotifications(valueOrDefault(stored.getPushNotifications(), true));
+        preferences.setAlertThreshold(valueOrDefault(stored.getAlertThreshold(), 10));
+        preferences.setFrequency(valueOrDefault(stored.getFrequency(), "immediate"));
+        preferences.setQuietHours(valueOrDefault(stored.getQuietHours(), false));
+        preferences.setQuietStartTime(valueOrDefault(stored.getQuietStartTime(), "22:00"));
+        preferences.setQuietEndTime(valueOrDefault(stored.getQuietEndTime(), "08:00"));
+        preferences.setAlertRegions(stored.getAlertRegions());
+        preferences.setAlertQualities(stored.getAlertQualities());
+
+        return preferences;
     }
 
     /**
@@ -547,55 +499,26 @@ public class UserService implements UserDetailsService {
     public UserConfigDTO.NotificationPreferencesDTO updateUserNotificationPreferences(User user,
             UpdateUserConfigRequest.NotificationPreferencesRequest request) {
         try {
-            // Parse existing notification preferences
-            Map<String, Object> notificationPrefs = parseJsonToMap(user.getNotificationPreferences());
-
-            // Update notification preferences
-            if (request.getPriceAlerts() != null) {
-                notificationPrefs.put("priceAlerts", request.getPriceAlerts());
-            }
-            if (request.getVerificationNotifications() != null) {
-                notificationPrefs.put("verificationNotifications", request.getVerificationNotifications());
-            }
-            if (request.getSystemNotifications() != null) {
-                notificationPrefs.put("systemNotifications", request.getSystemNotifications());
-            }
-            if (request.getEmailNotifications() != null) {
-                notificationPrefs.put("emailNotifications", request.getEmailNotifications());
-            }
-            if (request.getPushNotifications() != null) {
-                notificationPrefs.put("pushNotifications", request.getPushNotifications());
-            }
-            if (request.getAlertThreshold() != null) {
-                notificationPrefs.put("alertThreshold", request.getAlertThreshold());
-            }
-            if (request.getFrequency() != null) {
-                notificationPrefs.put("frequency", request.getFrequency());
-            }
-            if (request.getQuietHours() != null) {
-                notificationPrefs.put("quietHours", request.getQuietHours());
-            }
-            if (request.getQuietStartTime() != null) {
-                notificationPrefs.put("quietStartTime", request.getQuietStartTime());
-            }
-            if (request.getQuietEndTime() != null) {
-                notificationPrefs.put("quietEndTime", request.getQuietEndTime());
-            }
-            if (request.getAlertRegions() != null) {
-                notificationPrefs.put("alertRegions", request.getAlertRegions());
-            }
-            if (request.getAlertQualities() != null) {
-                notificationPrefs.put("alertQualities", request.getAlertQualities());
-            }
-
-            // Save updated notification preferences
-            user.setNotificationPreferences(convertMapToJson(notificationPrefs));
-
-            // Save user
-            User savedUser = save(user);
+            // Only the provided fields are sent as a JSONB patch
+            NotificationPreferences delta = new NotificationPreferences();
+            delta.setPriceAlerts(request.getPriceAlerts());
+            delta.setVerificationNotifications(request.getVerificationNotifications());
+            delta.setSystemNotifications(request.getSystemNotifications());
+            delta.setEmailNotifications(request.getEmailNotifications());
+            delta.setPushNotifications(request.getPushNotifications());
+            delta.setAlertThreshold(request.getAlertThreshold());
+            delta.setFrequency(request.getFrequency());
+            delta.setQuietHours(request.getQuietHours());
+            delta.setQuietStartTime(request.getQuietStartTime());
+            delta.setQuietEndTime(request.getQuietEndTime());
+            delta.setAlertRegions(request.getAlertRegions());
+            delta.setAlertQualities(request.getAlertQualities());
+
+            patchNotificationPreferences(user, delta);
+            pushSubscriptionRegistry.refresh(user);
 
             // Return updated preferences
-            return getUserNotificationPreferences(savedUser);
+            return getUserNotificationPreferences(user);
 
         } catch (Exception e) {
             logger.error("Error updating user notification preferences for user: {}", user.getEmail(), e);
@@ -603,67 +526,38 @@ public class UserService implements UserDetailsService {
         }
     }
 
-    // ==================== HELPER METHODS ====================
-
     /**
-     * Parse JSON string to List
+     * Applique un patch partiel aux préférences : fusion JSONB côté base (seules
+     * les clés renseignées du patch sont écrites, les clés listées sont retirées)
+     * puis même fusion sur l'objet chargé, sans relire la ligne
      */
-    private <T> List<T> parseJsonToList(String json, Class<T> clazz) {
-        if (json == null || json.trim().isEmpty()) {
-            return new ArrayList<>();
+    public void patchNotificationPreferences(User user, NotificationPreferences delta, String... removedKeys) {
+        ObjectNode patch = objectMapper.valueToTree(delta);
+        if (patch.isEmpty() && removedKeys.length == 0) {
+            return;
         }
         try {
-            return objectMapper.readValue(json,
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, clazz));
-        } catch (JsonProcessingException e) {
-            logger.warn("Failed to parse JSON to List: {}", json, e);
-            return new ArrayList<>();
-        }
-    }
+            userRepository.patchNotificationPreferences(user.getId(), objectMapper.writeValueAsString(patch),
+                    String.join(",", removedKeys));
 
-    /**
-     * Parse JSON string to Map
-     */
-    private Map<String, Object> parseJsonToMap(String json) {
-        if (json == null || json.trim().isEmpty()) {
-            return new java.util.HashMap<>();
-        }
-        try {
-            return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {
-            });
+            ObjectNode merged = objectMapper.valueToTree(preferencesOf(user));
+            merged.setAll(patch);
+            merged.remove(Arrays.asList(removedKeys));
+            user.setNotificationPreferences(objectMapper.treeToValue(merged, NotificationPreferences.class));
         } catch (JsonProcessingException e) {
-            logger.warn("Failed to parse JSON to Map: {}", json, e);
-            return new java.util.HashMap<>();
+            throw new IllegalStateException("Failed to serialize notification preferences", e);
         }
     }
 
-    /**
-     * Convert List to JSON string
-     */
-    private String convertListToJson(List<?> list) {
-        if (list == null || list.isEmpty()) {
-            return "[]";
-        }
-        try {
-            return objectMapper.writeValueAsString(list);
-        } catch (JsonProcessingException e) {
-            logger.error("Failed to convert List to JSON", e);
-            return "[]";
-        }
+    // ==================== HELPER METHODS ====================
+
+    private static NotificationPreferences preferencesOf(User user) {
+        return user.getNotificationPreferences() != null
+                ? user.getNotificationPreferences()
+                : new NotificationPreferences();
     }
 
-    /**
-     * Convert Map to JSON string
-     */
-    private String convertMapToJson(Map<String, Object> map) {
-        if (map == null || map.isEmpty()) {
-            return "{}";
-        }
-        try {
-            return objectMapper.writeValueAsString(map);
-        } catch (JsonProcessingException e) {
-            logger.error("Failed to convert Map to JSON", e);
-            return "{}";
-        }
+    private static <T> T valueOrDefault(T value, T defaultValue) {
+        return value != null ? value : defaultValue;
     }
 }
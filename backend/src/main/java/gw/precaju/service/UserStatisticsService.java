@@ -0,0 +1,132 @@
+package gw.precaju.service;
+
+import gw.precaju.entity.enums.UserRole;
+import gw.precaju.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistiques des utilisateurs pour le tableau de bord d'administration.
+ *
+ * Une seule requête GROUP BY (rôle, actif, email vérifié) alimente tous les
+ * compteurs ; le résultat est gardé en mémoire pendant une courte durée pour
+ * absorber le rafraîchissement périodique du tableau de bord, et invalidé par
+ * les opérations d'administration qui modifient les comptes.
+ */
+@Service
+public class UserStatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserStatisticsService.class);
+
+    private final UserRepository userRepository;
+    private final long ttlNanos;
+
+    private volatile Snapshot snapshot;
+
+    public UserStatisticsService(UserRepository userRepository,
+            @Value("${app.admin.user-stats.ttl:PT15S}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public UserStatistics getStatistics() {
+        Snapshot current = snapshot;
+        long now = System.nanoTime();
+        if (current != null && now - current.loadedAt < ttlNanos) {
+            return current.statistics;
+        }
+        UserStatistics statistics = load();
+        snapshot = new Snapshot(statistics, now);
+        return statistics;
+    }
+
+    /**
+     * Force le prochain appel à relire les compteurs en base
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private UserStatistics load() {
+        List<Object[]> rows = userRepository.countGroupedByRoleActiveAndEmailVerified();
+        UserStatistics statistics = UserStatistics.fromGroupedCounts(rows);
+        logger.debug("Loaded user statistics from {} groups: total={}, active={}", rows.size(),
+                statistics.getTotalUsers(), statistics.getActiveUsers());
+        return statistics;
+    }
+
+    private static final class Snapshot {
+        private final UserStatistics statistics;
+        private final long loadedAt;
+
+        private Snapshot(UserStatistics statistics, long loadedAt) {
+            this.statistics = statistics;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    public static final class UserStatistics {
+        private final long totalUsers;
+        private final long activeUsers;
+        private final long verifiedUsers;
+        private final Map<UserRole, Long> activeUsersByRole;
+
+        private UserStatistics(long totalUsers, long activeUsers, long verifiedUsers,
+                Map<UserRole, Long> activeUsersByRole) {
+            this.totalUsers = totalUsers;
+            this.activeUsers = activeUsers;
+            this.verifiedUsers = verifiedUsers;
+            this.activeUsersByRole = Collections.unmodifiableMap(activeUsersByRole);
+        }
+
+        /**
+         * Agrège les lignes [role, active, emailVerified, count]
+         */
+        static UserStatistics fromGroupedCounts(List<Object[]> rows) {
+            long total = 0;
+            long active = 0;
+            long verified = 0;
+            Map<UserRole, Long> byRole = new EnumMap<>(UserRole.class);
+            for (Object[] row : rows) {
+                UserRole role = (UserRole) row[0];
+                long count = ((Number) row[3]).longValue();
+                total += count;
+                if (Boolean.TRUE.equals(row[2])) {
+                    verified += count;
+                }
+                if (Boolean.TRUE.equals(row[1])) {
+                    active += count;
+                    if (role != null) {
+                        byRole.merge(role, count, Long::sum);
+                    }
+                }
+            }
+            return new UserStatistics(total, active, verified, byRole);
+        }
+
+        public long getTotalUsers() {
+            return totalUsers;
+        }
+
+        public long getActiveUsers() {
+            return activeUsers;
+        }
+
+        public long getVerifiedUsers() {
+            return verifiedUsers;
+        }
+
+        /** Utilisateurs actifs ayant ce rôle */
+        public long getActiveUsers(UserRole role) {
+            return activeUsersByRole.getOrDefault(role, 0L);
+        }
+    }
+}
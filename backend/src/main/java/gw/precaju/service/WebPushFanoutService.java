@@ -0,0 +1,419 @@
+package gw.precaju.service;
+
+import gw.precaju.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import nl.martijndwars.webpush.Encoding;
+import nl.martijndwars.webpush.Notification;
+import nl.martijndwars.webpush.PushService;
+import nl.martijndwars.webpush.Subscription;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.security.Security;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Moteur d'envoi des notifications Web Push : envois parallèles sur un pool
+ * borné, concurrence limitée par hôte de push, reprises avec backoff et
+ * suppression des abonnements expirés (404/410).
+ */
+@Service
+public class WebPushFanoutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebPushFanoutService.class);
+
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    static {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final PushService pushService;
+    private final int perHostConcurrency;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long requestTimeoutMs;
+
+    private final ThreadPoolExecutor sendExecutor;
+    private final ExecutorService coordinator;
+    private final CloseableHttpAsyncClient httpClient;
+    private final Map<String, Semaphore> hostLimits = new ConcurrentHashMap<>();
+
+    @Autowired
+    public WebPushFanoutService(UserRepository userRepository,
+            @Value("${app.vapid.public-key:}") String vapidPublicKey,
+            @Value("${app.vapid.private-key:}") String vapidPrivateKey,
+            @Value("${app.vapid.subject:mailto:admin@precaju.gw}") String vapidSubject,
+            @Value("${app.push.fanout.threads:16}") int threads,
+            @Value("${app.push.fanout.per-host-concurrency:8}") int perHostConcurrency,
+            @Value("${app.push.fanout.max-attempts:3}") int maxAttempts,
+            @Value("${app.push.fanout.initial-backoff:PT0.5S}") Duration initialBackoff,
+            @Value("${app.push.fanout.connect-timeout:PT5S}") Duration connectTimeout,
+            @Value("${app.push.fanout.request-timeout:PT15S}") Duration requestTimeout) {
+        this(userRepository, createPushService(vapidPublicKey, vapidPrivateKey, vapidSubject),
+                threads, perHostConcurrency, maxAttempts, initialBackoff, connectTimeout, requestTimeout);
+    }
+
+    WebPushFanoutService(UserRepository userRepository, PushService pushService, int threads,
+            int perHostConcurrency, int maxAttempts, Duration initialBackoff, Duration connectTimeout,
+            Duration requestTimeout) {
+        this.userRepository = userRepository;
+        this.pushService = pushService;
+        this.perHostConcurrency = Math.max(1, perHostConcurrency);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = Math.max(0, initialBackoff.toMillis());
+        this.requestTimeoutMs = Math.max(1, requestTimeout.toMillis());
+
+        int poolSize = Math.max(1, threads);
+        AtomicInteger counter = new AtomicInteger();
+        // Queue bornée + CallerRuns : le coordinateur ralentit la lecture des pages
+        // d'abonnés quand les envois n'arrivent plus à suivre.
+        this.sendExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(poolSize * 4),
+                r -> daemon(r, "web-push-" + counter.incrementAndGet()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.coordinator = Executors.newSingleThreadExecutor(r -> daemon(r, "web-push-fanout"));
+        // Un service push qui ne répond plus ne doit pas garder les threads d'envoi
+        // ni les permis par hôte : connexion, attente d'une connexion du pool et
+        // inactivité de la socket sont bornées, la requête entière l'est dans deliver()
+        int connectTimeoutMs = (int) Math.min(Integer.MAX_VALUE, Math.max(1, connectTimeout.toMillis()));
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setConnectionRequestTimeout(connectTimeoutMs)
+                .setSocketTimeout((int) Math.min(Integer.MAX_VALUE, requestTimeoutMs))
+                .build();
+        this.httpClient = HttpAsyncClients.custom()
+                .setDefaultRequestConfig(requestConfig)
+                .setMaxConnPerRoute(this.perHostConcurrency)
+                .setMaxConnTotal(poolSize * 2)
+                .build();
+        this.httpClient.start();
+    }
+
+    private static PushService createPushService(String publicKey, String privateKey, String subject) {
+        if (privateKey == null || privateKey.isBlank()) {
+            logger.warn("VAPID keys not configured, web push notifications are disabled");
+            return null;
+        }
+        try {
+            return new PushService(publicKey, privateKey, subject);
+        } catch (Exception e) {
+            logger.error("Failed to initialize PushService", e);
+            return null;
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    public boolean isEnabled() {
+        return pushService != null;
+    }
+
+    /**
+     * Lance l'envoi en arrière-plan. Les abonnés sont consommés au fil de l'eau,
+     * {@code onDelivery} est appelé depuis les threads d'envoi.
+     */
+    public CompletableFuture<FanoutReport> fanOutAsync(Iterable<PushTarget> targets, String payloadJson,
+            Consumer<PushDelivery> onDelivery) {
+        return CompletableFuture.supplyAsync(() -> fanOut(targets, payloadJson, onDelivery), coordinator);
+    }
+
+    /**
+     * Envoie le message à tous les abonnés et attend la fin des envois.
+     */
+    public FanoutReport fanOut(Iterable<PushTarget> targets, String payloadJson, Consumer<PushDelivery> onDelivery) {
+        FanoutReport report = new FanoutReport();
+        if (!isEnabled()) {
+            logger.warn("PushService not initialized, skipping web push fan-out");
+            return report;
+        }
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        Set<UUID> gone = ConcurrentHashMap.newKeySet();
+
+        for (PushTarget target : targets) {
+            pending.add(CompletableFuture.runAsync(() -> {
+                PushDelivery delivery = deliver(target, payloadJson);
+                report.record(delivery);
+                if (delivery.getStatus() == DeliveryStatus.GONE) {
+                    gone.add(target.getUserId());
+                }
+                if (onDelivery != null) {
+                    try {
+                        onDelivery.accept(delivery);
+                    } catch (Exception e) {
+                        logger.error("Delivery callback failed for user {}", target.getUserId(), e);
+                    }
+                }
+            }, sendExecutor));
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+
+        if (!gone.isEmpty()) {
+            report.pruned = pruneSubscriptions(gone);
+        }
+        report.durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        logger.info("Web push fan-out finished: {}", report);
+        return report;
+    }
+
+    private PushDelivery deliver(PushTarget target, String payloadJson) {
+        Subscription subscription = target.getSubscription();
+        Semaphore hostLimit = hostLimits.computeIfAbsent(hostOf(subscription.endpoint),
+                host -> new Semaphore(perHostConcurrency));
+
+        int attempt = 0;
+        int lastStatus = 0;
+        while (attempt < maxAttempts) {
+            attempt++;
+            long retryAfterMs = -1;
+            try {
+                hostLimit.acquire();
+                try {
+                    HttpPost post = pushService.preparePost(new Notification(subscription, payloadJson),
+                            Encoding.AES128GCM);
+                    Future<HttpResponse> exchange = httpClient.execute(post, null);
+                    HttpResponse response;
+                    try {
+                        response = exchange.get(requestTimeoutMs, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException | InterruptedException e) {
+                        // Annule l'échange (connexion fermée) avant de rendre le permis de l'hôte
+                        exchange.cancel(true);
+                        throw e;
+                    }
+                    lastStatus = response.getStatusLine().getStatusCode();
+                    retryAfterMs = parseRetryAfter(response.getFirstHeader("Retry-After"));
+                    EntityUtils.consumeQuietly(response.getEntity());
+                } finally {
+                    hostLimit.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new PushDelivery(target.getUserId(), subscription.endpoint, DeliveryStatus.FAILED, 0, attempt);
+            } catch (Exception e) {
+                // Erreur réseau ou de chiffrement, traitée comme transitoire
+                logger.debug("Push attempt {} to {} failed: {}", attempt, subscription.endpoint, e.getMessage());
+                lastStatus = 0;
+            }
+
+            if (lastStatus >= 200 && lastStatus < 300) {
+                return new PushDelivery(target.getUserId(), subscription.endpoint, DeliveryStatus.DELIVERED,
+                        lastStatus, attempt);
+            }
+            if (lastStatus == 404 || lastStatus == 410) {
+                return new PushDelivery(target.getUserId(), subscription.endpoint, DeliveryStatus.GONE,
+                        lastStatus, attempt);
+            }
+            if (!isRetryable(lastStatus) || attempt >= maxAttempts) {
+                break;
+            }
+            if (!sleep(backoff(attempt, retryAfterMs))) {
+                break;
+            }
+        }
+        return new PushDelivery(target.getUserId(), subscription.endpoint, DeliveryStatus.FAILED, lastStatus, attempt);
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 0 || status == 408 || status == 429 || status >= 500;
+    }
+
+    private long backoff(int attempt, long retryAfterMs) {
+        if (retryAfterMs >= 0) {
+            return Math.min(retryAfterMs, MAX_BACKOFF_MS);
+        }
+        long base = Math.min(initialBackoffMs << (attempt - 1), MAX_BACKOFF_MS);
+        return base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+    }
+
+    private static long parseRetryAfter(Header header) {
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(header.getValue().trim()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String hostOf(String endpoint) {
+        try {
+            String host = URI.create(endpoint).getHost();
+            return host != null ? host : endpoint;
+        } catch (IllegalArgumentException e) {
+            return endpoint;
+        }
+    }
+
+    private int pruneSubscriptions(Set<UUID> userIds) {
+        try {
+            int pruned = userRepository.clearPushSubscriptions(userIds);
+            logger.info("Pruned {} expired push subscriptions", pruned);
+            return pruned;
+        } catch (Exception e) {
+            logger.error("Failed to prune expired push subscriptions", e);
+            return 0;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        sendExecutor.shutdown();
+        try {
+            sendExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            httpClient.close();
+        } catch (Exception e) {
+            logger.warn("Error while shutting down web push fan-out", e);
+        }
+    }
+
+    public enum DeliveryStatus {
+        DELIVERED, FAILED, GONE
+    }
+
+    public static class PushTarget {
+        private final UUID userId;
+        private final Subscription subscription;
+
+        public PushTarget(UUID userId, Subscription subscription) {
+            this.userId = userId;
+            this.subscription = subscription;
+        }
+
+        public UUID getUserId() {
+            return userId;
+        }
+
+        public Subscription getSubscription() {
+            return subscription;
+        }
+    }
+
+    public static class PushDelivery {
+        private final UUID userId;
+        private final String endpoint;
+        private final DeliveryStatus status;
+        private final int httpStatus;
+        private final int attempts;
+
+        public PushDelivery(UUID userId, String endpoint, DeliveryStatus status, int httpStatus, int attempts) {
+            this.userId = userId;
+            this.endpoint = endpoint;
+            this.status = status;
+            this.httpStatus = httpStatus;
+            this.attempts = attempts;
+        }
+
+        public UUID getUserId() {
+            return userId;
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public DeliveryStatus getStatus() {
+            return status;
+        }
+
+        public int getHttpStatus() {
+            return httpStatus;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+
+    public static class FanoutReport {
+        private final AtomicInteger delivered = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger gone = new AtomicInteger();
+        private volatile int pruned;
+        private volatile long durationMs;
+
+        void record(PushDelivery delivery) {
+            switch (delivery.getStatus()) {
+                case DELIVERED -> delivered.incrementAndGet();
+                case GONE -> gone.incrementAndGet();
+                default -> failed.incrementAndGet();
+            }
+        }
+
+        public int getDelivered() {
+            return delivered.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public int getGone() {
+            return gone.get();
+        }
+
+        public int getPruned() {
+            return pruned;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        @Override
+        public String toString() {
+            return "delivered=" + delivered + ", failed=" + failed + ", gone=" + gone
+                    + ", pruned=" + pruned + ", durationMs=" + durationMs;
+        }
+    }
+}
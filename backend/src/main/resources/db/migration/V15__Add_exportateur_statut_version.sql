@@ -0,0 +1,11 @@
+-- Migration V15: Version de statut des exportateurs
+-- Incrémentée à chaque changement de statut ou de date d'expiration ; les tokens QR
+-- signés portent cette version et sont révoqués dès qu'elle ne correspond plus
+
+ALTER TABLE exportateurs ADD COLUMN statut_version INTEGER NOT NULL DEFAULT 0;
+
+-- Liste de révocation : seuls les exportateurs dont la version a changé ou qui ne sont plus actifs
+CREATE INDEX idx_exportateurs_revoked ON exportateurs(id, statut_version, statut)
+    WHERE statut_version > 0 OR statut <> 'ACTIF';
+
+COMMENT ON COLUMN exportateurs.statut_version IS 'Version du statut, portée par les tokens QR signés';
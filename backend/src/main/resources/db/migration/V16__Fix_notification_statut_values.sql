@@ -0,0 +1,9 @@
+-- Aligner les valeurs de statut sur le mapping JPA (EnumType.STRING)
+ALTER TABLE notifications_envoyees DROP CONSTRAINT IF EXISTS notifications_envoyees_statut_check;
+
+UPDATE notifications_envoyees SET statut = UPPER(statut) WHERE statut <> UPPER(statut);
+
+ALTER TABLE notifications_envoyees ALTER COLUMN statut SET DEFAULT 'ENVOYEE';
+ALTER TABLE notifications_envoyees
+    ADD CONSTRAINT notifications_envoyees_statut_check CHECK (statut IN ('ENVOYEE', 'ECHEC', 'EN_ATTENTE'));
+
@@ -0,0 +1,26 @@
+-- Migration V17: Outbox des notifications push
+-- Écrite dans la même transaction que le prix déclencheur, puis consommée par un
+-- poller (SELECT ... FOR UPDATE SKIP LOCKED) partagé entre instances
+
+CREATE TABLE notification_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    prix_id UUID NOT NULL REFERENCES prices(id) ON DELETE CASCADE,
+    region_code VARCHAR(10) NOT NULL,
+    quality_grade VARCHAR(20) NOT NULL,
+    ancien_prix DECIMAL(10,2) NOT NULL,
+    nouveau_prix DECIMAL(10,2) NOT NULL,
+    variation_pourcentage DECIMAL(7,2) NOT NULL,
+    statut VARCHAR(20) NOT NULL DEFAULT 'PENDING'
+        CHECK (statut IN ('PENDING', 'PROCESSING', 'DONE', 'FAILED')),
+    attempts INTEGER NOT NULL DEFAULT 0,
+    available_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    locked_until TIMESTAMP WITH TIME ZONE,
+    last_error TEXT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    processed_at TIMESTAMP WITH TIME ZONE
+);
+
+-- Lignes à réclamer : en attente, ou en cours avec un bail expiré (instance arrêtée)
+CREATE INDEX idx_notification_outbox_pending ON notification_outbox(available_at, id) WHERE statut = 'PENDING';
+CREATE INDEX idx_notification_outbox_processing ON notification_outbox(locked_until) WHERE statut = 'PROCESSING';
+CREATE INDEX idx_notification_outbox_processed ON notification_outbox(processed_at) WHERE statut IN ('DONE', 'FAILED');
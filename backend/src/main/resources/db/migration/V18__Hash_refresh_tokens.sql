@@ -0,0 +1,21 @@
+-- Migration V18: Refresh tokens stockés sous forme de hash, une ligne par famille
+-- Chaque ligne est une famille de rotation : son id est porté par le refresh token
+-- (claim fid) et token_hash ne contient que le hash SHA-256 du dernier jeton émis.
+-- Les jetons existants sont convertis en place, les sessions en cours restent valides.
+
+ALTER TABLE refresh_tokens ADD COLUMN token_hash CHAR(64);
+UPDATE refresh_tokens SET token_hash = encode(sha256(convert_to(token, 'UTF8')), 'hex');
+ALTER TABLE refresh_tokens ALTER COLUMN token_hash SET NOT NULL;
+
+-- Jeton précédent, accepté sans révocation pendant un court délai après rotation
+ALTER TABLE refresh_tokens ADD COLUMN previous_token_hash CHAR(64);
+ALTER TABLE refresh_tokens ADD COLUMN rotated_at TIMESTAMP WITH TIME ZONE;
+
+DROP INDEX IF EXISTS idx_refresh_tokens_token;
+ALTER TABLE refresh_tokens DROP COLUMN token;
+
+CREATE UNIQUE INDEX idx_refresh_tokens_token_hash ON refresh_tokens(token_hash);
+
+-- Élagage des familles d'un utilisateur à la connexion
+DROP INDEX IF EXISTS idx_refresh_tokens_user_id;
+CREATE INDEX idx_refresh_tokens_user_created ON refresh_tokens(user_id, created_at DESC);
@@ -0,0 +1,32 @@
+-- Repasser les préférences utilisateur en JSONB : elles sont désormais mappées
+-- sur des types Java (lecture une seule fois au chargement de l'entité) et les
+-- modifications passent par une fusion JSONB ciblée au lieu de réécrire le texte
+
+-- Conversion tolérante : une valeur vide ou invalide devient la valeur par défaut
+CREATE OR REPLACE FUNCTION pg_temp.to_jsonb_or_default(value TEXT, fallback JSONB)
+RETURNS JSONB AS $$
+BEGIN
+    IF value IS NULL OR btrim(value) = '' THEN
+        RETURN fallback;
+    END IF;
+    RETURN value::JSONB;
+EXCEPTION WHEN others THEN
+    RETURN fallback;
+END;
+$$ LANGUAGE plpgsql;
+
+ALTER TABLE users ALTER COLUMN preferred_regions DROP DEFAULT;
+ALTER TABLE users
+ALTER COLUMN preferred_regions TYPE JSONB
+USING pg_temp.to_jsonb_or_default(preferred_regions::TEXT, '[]'::JSONB);
+ALTER TABLE users ALTER COLUMN preferred_regions SET DEFAULT '[]'::JSONB;
+
+ALTER TABLE users ALTER COLUMN notification_preferences DROP DEFAULT;
+ALTER TABLE users
+ALTER COLUMN notification_preferences TYPE JSONB
+USING pg_temp.to_jsonb_or_default(notification_preferences::TEXT, '{}'::JSONB);
+ALTER TABLE users ALTER COLUMN notification_preferences SET DEFAULT '{}'::JSONB;
+
+-- Un tableau attendu mais un objet stocké (ou l'inverse) casserait le mapping typé
+UPDATE users SET preferred_regions = '[]'::JSONB WHERE jsonb_typeof(preferred_regions) <> 'array';
+UPDATE users SET notification_preferences = '{}'::JSONB WHERE jsonb_typeof(notification_preferences) <> 'object';
@@ -0,0 +1,14 @@
+-- Recherche d'utilisateurs de la console d'administration
+-- Les index trigrammes (GIN) servent les filtres ILIKE '%terme%' sur l'email et
+-- le nom ; l'index (created_at, id) sert le tri et la pagination par clé
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_users_email_trgm ON users USING gin (email gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_users_full_name_trgm ON users USING gin (full_name gin_trgm_ops);
+
+-- La clé de pagination (created_at, id) doit être renseignée sur toutes les lignes
+UPDATE users SET created_at = NOW() WHERE created_at IS NULL;
+ALTER TABLE users ALTER COLUMN created_at SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_users_created_at_id ON users (created_at, id);
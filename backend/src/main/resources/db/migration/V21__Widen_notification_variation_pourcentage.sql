@@ -0,0 +1,5 @@
+-- Historique des notifications : même précision que l'outbox (V17)
+-- En DECIMAL(5,2), une variation de 1000 % ou plus faisait échouer tout le lot
+-- d'insertion des notifications envoyées
+
+ALTER TABLE notifications_envoyees ALTER COLUMN variation_pourcentage TYPE DECIMAL(7,2);
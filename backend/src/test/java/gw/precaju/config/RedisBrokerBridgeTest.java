@@ -0,0 +1,80 @@
+package gw.precaju.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RedisBrokerBridgeTest {
+
+    private static final String CHANNEL = "test:ws";
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final MessageChannel brokerChannel = mock(MessageChannel.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final RedisBrokerBridge nodeA = bridge("node-a");
+    private final RedisBrokerBridge nodeB = bridge("node-b");
+
+    @Test
+    void testTopicBroadcastIsPublishedAndRelayedToOtherNodes() {
+        Message<byte[]> local = brokerMessage("/topic/prices/new", "{\"type\":\"price_new\"}");
+
+        assertSame(local, nodeA.preSend(local, brokerChannel));
+
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(CHANNEL), published.capture());
+        byte[] body = published.getValue().getBytes(StandardCharsets.UTF_8);
+
+        // L'instance d'origine ignore son propre message
+        nodeA.onMessage(new DefaultMessage(CHANNEL.getBytes(), body), null);
+        verify(brokerChannel, never()).send(any());
+
+        nodeB.onMessage(new DefaultMessage(CHANNEL.getBytes(), body), null);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<?>> relayed = ArgumentCaptor.forClass(Message.class);
+        verify(brokerChannel).send(relayed.capture());
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(relayed.getValue());
+        assertEquals("/topic/prices/new", accessor.getDestination());
+        assertEquals(MimeTypeUtils.APPLICATION_JSON, accessor.getContentType());
+        assertEquals("{\"type\":\"price_new\"}", new String((byte[]) relayed.getValue().getPayload(), StandardCharsets.UTF_8));
+
+        // Un message relayé n'est pas republié
+        nodeB.preSend(relayed.getValue(), brokerChannel);
+        verify(redisTemplate, times(1)).convertAndSend(anyString(), anyString());
+    }
+
+    @Test
+    void testUserDestinationsStayLocal() {
+        nodeA.preSend(brokerMessage("/queue/notifications-user1", "{}"), brokerChannel);
+        verifyNoInteractions(redisTemplate);
+    }
+
+    private RedisBrokerBridge bridge(String instanceId) {
+        return new RedisBrokerBridge(redisTemplate, brokerChannel, objectMapper, CHANNEL, instanceId,
+                mock(RedisMessageListenerContainer.class));
+    }
+
+    private static Message<byte[]> brokerMessage(String destination, String json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+}
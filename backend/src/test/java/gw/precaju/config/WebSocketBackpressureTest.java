@@ -0,0 +1,85 @@
+package gw.precaju.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class WebSocketBackpressureTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WebSocketBackpressure backpressure = new WebSocketBackpressure(meterRegistry, 2, 3, List.of("/topic/"));
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private final WebSocketSession session = mock(WebSocketSession.class);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(session.getId()).thenReturn("s1");
+        backpressure.decorate(mock(WebSocketHandler.class)).afterConnectionEstablished(session);
+    }
+
+    @Test
+    void testPriceTicksDropOldestWhilePersonalMessagesAreKept() {
+        Message<?> first = tick("1");
+        assertSame(first, backpressure.preSend(first, channel));
+
+        assertNull(backpressure.preSend(tick("2"), channel));
+        assertNull(backpressure.preSend(personal("n1"), channel));
+        // File pleine : le tick le plus ancien ("2") est évincé
+        assertNull(backpressure.preSend(tick("3"), channel));
+        assertEquals(2, backpressure.depth("s1"));
+        assertEquals(1.0, meterRegistry.counter("websocket.outbound.dropped", "destination", "/topic/prices/new").count());
+
+        backpressure.afterMessageHandled(first, channel, null, null);
+        ArgumentCaptor<Message<?>> released = ArgumentCaptor.forClass(Message.class);
+        verify(channel).send(released.capture());
+        assertEquals("n1", new String((byte[]) released.getValue().getPayload()));
+        assertTrue(released.getValue().getHeaders().containsKey(WebSocketBackpressure.RELEASED_HEADER));
+        assertSame(released.getValue(), backpressure.preSend(released.getValue(), channel));
+    }
+
+    @Test
+    void testSlowSessionIsClosedPastHardLimit() throws Exception {
+        backpressure.preSend(personal("n0"), channel);
+        for (int i = 1; i <= 3; i++) {
+            assertNull(backpressure.preSend(personal("n" + i), channel));
+        }
+        verify(session, never()).close(any());
+
+        backpressure.preSend(personal("n4"), channel);
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(0, backpressure.depth("s1"));
+        assertEquals(1.0, meterRegistry.counter("websocket.outbound.sessions.terminated").count());
+    }
+
+    private static Message<?> tick(String payload) {
+        return message(payload, "/topic/prices/new", null);
+    }
+
+    private static Message<?> personal(String payload) {
+        return message(payload, "/queue/notifications-users1", "/user/queue/notifications");
+    }
+
+    private static Message<?> message(String payload, String destination, String originalDestination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId("s1");
+        accessor.setDestination(destination);
+        if (originalDestination != null) {
+            accessor.setHeader(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION, originalDestination);
+        }
+        return MessageBuilder.createMessage(payload.getBytes(), accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,54 @@
+package gw.precaju.controller;
+
+import gw.precaju.dto.request.LoginRequest;
+import gw.precaju.dto.request.RegisterRequest;
+import gw.precaju.security.BoundedPasswordEncoder.PasswordHashingBusyException;
+import gw.precaju.security.JwtTokenProvider;
+import gw.precaju.service.AuthService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AuthControllerTest {
+
+    private final AuthService authService = mock(AuthService.class);
+    private final AuthController controller = new AuthController(authService, mock(JwtTokenProvider.class));
+
+    @Test
+    void testBusyHashingGivesSame503ForKnownAndUnknownEmails() {
+        PasswordHashingBusyException busy = new PasswordHashingBusyException("Password hashing queue is full");
+        // Compte existant : l'exception remonte telle quelle ; email inconnu : enveloppée par le provider
+        when(authService.login(any(LoginRequest.class)))
+                .thenThrow(busy)
+                .thenThrow(new InternalAuthenticationServiceException(busy.getMessage(), busy))
+                .thenThrow(new BadCredentialsException("Bad credentials"));
+
+        ResponseEntity<?> known = controller.login(new LoginRequest());
+        ResponseEntity<?> unknown = controller.login(new LoginRequest());
+
+        assertEquals(503, known.getStatusCode().value());
+        assertEquals(503, unknown.getStatusCode().value());
+        assertEquals("2", unknown.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(known.getBody().toString().replaceAll("timestamp=[^,}]*", ""),
+                unknown.getBody().toString().replaceAll("timestamp=[^,}]*", ""));
+        assertEquals(400, controller.login(new LoginRequest()).getStatusCode().value());
+    }
+
+    @Test
+    void testBusyHashingOnRegisterGives503() {
+        when(authService.register(any(RegisterRequest.class)))
+                .thenThrow(new PasswordHashingBusyException("Password hashing timed out"));
+
+        ResponseEntity<?> response = controller.register(new RegisterRequest());
+
+        assertEquals(503, response.getStatusCode().value());
+        assertEquals("2", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+}
@@ -0,0 +1,95 @@
+package gw.precaju.controller;
+
+import gw.precaju.service.FileStorageService;
+import gw.precaju.service.ImageProcessingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class FileControllerTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private FileController controller;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(uploadDir.resolve("photo.jpg"), "0123456789", StandardCharsets.US_ASCII);
+        FileStorageService storage = new FileStorageService(uploadDir.toString(), 5242880L,
+                mock(ImageProcessingService.class), Duration.ofSeconds(5), 100);
+        controller = new FileController(storage, Duration.ofDays(365));
+    }
+
+    @Test
+    void testServesWithEtagAndAnswers304WithoutDisk() throws Exception {
+        MockHttpServletResponse first = get("photo.jpg", null);
+
+        assertEquals(200, first.getStatus());
+        assertEquals("0123456789", first.getContentAsString());
+        assertEquals("public, max-age=31536000, immutable", first.getHeader(HttpHeaders.CACHE_CONTROL));
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        // Les métadonnées sont en mémoire : le 304 ne dépend plus du fichier
+        Files.delete(uploadDir.resolve("photo.jpg"));
+        MockHttpServletRequest request = request("photo.jpg");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.downloadFile("photo.jpg", request, response);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testServesSingleRange() throws Exception {
+        MockHttpServletResponse partial = get("photo.jpg", "bytes=2-5");
+
+        assertEquals(206, partial.getStatus());
+        assertEquals("2345", partial.getContentAsString());
+        assertEquals("bytes 2-5/10", partial.getHeader(HttpHeaders.CONTENT_RANGE));
+
+        MockHttpServletResponse unsatisfiable = get("photo.jpg", "bytes=20-");
+        assertEquals(416, unsatisfiable.getStatus());
+        assertEquals("bytes */10", unsatisfiable.getHeader(HttpHeaders.CONTENT_RANGE));
+
+        assertEquals(404, get("missing.jpg", null).getStatus());
+    }
+
+    @Test
+    void testParseRange() {
+        assertArrayEquals(new long[] { 0, 10 }, FileController.parseRange("bytes=0-", 10));
+        assertArrayEquals(new long[] { 7, 10 }, FileController.parseRange("bytes=-3", 10));
+        assertArrayEquals(new long[] { 5, 10 }, FileController.parseRange("bytes=5-99", 10));
+        assertEquals(0, FileController.parseRange("bytes=10-12", 10).length);
+        assertNull(FileController.parseRange("bytes=0-1,4-5", 10));
+        assertNull(FileController.parseRange("items=0-1", 10));
+        assertNull(FileController.parseRange("bytes=a-b", 10));
+    }
+
+    private MockHttpServletResponse get(String fileName, String range) throws Exception {
+        MockHttpServletRequest request = request(fileName);
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.downloadFile(fileName, request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String fileName) {
+        return new MockHttpServletRequest("GET", "/api/v1/files/" + fileName);
+    }
+}
@@ -10,6 +10,8 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
@@ -236,4 +238,46 @@ public class UserRepositoryTest {
             assertTrue(containsSearch);
         });
     }
+
+    // Tests pour la recherche composée dynamiquement
+    @Test
+    public void testSearchUsers_WithCombinedFilters() {
+        // Given
+        Pageable pageable = PageRequest.of(0, 10);
+        UserSearchCriteria criteria = new UserSearchCriteria(UserRole.ADMIN, true, null, "admin");
+
+        // When
+        Page<User> result = userRepository.searchUsers(criteria, pageable);
+
+        // Then
+        assertNotNull(result);
+        result.getContent().forEach(user -> {
+            assertEquals(UserRole.ADMIN, user.getRole());
+            assertTrue(user.getActive());
+            boolean containsSearch = user.getEmail().toLowerCase().contains("admin") ||
+                    (user.getFullName() != null &&
+                            user.getFullName().toLowerCase().contains("admin"));
+            assertTrue(containsSearch);
+        });
+    }
+
+    @Test
+    public void testSearchUsersAfter_PagesDoNotOverlap() {
+        // Given
+        UserSearchCriteria criteria = new UserSearchCriteria(null, null, null, null);
+
+        // When
+        List<User> first = userRepository.searchUsersAfter(criteria, null, null, 2);
+
+        // Then
+        assertTrue(first.size() <= 2);
+        if (!first.isEmpty()) {
+            User last = first.get(first.size() - 1);
+            List<User> next = userRepository.searchUsersAfter(criteria, last.getCreatedAt(), last.getId(), 2);
+            next.forEach(user -> {
+                assertFalse(first.stream().anyMatch(u -> u.getId().equals(user.getId())));
+                assertFalse(user.getCreatedAt().isAfter(last.getCreatedAt()));
+            });
+        }
+    }
 }
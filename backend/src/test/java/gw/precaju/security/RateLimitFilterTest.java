@@ -0,0 +1,88 @@
+package gw.precaju.security;
+
+import gw.precaju.entity.User;
+import gw.precaju.entity.enums.UserRole;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RateLimitFilter filter = new RateLimitFilter(new LocalRateLimiter(4, 100, clock::get),
+            List.of(policy("geocode", "/api/gps/geocode", 2, RateLimitProperties.KeyType.USER_OR_IP)),
+            meterRegistry);
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testRejectsWithRetryAfterUntilTokensRefill() throws Exception {
+        assertEquals(200, call("10.0.0.1", "/api/gps/geocode").getStatus());
+        assertEquals(200, call("10.0.0.1", "/api/gps/geocode").getStatus());
+
+        MockHttpServletResponse rejected = call("10.0.0.1", "/api/gps/geocode");
+        assertEquals(429, rejected.getStatus());
+        assertEquals("30", rejected.getHeader("Retry-After"));
+        assertEquals(1.0, meterRegistry.counter("http.ratelimit.rejected", "policy", "geocode").count());
+
+        // Other clients and unmatched routes are not affected
+        assertEquals(200, call("10.0.0.2", "/api/gps/geocode").getStatus());
+        assertEquals(200, call("10.0.0.1", "/api/v1/regions").getStatus());
+
+        // Two tokens per minute: one is back after 30 seconds
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertEquals(200, call("10.0.0.1", "/api/gps/geocode").getStatus());
+        assertEquals(429, call("10.0.0.1", "/api/gps/geocode").getStatus());
+    }
+
+    @Test
+    void testAuthenticatedUsersHaveTheirOwnBucket() throws Exception {
+        call("10.0.0.1", "/api/gps/geocode");
+        call("10.0.0.1", "/api/gps/geocode");
+
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("user@precaju.gw");
+        user.setRole(UserRole.CONTRIBUTOR);
+        AuthenticatedUser principal = AuthenticatedUser.from(user);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+
+        assertEquals(200, call("10.0.0.1", "/api/gps/geocode").getStatus());
+    }
+
+    private MockHttpServletResponse call(String remoteAddr, String path) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setRemoteAddr(remoteAddr);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static RateLimitProperties.Policy policy(String name, String pattern, long capacity,
+            RateLimitProperties.KeyType key) {
+        RateLimitProperties.Policy policy = new RateLimitProperties.Policy();
+        policy.setName(name);
+        policy.setPatterns(List.of(pattern));
+        policy.setCapacity(capacity);
+        policy.setRefillPeriod(Duration.ofMinutes(1));
+        policy.setKey(key);
+        return policy;
+    }
+}
@@ -0,0 +1,49 @@
+package gw.precaju.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class RedisRateLimiterTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final AtomicLong now = new AtomicLong();
+    private final RedisRateLimiter limiter = new RedisRateLimiter(redisTemplate, "test:",
+            new LocalRateLimiter(4, 100), Duration.ofSeconds(5), now::get);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOutageSkipsRedisUntilBackoffElapses() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenThrow(new RedisConnectionFailureException("still down"))
+                .thenReturn(List.of(1L, 9L, 0L));
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryConsume("ip:1", 100, Duration.ofMinutes(1)).isAllowed());
+        }
+        // Un seul appel Redis pendant la panne : les suivants vont aux seaux locaux
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any(), any());
+
+        now.addAndGet(Duration.ofSeconds(5).toNanos());
+        limiter.tryConsume("ip:1", 100, Duration.ofMinutes(1));
+        limiter.tryConsume("ip:1", 100, Duration.ofMinutes(1));
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), anyList(), any(), any());
+
+        now.addAndGet(Duration.ofSeconds(5).toNanos());
+        limiter.tryConsume("ip:1", 100, Duration.ofMinutes(1));
+        limiter.tryConsume("ip:1", 100, Duration.ofMinutes(1));
+        // Redis de nouveau disponible : chaque appel passe par Redis
+        verify(redisTemplate, times(4)).execute(any(RedisScript.class), anyList(), any(), any());
+    }
+}
@@ -0,0 +1,79 @@
+package gw.precaju.security;
+
+import gw.precaju.entity.User;
+import gw.precaju.entity.enums.UserRole;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class StompAuthChannelInterceptorTest {
+
+    private final JwtTokenProvider tokenProvider = tokenProvider();
+    private final StompAuthChannelInterceptor interceptor = new StompAuthChannelInterceptor(tokenProvider);
+    private final MessageChannel channel = mock(MessageChannel.class);
+
+    @Test
+    void testConnectBuildsPrincipalFromClaims() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("moderateur@precaju.gw");
+        user.setRole(UserRole.MODERATOR);
+        user.setPreferredLanguage("fr");
+
+        Message<?> connect = frame(StompCommand.CONNECT, "Bearer " + tokenProvider.generateAccessToken(user), null);
+        Message<?> result = interceptor.preSend(connect, channel);
+
+        StompPrincipal principal = (StompPrincipal) StompHeaderAccessor.wrap(result).getUser();
+        assertNotNull(principal);
+        assertEquals(user.getId().toString(), principal.getName());
+        assertEquals(UserRole.MODERATOR, principal.getRole());
+        assertEquals("fr", principal.getLanguage());
+    }
+
+    @Test
+    void testRejectsInvalidTokenAndAnonymousSubscribe() {
+        assertThrows(BadCredentialsException.class,
+                () -> interceptor.preSend(frame(StompCommand.CONNECT, "Bearer not-a-jwt", null), channel));
+        // Refresh token : pas de claims utilisateur, refusé comme access token
+        assertThrows(BadCredentialsException.class, () -> interceptor.preSend(frame(StompCommand.CONNECT,
+                "Bearer " + tokenProvider.generateRefreshToken("a@precaju.gw", UUID.randomUUID()), null),
+                channel));
+
+        assertNull(StompHeaderAccessor.wrap(interceptor.preSend(frame(StompCommand.CONNECT, null, null), channel))
+                .getUser());
+        assertThrows(AccessDeniedException.class,
+                () -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, null, "/topic/prices/new"), channel));
+    }
+
+    private static Message<?> frame(StompCommand command, String authorization, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        if (authorization != null) {
+            accessor.addNativeHeader("Authorization", authorization);
+        }
+        if (destination != null) {
+            accessor.setDestination(destination);
+            accessor.setSubscriptionId("sub-0");
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static JwtTokenProvider tokenProvider() {
+        JwtTokenProvider provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret", "test-secret-key-for-unit-tests-only-0123456789");
+        ReflectionTestUtils.setField(provider, "accessTokenExpirationMs", 60000);
+        ReflectionTestUtils.setField(provider, "refreshTokenExpirationMs", 120000);
+        return provider;
+    }
+}
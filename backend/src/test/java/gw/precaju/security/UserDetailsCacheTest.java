@@ -0,0 +1,78 @@
+package gw.precaju.security;
+
+import gw.precaju.entity.User;
+import gw.precaju.entity.enums.UserRole;
+import gw.precaju.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserDetailsCacheTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserDetailsCache cache = new UserDetailsCache(userRepository, Duration.ofMinutes(1), 100);
+
+    @Test
+    void testResolvesFromCacheUntilInvalidated() {
+        User user = user(UserRole.CONTRIBUTOR);
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        Claims claims = claims(user);
+
+        assertEquals(UserRole.CONTRIBUTOR, cache.resolve(claims).getRole());
+        assertEquals(user.getId(), cache.resolve(claims).getId());
+        verify(userRepository, times(1)).findById(user.getId());
+
+        // Changement de rôle puis désactivation
+        user.setRole(UserRole.MODERATOR);
+        cache.invalidate(user.getId());
+        assertEquals("ROLE_MODERATOR", cache.resolve(claims).getAuthorities().iterator().next().getAuthority());
+
+        user.setActive(false);
+        cache.invalidate(user.getId());
+        assertNull(cache.resolve(claims));
+        assertNull(cache.resolve(claims));
+        verify(userRepository, times(3)).findById(user.getId());
+    }
+
+    @Test
+    void testRejectsRefreshAndLegacyTokens() {
+        User user = user(UserRole.CONTRIBUTOR);
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+
+        Claims refresh = Jwts.claims().setSubject(user.getEmail());
+        refresh.put(JwtTokenProvider.CLAIM_TOKEN_TYPE, JwtTokenProvider.TOKEN_TYPE_REFRESH);
+        refresh.put(JwtTokenProvider.CLAIM_FAMILY, UUID.randomUUID().toString());
+        assertNull(cache.resolve(refresh));
+
+        // Même avec un uid, la famille de rotation désigne un refresh token
+        Claims withFamily = claims(user);
+        withFamily.put(JwtTokenProvider.CLAIM_FAMILY, UUID.randomUUID().toString());
+        assertNull(cache.resolve(withFamily));
+
+        assertNull(cache.resolve(Jwts.claims().setSubject(user.getEmail())));
+        verifyNoInteractions(userRepository);
+    }
+
+    private static User user(UserRole role) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("contributeur@precaju.gw");
+        user.setRole(role);
+        user.setActive(true);
+        return user;
+    }
+
+    private static Claims claims(User user) {
+        Claims claims = Jwts.claims().setSubject(user.getEmail());
+        claims.put(JwtTokenProvider.CLAIM_TOKEN_TYPE, JwtTokenProvider.TOKEN_TYPE_ACCESS);
+        claims.put(JwtTokenProvider.CLAIM_USER_ID, user.getId().toString());
+        return claims;
+    }
+}
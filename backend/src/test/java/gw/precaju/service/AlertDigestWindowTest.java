@@ -0,0 +1,51 @@
+package gw.precaju.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlertDigestWindowTest {
+
+    @Test
+    void testAlertsWithinWindowAreMergedIntoLatest() {
+        AlertDigestWindow<String, String> window = new AlertDigestWindow<>(1000, 100);
+
+        assertTrue(window.offer("BA|W180", "a1", 0));
+        assertFalse(window.offer("BA|W180", "a2", 100));
+        assertFalse(window.offer("BA|W180", "a3", 200));
+        assertTrue(window.offer("OI|W180", "b1", 300));
+
+        assertTrue(window.drainExpired(999).isEmpty());
+
+        List<AlertDigestWindow.Digest<String, String>> digests = window.drainExpired(1000);
+        assertEquals(1, digests.size());
+        assertEquals("a3", digests.get(0).getAlert());
+        assertEquals(2, digests.get(0).getMerged());
+
+        // Le résumé ouvre une nouvelle fenêtre
+        assertFalse(window.offer("BA|W180", "a4", 1500));
+        // La fenêtre sans alerte en attente expire sans résumé
+        assertTrue(window.drainExpired(1300).isEmpty());
+        assertTrue(window.offer("OI|W180", "b2", 1400));
+    }
+
+    @Test
+    void testStateIsBounded() {
+        AlertDigestWindow<Integer, String> window = new AlertDigestWindow<>(1000, 3);
+        for (int i = 0; i < 10; i++) {
+            window.offer(i, "first", i);
+            window.offer(i, "merged", i);
+        }
+
+        assertEquals(3, window.size());
+        assertEquals(7, window.getEvictedPending());
+
+        // Les résumés évincés sortent au vidage suivant, fenêtre encore ouverte
+        List<AlertDigestWindow.Digest<Integer, String>> digests = window.drainExpired(10);
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6), digests.stream().map(AlertDigestWindow.Digest::getKey).toList());
+        assertEquals("merged", digests.get(0).getAlert());
+        assertTrue(window.drainExpired(10).isEmpty());
+    }
+}
@@ -0,0 +1,90 @@
+package gw.precaju.service;
+
+import gw.precaju.dto.AuthResponse;
+import gw.precaju.dto.request.RefreshTokenRequest;
+import gw.precaju.entity.RefreshToken;
+import gw.precaju.entity.User;
+import gw.precaju.entity.enums.UserRole;
+import gw.precaju.exception.InvalidRefreshTokenException;
+import gw.precaju.mapper.UserMapper;
+import gw.precaju.repository.RefreshTokenRepository;
+import gw.precaju.repository.UserRepository;
+import gw.precaju.security.JwtTokenProvider;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AuthServiceRefreshTokenTest {
+
+    private final RefreshTokenRepository refreshTokenRepository = mock(RefreshTokenRepository.class);
+    private final JwtTokenProvider tokenProvider = tokenProvider();
+
+    @Test
+    void testRotationThenReplayRevokesFamily() {
+        AuthService authService = authService(Duration.ZERO);
+        UUID familyId = UUID.randomUUID();
+        String first = tokenProvider.generateRefreshToken("producteur@precaju.gw", familyId);
+        RefreshToken family = family(familyId, first);
+
+        AuthResponse response = authService.refreshToken(new RefreshTokenRequest(first));
+
+        assertNotEquals(first, response.getRefreshToken());
+        assertEquals(AuthService.hashToken(response.getRefreshToken()), family.getTokenHash());
+        assertEquals(64, family.getTokenHash().length());
+
+        // Rejeu de l'ancien jeton : toute la famille est révoquée
+        InvalidRefreshTokenException reuse = assertThrows(InvalidRefreshTokenException.class,
+                () -> authService.refreshToken(new RefreshTokenRequest(first)));
+        assertEquals("Refresh token reuse detected", reuse.getMessage());
+        verify(refreshTokenRepository).delete(family);
+    }
+
+    @Test
+    void testConcurrentRefreshWithinGraceDoesNotRevoke() {
+        AuthService authService = authService(Duration.ofMinutes(1));
+        UUID familyId = UUID.randomUUID();
+        String first = tokenProvider.generateRefreshToken("producteur@precaju.gw", familyId);
+        family(familyId, first);
+
+        authService.refreshToken(new RefreshTokenRequest(first));
+
+        assertThrows(InvalidRefreshTokenException.class,
+                () -> authService.refreshToken(new RefreshTokenRequest(first)));
+        verify(refreshTokenRepository, never()).delete(any());
+    }
+
+    private RefreshToken family(UUID familyId, String token) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("producteur@precaju.gw");
+        user.setRole(UserRole.CONTRIBUTOR);
+        user.setActive(true);
+        RefreshToken family = new RefreshToken(familyId, AuthService.hashToken(token), user,
+                Instant.now().plusSeconds(3600));
+        when(refreshTokenRepository.findFamilyForUpdate(familyId)).thenReturn(Optional.of(family));
+        return family;
+    }
+
+    private AuthService authService(Duration reuseGrace) {
+        return new AuthService(mock(AuthenticationManager.class), mock(UserRepository.class), refreshTokenRepository,
+                mock(PasswordEncoder.class), tokenProvider, new UserMapper(mock(LastLoginTracker.class)),
+                mock(LastLoginTracker.class), 5, reuseGrace);
+    }
+
+    private static JwtTokenProvider tokenProvider() {
+        JwtTokenProvider provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret", "test-secret-key-for-unit-tests-only-0123456789");
+        ReflectionTestUtils.setField(provider, "accessTokenExpirationMs", 60000);
+        ReflectionTestUtils.setField(provider, "refreshTokenExpirationMs", 120000);
+        return provider;
+    }
+}
@@ -0,0 +1,87 @@
+package gw.precaju.service;
+
+import gw.precaju.dto.ExportateurDTO;
+import gw.precaju.entity.enums.StatutType;
+import gw.precaju.event.ExportateurStatusChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportateurLookupCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final ExportateurLookupCache cache = new ExportateurLookupCache(Duration.ofSeconds(30), 2, now::get);
+
+    @Test
+    void testEntriesExpireAndAreEvictedByStatusChange() {
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.findById(id, key -> { loads.incrementAndGet(); return Optional.of(dto(key, StatutType.ACTIF)); });
+        cache.findById(id, key -> { loads.incrementAndGet(); return Optional.of(dto(key, StatutType.ACTIF)); });
+        assertEquals(1, loads.get());
+
+        // Expiration sur une autre instance : invisible ici jusqu'à la fin de la durée de vie
+        now.addAndGet(30_000);
+        assertEquals(StatutType.EXPIRE, cache.findById(id, key -> Optional.of(dto(key, StatutType.EXPIRE)))
+                .orElseThrow().getStatut());
+
+        cache.onExportateurStatusChanged(new ExportateurStatusChangedEvent(List.of(id), StatutType.EXPIRE,
+                StatutType.SUSPENDU));
+        assertEquals(0, cache.size());
+        assertEquals(StatutType.SUSPENDU, cache.findById(id, key -> Optional.of(dto(key, StatutType.SUSPENDU)))
+                .orElseThrow().getStatut());
+    }
+
+    @Test
+    void testLoadRacingWithEvictionIsNotCached() {
+        UUID id = UUID.randomUUID();
+
+        // La lecture voit l'état d'avant le commit, l'éviction survient pendant le chargement
+        Optional<ExportateurDTO> stale = cache.findById(id, key -> {
+            cache.evict(List.of(key));
+            return Optional.of(dto(key, StatutType.ACTIF));
+        });
+
+        assertTrue(stale.isPresent());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testTokenEntriesAreEvictedByExportateurId() {
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.findByQrCodeToken("token", key -> { loads.incrementAndGet(); return Optional.of(dto(id, StatutType.ACTIF)); });
+        cache.findByQrCodeToken("token", key -> { loads.incrementAndGet(); return Optional.of(dto(id, StatutType.ACTIF)); });
+        assertEquals(1, loads.get());
+
+        cache.onExportateurStatusChanged(new ExportateurStatusChangedEvent(List.of(id), StatutType.ACTIF,
+                StatutType.EXPIRE));
+        assertEquals(StatutType.EXPIRE, cache.findByQrCodeToken("token", key -> Optional.of(dto(id, StatutType.EXPIRE)))
+                .orElseThrow().getStatut());
+    }
+
+    @Test
+    void testSizeIsBounded() {
+        for (int i = 0; i < 5; i++) {
+            cache.findById(UUID.randomUUID(), key -> Optional.of(dto(key, StatutType.ACTIF)));
+            assertTrue(cache.size() <= 2);
+        }
+        assertTrue(cache.findById(UUID.randomUUID(), key -> Optional.empty()).isEmpty());
+    }
+
+    private static ExportateurDTO dto(UUID id, StatutType statut) {
+        ExportateurDTO dto = new ExportateurDTO();
+        dto.setId(id);
+        dto.setStatut(statut);
+        return dto;
+    }
+}
@@ -0,0 +1,63 @@
+package gw.precaju.service;
+
+import gw.precaju.entity.enums.ExportateurType;
+import gw.precaju.entity.enums.StatutType;
+import gw.precaju.event.ExportateurStatusChangedEvent;
+import gw.precaju.event.VerificationLoggedEvent;
+import gw.precaju.repository.ExportateurRepository;
+import gw.precaju.repository.VerificationLogRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExportateurStatisticsServiceTest {
+
+    private final ExportateurRepository exportateurRepository = mock(ExportateurRepository.class);
+    private final VerificationLogRepository verificationLogRepository = mock(VerificationLogRepository.class);
+    private final ExportateurStatisticsService service =
+            new ExportateurStatisticsService(exportateurRepository, verificationLogRepository);
+
+    private final UUID id = UUID.randomUUID();
+
+    @Test
+    void testEventsCommittedDuringReconcileAreNotLost() {
+        List<Object[]> actif = rows(StatutType.ACTIF);
+        when(exportateurRepository.findStatisticsRows()).thenReturn(actif);
+        when(verificationLogRepository.countVerificationsByExportateur()).thenReturn(counts(3L));
+        service.reconcile();
+
+        // La lecture voit encore ACTIF et 3 vérifications ; expiration et vérification validées pendant celle-ci
+        when(exportateurRepository.findStatisticsRows()).thenAnswer(invocation -> {
+            service.onExportateurStatusChanged(new ExportateurStatusChangedEvent(List.of(id), StatutType.ACTIF,
+                    StatutType.EXPIRE));
+            service.onVerificationLogged(new VerificationLoggedEvent(id, "VALIDE"));
+            return actif;
+        });
+        service.reconcile();
+
+        List<Object[]> byRegion = service.getCountsByRegionAndStatut();
+        assertEquals(1, byRegion.size());
+        assertEquals(StatutType.EXPIRE, byRegion.get(0)[1]);
+        List<Map<String, Object>> mostVerified = service.getMostVerified(10);
+        assertEquals(4L, mostVerified.get(0).get("verificationCount"));
+    }
+
+    private List<Object[]> rows(StatutType statut) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] { id, "Caju Export", "BA", ExportateurType.EXPORTATEUR, statut });
+        return rows;
+    }
+
+    private List<Object[]> counts(long count) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] { id, count });
+        return rows;
+    }
+}
@@ -0,0 +1,126 @@
+package gw.precaju.service;
+
+import gw.precaju.service.ImageProcessingService.InvalidImageException;
+import gw.precaju.service.ImageProcessingService.Variant;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageProcessingServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final ImageProcessingService service = new ImageProcessingService(new SimpleMeterRegistry(),
+            1, 4, 50, 100, 300, 0.8f, 10_000_000L, "jpeg");
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    void testAppliesOrientationAndWritesVariantsWithoutExif() throws Exception {
+        byte[] photo = withExifOrientation(jpeg(400, 200), 6);
+        assertEquals(6, ImageProcessingService.readExifOrientation(photo));
+
+        Map<Variant, String> variants = service.submit(photo, directory, "photo").get();
+
+        assertEquals("photo.jpg", variants.get(Variant.FULL));
+        assertEquals("photo_feed.jpg", variants.get(Variant.FEED));
+        assertEquals("photo_thumb.jpg", variants.get(Variant.THUMB));
+
+        // Rotation de 90° puis réduction : 400x200 -> 200x400 -> 150x300
+        BufferedImage full = ImageIO.read(directory.resolve("photo.jpg").toFile());
+        assertEquals(150, full.getWidth());
+        assertEquals(300, full.getHeight());
+        BufferedImage thumb = ImageIO.read(directory.resolve("photo_thumb.jpg").toFile());
+        assertEquals(25, thumb.getWidth());
+        assertEquals(50, thumb.getHeight());
+
+        for (String fileName : variants.values()) {
+            byte[] written = Files.readAllBytes(directory.resolve(fileName));
+            assertEquals(1, ImageProcessingService.readExifOrientation(written));
+            assertFalse(new String(written, StandardCharsets.ISO_8859_1).contains("Exif"));
+        }
+    }
+
+    @Test
+    void testSmallImageIsNotUpscaled() {
+        Map<Variant, String> variants = service.process(jpeg(80, 40), directory, "small");
+
+        assertEquals(3, variants.size());
+        assertTrue(Files.exists(directory.resolve("small_feed.jpg")));
+        assertEquals(80, ImageProcessingService.resize(new BufferedImage(80, 40, BufferedImage.TYPE_INT_RGB), 100)
+                .getWidth());
+    }
+
+    @Test
+    void testCancelledImageLeavesNoVariants() throws Exception {
+        byte[] photo = jpeg(400, 200);
+        service.submit(photo, directory, "first");
+        service.submit(photo, directory, "cancelled").cancel(false);
+
+        // Pool d'un seul fil : la dernière photo termine après celle annulée
+        service.submit(photo, directory, "last").get();
+
+        assertTrue(Files.exists(directory.resolve("first.jpg")));
+        assertFalse(Files.exists(directory.resolve("cancelled.jpg")));
+        assertFalse(Files.exists(directory.resolve("cancelled_thumb.jpg")));
+        assertFalse(Files.exists(directory.resolve("cancelled_feed.jpg")));
+    }
+
+    @Test
+    void testRejectsUnreadableImage() {
+        byte[] garbage = "not an image".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(InvalidImageException.class, () -> service.process(garbage, directory, "garbage"));
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    private static byte[] jpeg(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "jpeg", out);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Insère après le SOI un segment APP1 Exif (TIFF big-endian) portant la seule
+     * balise Orientation
+     */
+    private static byte[] withExifOrientation(byte[] jpeg, int orientation) {
+        byte[] app1 = {
+                (byte) 0xFF, (byte) 0xE1, 0, 34,
+                'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0
+        };
+        byte[] result = new byte[jpeg.length + app1.length];
+        System.arraycopy(jpeg, 0, result, 0, 2);
+        System.arraycopy(app1, 0, result, 2, app1.length);
+        System.arraycopy(jpeg, 2, result, 2 + app1.length, jpeg.length - 2);
+        return result;
+    }
+}
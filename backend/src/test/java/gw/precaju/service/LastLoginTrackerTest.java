@@ -0,0 +1,54 @@
+package gw.precaju.service;
+
+import gw.precaju.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LastLoginTrackerTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final LastLoginTracker tracker = new LastLoginTracker(userRepository);
+
+    @Test
+    void testKeepsLatestLoginAndFlushesOneBatch() {
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        Instant t1 = Instant.parse("2026-05-01T08:00:00Z");
+        Instant t2 = t1.plusSeconds(60);
+
+        tracker.record(alice, t2);
+        tracker.record(alice, t1);
+        tracker.record(bob, t1);
+
+        assertEquals(t2, tracker.effectiveLastLogin(alice, t1.minusSeconds(3600)));
+        assertEquals(t2.plusSeconds(5), tracker.effectiveLastLogin(alice, t2.plusSeconds(5)));
+        assertNull(tracker.effectiveLastLogin(UUID.randomUUID(), null));
+
+        tracker.flush();
+
+        verify(userRepository).updateLastLogins(Map.of(alice, t2, bob, t1));
+        assertEquals(0, tracker.pendingCount());
+        tracker.flush();
+        verify(userRepository, times(1)).updateLastLogins(any());
+    }
+
+    @Test
+    void testFailedFlushKeepsPendingValues() {
+        UUID alice = UUID.randomUUID();
+        Instant loginAt = Instant.parse("2026-05-01T08:00:00Z");
+        when(userRepository.updateLastLogins(any())).thenThrow(new RuntimeException("database down"));
+
+        tracker.record(alice, loginAt);
+        tracker.flush();
+
+        assertEquals(1, tracker.pendingCount());
+        assertEquals(loginAt, tracker.effectiveLastLogin(alice, null));
+    }
+}
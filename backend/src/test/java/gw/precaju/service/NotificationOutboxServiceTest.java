@@ -0,0 +1,164 @@
+package gw.precaju.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gw.precaju.entity.NotificationEnvoyee;
+import gw.precaju.entity.NotificationOutbox;
+import gw.precaju.repository.NotificationConfigRepository;
+import gw.precaju.repository.NotificationEnvoyeeRepository;
+import gw.precaju.repository.NotificationOutboxRepository;
+import gw.precaju.repository.UserRepository;
+import nl.martijndwars.webpush.Subscription;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class NotificationOutboxServiceTest {
+
+    private final NotificationOutboxRepository outboxRepository = mock(NotificationOutboxRepository.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final WebPushFanoutService webPushFanoutService = mock(WebPushFanoutService.class);
+
+    private NotificationOutbox event;
+
+    @BeforeEach
+    void setUp() {
+        event = new NotificationOutbox();
+        event.setId(1L);
+        event.setPrixId(UUID.randomUUID());
+        event.setRegionCode("BA");
+        event.setQualityGrade("W180");
+        event.setAncienPrix(new BigDecimal("500"));
+        event.setNouveauPrix(new BigDecimal("600"));
+        event.setVariationPourcentage(new BigDecimal("20"));
+        // Le verrou SKIP LOCKED ne rend la ligne qu'au premier poller
+        when(outboxRepository.lockNextBatch(any(ZonedDateTime.class), anyInt()))
+                .thenReturn(List.of(event))
+                .thenReturn(List.of());
+    }
+
+    @Test
+    void testClaimedEventIsDeliveredOnce() {
+        when(notificationService.deliverPriceVariation(event)).thenReturn(CompletableFuture.completedFuture(null));
+        NotificationOutboxService outbox = outbox(Duration.ofMinutes(5));
+
+        outbox.poll();
+        outbox.poll();
+
+        assertEquals(NotificationOutbox.OutboxStatut.PROCESSING, event.getStatut());
+        assertEquals(1, event.getAttempts());
+        assertTrue(event.getLockedUntil().isAfter(ZonedDateTime.now().plusMinutes(4)));
+        verify(notificationService, times(1)).deliverPriceVariation(event);
+        verify(outboxRepository).markDone(eq(1L), any(ZonedDateTime.class));
+    }
+
+    @Test
+    void testSlowDeliveryExtendsLeaseInsteadOfRescheduling() {
+        CompletableFuture<Void> slow = new CompletableFuture<>();
+        CompletableFuture.delayedExecutor(300, TimeUnit.MILLISECONDS).execute(() -> slow.complete(null));
+        when(notificationService.deliverPriceVariation(event)).thenReturn(slow);
+        when(outboxRepository.extendLease(eq(1L), eq(1), any(ZonedDateTime.class))).thenReturn(1);
+
+        outbox(Duration.ofMillis(100)).poll();
+
+        verify(outboxRepository, atLeastOnce()).extendLease(eq(1L), eq(1), any(ZonedDateTime.class));
+        verify(outboxRepository, never()).reschedule(any(), any(), any());
+        verify(outboxRepository).markDone(eq(1L), any(ZonedDateTime.class));
+    }
+
+    @Test
+    void testLostLeaseCancelsDelivery() {
+        CompletableFuture<Void> hanging = new CompletableFuture<>();
+        when(notificationService.deliverPriceVariation(event)).thenReturn(hanging);
+        when(outboxRepository.extendLease(eq(1L), eq(1), any(ZonedDateTime.class))).thenReturn(0);
+
+        outbox(Duration.ofMillis(100)).poll();
+
+        assertTrue(hanging.isCancelled());
+        verify(outboxRepository, never()).reschedule(any(), any(), any());
+        verify(outboxRepository, never()).markDone(any(), any());
+    }
+
+    @Test
+    void testFailedDeliveryIsRescheduled() {
+        when(notificationService.deliverPriceVariation(event))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("boom")));
+
+        outbox(Duration.ofMinutes(5)).poll();
+
+        verify(outboxRepository).reschedule(eq(1L), any(ZonedDateTime.class), eq("boom"));
+        verify(outboxRepository, never()).markDone(any(), any());
+    }
+
+    @Test
+    void testVariationIsClampedToColumnPrecision() {
+        assertEquals(new BigDecimal("99999.99"),
+                NotificationOutboxService.clampVariation(new BigDecimal("9999900.0000")));
+        assertEquals(new BigDecimal("-99999.99"),
+                NotificationOutboxService.clampVariation(new BigDecimal("-123456.789")));
+        assertEquals(new BigDecimal("12.35"), NotificationOutboxService.clampVariation(new BigDecimal("12.3456")));
+    }
+
+    @Test
+    void testReclaimedEventSkipsUsersAlreadyNotified() {
+        NotificationEnvoyeeRepository envoyeeRepository = mock(NotificationEnvoyeeRepository.class);
+        PushSubscriptionRegistry registry = mock(PushSubscriptionRegistry.class);
+        NotificationService service = new NotificationService(mock(NotificationConfigRepository.class),
+                envoyeeRepository, mock(UserRepository.class), mock(UserService.class), new ObjectMapper(),
+                webPushFanoutService, registry);
+        ReflectionTestUtils.setField(service, "digestWindow", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(service, "digestMaxEntries", 100);
+        service.initDigestWindow();
+
+        UUID notified = UUID.randomUUID();
+        UUID pending = UUID.randomUUID();
+        event.setAttempts(2);
+        when(webPushFanoutService.isEnabled()).thenReturn(true);
+        when(envoyeeRepository.findUserIdsByPrixIdAndStatut(event.getPrixId(),
+                NotificationEnvoyee.NotificationStatut.ENVOYEE)).thenReturn(Set.of(notified));
+        when(registry.findCurrentRecipients(eq("BA"), eq("W180"), any()))
+                .thenReturn(List.of(entry(notified), entry(pending)));
+        when(webPushFanoutService.fanOutAsync(any(), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(new WebPushFanoutService.FanoutReport()));
+
+        service.deliverPriceVariation(event).join();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Iterable<WebPushFanoutService.PushTarget>> targets =
+                ArgumentCaptor.forClass(Iterable.class);
+        verify(webPushFanoutService).fanOutAsync(targets.capture(), anyString(), any());
+        List<UUID> userIds = new ArrayList<>();
+        targets.getValue().forEach(target -> userIds.add(target.getUserId()));
+        assertEquals(List.of(pending), userIds);
+    }
+
+    private NotificationOutboxService outbox(Duration lease) {
+        when(webPushFanoutService.isEnabled()).thenReturn(true);
+        return new NotificationOutboxService(outboxRepository, notificationService, webPushFanoutService,
+                mock(PlatformTransactionManager.class), 10, lease, 5, Duration.ofDays(7));
+    }
+
+    private static PushSubscriptionRegistry.Entry entry(UUID userId) {
+        Subscription subscription = new Subscription("https://push.example/" + userId,
+                new Subscription.Keys("key", "auth"));
+        return new PushSubscriptionRegistry.Entry(userId, subscription, true, null, Set.of(), Set.of());
+    }
+}
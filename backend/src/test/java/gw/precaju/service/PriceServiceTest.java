@@ -14,6 +14,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,6 +24,7 @@ import java.time.LocalDate;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
+@ActiveProfiles("test")
 @TestPropertySource(properties = {
     "spring.datasource.url=jdbc:h2:mem:testdb",
     "spring.jpa.hibernate.ddl-auto=create-drop"
@@ -92,7 +94,7 @@ class PriceServiceTest {
         request.setSourceName("Test Market");
         request.setSourceType("market");
 
-        PriceDTO result = priceService.createPrice(request, testUser);
+        PriceDTO result = priceService.createPrice(request, testUser, null);
 
         assertNotNull(result);
         assertNotNull(result.getId());
@@ -112,7 +114,7 @@ class PriceServiceTest {
         request.setRecordedDate(LocalDate.now());
 
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
-            priceService.createPrice(request, testUser);
+            priceService.createPrice(request, testUser, null);
         });
 
         assertTrue(exception.getMessage().contains("Invalid region code"));
@@ -127,7 +129,7 @@ class PriceServiceTest {
         request.setRecordedDate(LocalDate.now());
 
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
-            priceService.createPrice(request, testUser);
+            priceService.createPrice(request, testUser, null);
         });
 
         assertTrue(exception.getMessage().contains("Invalid quality grade"));
@@ -0,0 +1,122 @@
+package gw.precaju.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gw.precaju.entity.NotificationPreferences;
+import gw.precaju.entity.User;
+import gw.precaju.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PushSubscriptionRegistryTest {
+
+    private static final String SUBSCRIPTION =
+            "{\"endpoint\":\"https://push.example/abc\",\"keys\":{\"p256dh\":\"key\",\"auth\":\"auth\"}}";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final PushSubscriptionRegistry registry = new PushSubscriptionRegistry(userRepository, OBJECT_MAPPER);
+
+    @Test
+    void testRecipientsMatchRegionQualityAndThreshold() throws Exception {
+        User everywhere = subscriber("{}");
+        User bafata = subscriber("{\"alertRegions\":[\"BA\"]}");
+        User bafataW180 = subscriber("{\"alertRegions\":[\"BA\",\"OI\"],\"alertQualities\":[\"W180\"]}");
+        User highThreshold = subscriber("{\"seuil_perso\":25}");
+        User optedOut = subscriber("{\"prix_variations\":false}");
+        List.of(everywhere, bafata, bafataW180, highThreshold, optedOut).forEach(registry::refresh);
+
+        assertEquals(Set.of(everywhere.getId(), bafata.getId(), bafataW180.getId()),
+                recipients("BA", "W180", "12.5"));
+        assertEquals(Set.of(everywhere.getId(), bafata.getId()), recipients("BA", "W240", "12.5"));
+        assertEquals(Set.of(everywhere.getId(), highThreshold.getId()), recipients("GA", "W240", "-30"));
+
+        bafata.setAbonnementNotifications(false);
+        registry.refresh(bafata);
+        registry.unregister(everywhere.getId());
+
+        assertEquals(Set.of(bafataW180.getId()), recipients("BA", "W180", "12.5"));
+        assertEquals(3, registry.size());
+    }
+
+    @Test
+    void testRecipientsAreRevalidatedAgainstDatabase() throws Exception {
+        User kept = subscriber("{}");
+        User deactivatedElsewhere = subscriber("{}");
+        User resubscribedElsewhere = subscriber("{}");
+        List.of(kept, deactivatedElsewhere, resubscribedElsewhere).forEach(registry::refresh);
+        String newSubscription = SUBSCRIPTION.replace("abc", "def");
+        when(userRepository.findPushSubscriptionVersionsByIdIn(anyCollection())).thenReturn(List.of(
+                new Object[] { kept.getId(), PushSubscriptionRegistry.subscriptionVersion(SUBSCRIPTION) },
+                new Object[] { resubscribedElsewhere.getId(),
+                        PushSubscriptionRegistry.subscriptionVersion(newSubscription) }));
+        resubscribedElsewhere.setPushSubscription(newSubscription);
+        when(userRepository.findPushSubscriptionsByIdIn(List.of(resubscribedElsewhere.getId())))
+                .thenReturn(List.<Object[]>of(row(resubscribedElsewhere)));
+
+        List<PushSubscriptionRegistry.Entry> current = registry.findCurrentRecipients("BA", "W180",
+                new BigDecimal("12.5"));
+
+        assertEquals(Set.of(kept.getId(), resubscribedElsewhere.getId()),
+                current.stream().map(PushSubscriptionRegistry.Entry::getUserId).collect(Collectors.toSet()));
+        assertTrue(registry.find(deactivatedElsewhere.getId()).isEmpty());
+        assertEquals("https://push.example/def",
+                registry.find(resubscribedElsewhere.getId()).orElseThrow().getSubscription().endpoint);
+        // Seul l'abonnement modifié est relu et désérialisé
+        verify(userRepository).findPushSubscriptionsByIdIn(List.of(resubscribedElsewhere.getId()));
+        verify(userRepository, times(1)).findPushSubscriptionsByIdIn(anyCollection());
+    }
+
+    @Test
+    void testReloadKeepsUpdatesMadeWhileLoading() throws Exception {
+        User unsubscribedDuringLoad = subscriber("{}");
+        User subscribedDuringLoad = subscriber("{}");
+        User untouched = subscriber("{}");
+        List<Object[]> snapshot = List.of(row(unsubscribedDuringLoad), row(untouched));
+        when(userRepository.findPushSubscriptionsAfter(any(UUID.class), any(Pageable.class))).thenAnswer(invocation -> {
+            // Modifications concurrentes, postérieures à la lecture de la page
+            registry.unregister(unsubscribedDuringLoad.getId());
+            registry.refresh(subscribedDuringLoad);
+            return snapshot;
+        });
+
+        registry.reload();
+
+        assertEquals(Set.of(subscribedDuringLoad.getId(), untouched.getId()), recipients("BA", "W180", "12.5"));
+        assertEquals(2, registry.size());
+    }
+
+    private Set<UUID> recipients(String region, String quality, String variation) {
+        return registry.findRecipients(region, quality, new BigDecimal(variation)).stream()
+                .map(PushSubscriptionRegistry.Entry::getUserId)
+                .collect(Collectors.toSet());
+    }
+
+    private static Object[] row(User user) {
+        return new Object[] { user.getId(), user.getPushSubscription(), user.getNotificationPreferences() };
+    }
+
+    private static User subscriber(String preferences) throws Exception {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setActive(true);
+        user.setAbonnementNotifications(true);
+        user.setPushSubscription(SUBSCRIPTION);
+        user.setNotificationPreferences(OBJECT_MAPPER.readValue(preferences, NotificationPreferences.class));
+        return user;
+    }
+}
@@ -0,0 +1,67 @@
+package gw.precaju.service;
+
+import gw.precaju.service.QRCodeImageService.ImageFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QRCodeImageServiceTest {
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void testImagesUnusedForMaxAgeAreEvicted() throws Exception {
+        QRCodeImageService service = service(Long.MAX_VALUE);
+        Path stale = service.getOrRender("ancien-token", ImageFormat.PNG, 128);
+        Path recent = service.getOrRender("nouveau-token", ImageFormat.PNG, 128);
+        age(stale, Duration.ofDays(31));
+
+        assertEquals(1, service.evictStaleImages());
+
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(recent));
+    }
+
+    @Test
+    void testReadRefreshesImageDate() throws Exception {
+        QRCodeImageService service = service(Long.MAX_VALUE);
+        Path image = service.getOrRender("token", ImageFormat.SVG, 128);
+        age(image, Duration.ofDays(31));
+
+        assertEquals(image, service.getOrRender("token", ImageFormat.SVG, 128));
+
+        assertEquals(0, service.evictStaleImages());
+        assertTrue(Files.exists(image));
+    }
+
+    @Test
+    void testLeastRecentlyUsedImagesAreEvictedAboveMaxBytes() throws Exception {
+        Path middle = service(Long.MAX_VALUE).getOrRender("a", ImageFormat.SVG, 128);
+        QRCodeImageService service = service(Files.size(middle) * 2);
+        Path oldest = service.getOrRender("b", ImageFormat.SVG, 128);
+        Path newest = service.getOrRender("c", ImageFormat.SVG, 128);
+        age(oldest, Duration.ofDays(3));
+        age(middle, Duration.ofDays(2));
+
+        service.evictStaleImages();
+
+        assertFalse(Files.exists(oldest));
+        assertTrue(Files.exists(newest));
+    }
+
+    private QRCodeImageService service(long maxBytes) {
+        return new QRCodeImageService(cacheDir.toString(), 300, Duration.ofDays(30), maxBytes);
+    }
+
+    private static void age(Path path, Duration age) throws Exception {
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(age)));
+    }
+}
@@ -0,0 +1,56 @@
+package gw.precaju.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignedQRTokenServiceTest {
+
+    private final SignedQRTokenService service = new SignedQRTokenService("", "", true);
+
+    @Test
+    void testSignAndVerify() {
+        UUID id = UUID.randomUUID();
+        LocalDate expiration = LocalDate.of(2027, 1, 15);
+
+        String token = service.sign(id, expiration, 3);
+
+        assertTrue(service.isSignedToken(token));
+        Optional<SignedQRTokenService.SignedQRToken> verified = service.verify(token);
+        assertTrue(verified.isPresent());
+        assertEquals(id, verified.get().getExportateurId());
+        assertEquals(expiration, verified.get().getDateExpiration());
+        assertEquals(3, verified.get().getStatutVersion());
+        assertFalse(verified.get().isExpired(LocalDate.of(2027, 1, 15)));
+        assertTrue(verified.get().isExpired(LocalDate.of(2027, 1, 16)));
+    }
+
+    @Test
+    void testTamperedTokenIsRejected() {
+        String token = service.sign(UUID.randomUUID(), LocalDate.of(2027, 1, 15), 0);
+        String payload = token.substring(SignedQRTokenService.TOKEN_PREFIX.length(), token.lastIndexOf('.'));
+        String otherPayload = service.sign(UUID.randomUUID(), LocalDate.of(2030, 1, 1), 0)
+                .substring(SignedQRTokenService.TOKEN_PREFIX.length(), token.lastIndexOf('.'));
+
+        assertTrue(service.verify(token.replace(payload, otherPayload)).isEmpty());
+        assertTrue(service.verify(token.substring(0, token.length() - 2)).isEmpty());
+        assertTrue(service.verify("qr_bf_001_2024").isEmpty());
+    }
+
+    @Test
+    void testTokenFromAnotherKeyIsRejected() {
+        SignedQRTokenService otherService = new SignedQRTokenService("", "", true);
+        String token = otherService.sign(UUID.randomUUID(), LocalDate.of(2027, 1, 15), 0);
+
+        assertTrue(service.verify(token).isEmpty());
+    }
+
+    @Test
+    void testMissingKeysFailOutsideDevAndTest() {
+        assertThrows(IllegalStateException.class, () -> new SignedQRTokenService("", "", false));
+    }
+}
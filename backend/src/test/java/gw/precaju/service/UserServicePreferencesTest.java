@@ -0,0 +1,63 @@
+package gw.precaju.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gw.precaju.entity.NotificationPreferences;
+import gw.precaju.entity.User;
+import gw.precaju.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class UserServicePreferencesTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserService userService =
+            new UserService(userRepository, objectMapper, mock(PushSubscriptionRegistry.class),
+                    mock(LastLoginTracker.class));
+
+    @Test
+    void testPatchSendsOnlyChangedKeysAndMergesInMemory() throws Exception {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setNotificationPreferences(objectMapper.readValue(
+                "{\"theme\":\"dark\",\"alertRegions\":[\"BA\"],\"seuil_perso\":5,\"legacyFlag\":true}",
+                NotificationPreferences.class));
+
+        NotificationPreferences delta = new NotificationPreferences();
+        delta.setLanguage("fr");
+        delta.setAlertRegions(List.of("OI"));
+        userService.patchNotificationPreferences(user, delta, "seuil_perso");
+
+        verify(userRepository).patchNotificationPreferences(user.getId(),
+                "{\"language\":\"fr\",\"alertRegions\":[\"OI\"]}", "seuil_perso");
+
+        NotificationPreferences merged = user.getNotificationPreferences();
+        assertEquals("fr", merged.getLanguage());
+        assertEquals("dark", merged.getTheme());
+        assertEquals(List.of("OI"), merged.getAlertRegions());
+        assertNull(merged.getSeuilPerso());
+        assertEquals(true, merged.getOther().get("legacyFlag"));
+        assertEquals("fr", userService.getUserPreferences(user).getLanguage());
+        assertEquals(10, userService.getUserNotificationPreferences(user).getAlertThreshold());
+    }
+
+    @Test
+    void testEmptyPatchIsSkipped() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.getNotificationPreferences().setSeuilPerso(BigDecimal.TEN);
+
+        userService.patchNotificationPreferences(user, new NotificationPreferences());
+
+        verify(userRepository, never()).patchNotificationPreferences(any(), anyString(), anyString());
+        assertEquals(BigDecimal.TEN, user.getNotificationPreferences().getSeuilPerso());
+    }
+}
@@ -0,0 +1,67 @@
+package gw.precaju.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gw.precaju.dto.CursorPageResponse;
+import gw.precaju.entity.User;
+import gw.precaju.entity.enums.UserRole;
+import gw.precaju.repository.UserRepository;
+import gw.precaju.repository.UserSearchCriteria;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserServiceSearchTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserService userService =
+            new UserService(userRepository, new ObjectMapper(), mock(PushSubscriptionRegistry.class),
+                    mock(LastLoginTracker.class));
+
+    @Test
+    void testCursorPointsAtLastUserOfThePage() {
+        User first = user(Instant.parse("2026-03-02T10:00:00Z"));
+        User second = user(Instant.parse("2026-03-01T10:00:00Z"));
+        User extra = user(Instant.parse("2026-02-28T10:00:00Z"));
+        when(userRepository.searchUsersAfter(any(), isNull(), isNull(), eq(3)))
+                .thenReturn(List.of(first, second, extra));
+
+        CursorPageResponse<User> page = userService.searchUsersAfterCursor("moderator", true, null, "  ana ", null, 2);
+
+        assertEquals(List.of(first, second), page.getContent());
+        assertTrue(page.isHasNext());
+        ArgumentCaptor<UserSearchCriteria> criteria = ArgumentCaptor.forClass(UserSearchCriteria.class);
+        verify(userRepository).searchUsersAfter(criteria.capture(), isNull(), isNull(), eq(3));
+        assertEquals(UserRole.MODERATOR, criteria.getValue().getRole());
+        assertEquals("ana", criteria.getValue().getSearch());
+        assertNull(criteria.getValue().getEmailVerified());
+
+        when(userRepository.searchUsersAfter(any(), any(), any(), eq(3))).thenReturn(List.of(extra));
+        CursorPageResponse<User> next = userService.searchUsersAfterCursor(null, null, null, null,
+                page.getNextCursor(), 2);
+
+        verify(userRepository).searchUsersAfter(any(), eq(second.getCreatedAt()), eq(second.getId()), eq(3));
+        assertEquals(List.of(extra), next.getContent());
+        assertFalse(next.isHasNext());
+        assertNull(next.getNextCursor());
+    }
+
+    @Test
+    void testInvalidCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.searchUsersAfterCursor(null, null, null, null, "not-a-cursor", 20));
+    }
+
+    private static User user(Instant createdAt) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setCreatedAt(createdAt);
+        return user;
+    }
+}
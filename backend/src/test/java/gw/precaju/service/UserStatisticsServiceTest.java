@@ -0,0 +1,42 @@
+package gw.precaju.service;
+
+import gw.precaju.entity.enums.UserRole;
+import gw.precaju.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserStatisticsServiceTest {
+
+    @Test
+    void testAggregatesGroupedCountsAndCachesUntilInvalidated() {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.countGroupedByRoleActiveAndEmailVerified()).thenReturn(List.of(
+                new Object[] { UserRole.ADMIN, true, true, 2L },
+                new Object[] { UserRole.CONTRIBUTOR, true, false, 5L },
+                new Object[] { UserRole.CONTRIBUTOR, true, true, 10L },
+                new Object[] { UserRole.CONTRIBUTOR, false, true, 3L },
+                new Object[] { UserRole.MODERATOR, false, false, 1L }));
+        UserStatisticsService service = new UserStatisticsService(userRepository, Duration.ofMinutes(1));
+
+        UserStatisticsService.UserStatistics stats = service.getStatistics();
+
+        assertEquals(21, stats.getTotalUsers());
+        assertEquals(17, stats.getActiveUsers());
+        assertEquals(15, stats.getVerifiedUsers());
+        assertEquals(2, stats.getActiveUsers(UserRole.ADMIN));
+        assertEquals(15, stats.getActiveUsers(UserRole.CONTRIBUTOR));
+        assertEquals(0, stats.getActiveUsers(UserRole.MODERATOR));
+
+        assertSame(stats, service.getStatistics());
+        verify(userRepository, times(1)).countGroupedByRoleActiveAndEmailVerified();
+
+        service.invalidate();
+        service.getStatistics();
+        verify(userRepository, times(2)).countGroupedByRoleActiveAndEmailVerified();
+    }
+}
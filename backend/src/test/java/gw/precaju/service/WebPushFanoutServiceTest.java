@@ -0,0 +1,174 @@
+package gw.precaju.service;
+
+import com.sun.net.httpserver.HttpServer;
+import gw.precaju.repository.UserRepository;
+import nl.martijndwars.webpush.PushService;
+import nl.martijndwars.webpush.Subscription;
+import nl.martijndwars.webpush.Utils;
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.interfaces.ECPublicKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class WebPushFanoutServiceTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger flakyCalls = new AtomicInteger();
+    private final AtomicInteger okCalls = new AtomicInteger();
+    private final AtomicInteger hangingCalls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private UserRepository userRepository;
+    private WebPushFanoutService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> {
+            okCalls.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(201, -1);
+            exchange.close();
+        });
+        server.createContext("/gone", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(410, -1);
+            exchange.close();
+        });
+        server.createContext("/flaky", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(flakyCalls.incrementAndGet() == 1 ? 503 : 201, -1);
+            exchange.close();
+        });
+        server.createContext("/hang", exchange -> {
+            hangingCalls.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                // Service push qui ne répond plus
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        userRepository = mock(UserRepository.class);
+        when(userRepository.clearPushSubscriptions(any())).thenAnswer(i -> ((Collection<?>) i.getArgument(0)).size());
+
+        service = new WebPushFanoutService(userRepository, new PushService(generateKeyPair(), "mailto:test@precaju.gw"),
+                4, 2, 3, Duration.ofMillis(10), Duration.ofSeconds(2), Duration.ofMillis(300));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void testFanOutDeliversRetriesAndPrunes() throws Exception {
+        UUID goneUser = UUID.randomUUID();
+        List<WebPushFanoutService.PushTarget> targets = List.of(
+                target(UUID.randomUUID(), "/ok/1"),
+                target(UUID.randomUUID(), "/ok/2"),
+                target(UUID.randomUUID(), "/ok/3"),
+                target(UUID.randomUUID(), "/flaky/1"),
+                target(goneUser, "/gone/1"));
+        Map<UUID, WebPushFanoutService.PushDelivery> deliveries = new ConcurrentHashMap<>();
+
+        WebPushFanoutService.FanoutReport report = service.fanOut(targets, "{\"title\":\"test\"}",
+                d -> deliveries.put(d.getUserId(), d));
+
+        assertEquals(4, report.getDelivered());
+        assertEquals(1, report.getGone());
+        assertEquals(0, report.getFailed());
+        assertEquals(1, report.getPruned());
+        assertEquals(5, deliveries.size());
+        assertEquals(3, okCalls.get());
+        assertEquals(2, flakyCalls.get());
+        assertEquals(WebPushFanoutService.DeliveryStatus.GONE, deliveries.get(goneUser).getStatus());
+        verify(userRepository).clearPushSubscriptions(Set.of(goneUser));
+    }
+
+    @Test
+    void testUnresponsiveHostTimesOutAndReleasesPermits() throws Exception {
+        // Plus de requêtes bloquées que de permis pour l'hôte (2) : sans délai
+        // d'expiration, les suivantes attendraient indéfiniment
+        List<WebPushFanoutService.PushTarget> targets = List.of(
+                target(UUID.randomUUID(), "/hang/1"),
+                target(UUID.randomUUID(), "/hang/2"),
+                target(UUID.randomUUID(), "/hang/3"));
+
+        long start = System.nanoTime();
+        WebPushFanoutService.FanoutReport report = service.fanOut(targets, "{}", null);
+
+        assertEquals(3, report.getFailed());
+        assertEquals(9, hangingCalls.get());
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 8);
+
+        // Les permis sont rendus : l'hôte reste joignable
+        release.countDown();
+        assertEquals(1, service.fanOut(List.of(target(UUID.randomUUID(), "/ok/9")), "{}", null).getDelivered());
+    }
+
+    @Test
+    void testDisabledWithoutVapidKeys() throws Exception {
+        WebPushFanoutService disabled = new WebPushFanoutService(userRepository, null, 1, 1, 1, Duration.ZERO,
+                Duration.ofSeconds(1), Duration.ofSeconds(1));
+        try {
+            assertFalse(disabled.isEnabled());
+            assertEquals(0, disabled.fanOut(List.of(target(UUID.randomUUID(), "/ok/1")), "{}", null)
+                    .getDelivered());
+            assertEquals(0, okCalls.get());
+        } finally {
+            disabled.shutdown();
+        }
+    }
+
+    private WebPushFanoutService.PushTarget target(UUID userId, String path) throws Exception {
+        KeyPair clientKeys = generateKeyPair();
+        byte[] auth = new byte[16];
+        new SecureRandom().nextBytes(auth);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        Subscription subscription = new Subscription(baseUrl + path, new Subscription.Keys(
+                encoder.encodeToString(Utils.encode((ECPublicKey) clientKeys.getPublic())),
+                encoder.encodeToString(auth)));
+        return new WebPushFanoutService.PushTarget(userId, subscription);
+    }
+
+    private static KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("ECDH", BouncyCastleProvider.PROVIDER_NAME);
+        generator.initialize(ECNamedCurveTable.getParameterSpec("prime256v1"));
+        return generator.generateKeyPair();
+    }
+}
@@ -34,11 +34,12 @@ export const WebSocketNotifications: React.FC = () => {
   usePriceVerifications((verification) => {
     if (verification.data) {
       const price = verification.data;
+      const quality = price.qualityName || price.quality;
       addToast({
         title: t('price.verified', 'Prix Vérifié'),
         message: t('price.verifiedMessage', 
-          `Le prix de ${price.priceFcfa} FCFA/kg pour ${price.qualityName} a été vérifié`,
-          { price: price.priceFcfa, quality: price.qualityName }
+          `Le prix de ${price.priceFcfa} FCFA/kg pour ${quality} a été vérifié`,
+          { price: price.priceFcfa, quality }
         ),
         type: 'success',
         duration: 5000,
@@ -84,6 +84,17 @@ class WebSocketService {
         // Create STOMP client
         this.client = new Client({
           webSocketFactory: () => this.socket!,
+          // Authenticated once on the STOMP CONNECT frame
+          connectHeaders: {
+            Authorization: `Bearer ${token}`,
+          },
+          // Reconnects must present the current (possibly refreshed) token
+          beforeConnect: () => {
+            const currentToken = useAuthStore.getState().accessToken;
+            if (currentToken && this.client) {
+              this.client.connectHeaders = { Authorization: `Bearer ${currentToken}` };
+            }
+          },
           debug: (str) => {
             console.log('STOMP Debug:', str);
           },
@@ -101,10 +112,10 @@ class WebSocketService {
           this.connectionState.reconnectAttempts = 0;
           this.notifyConnectionStateChange();
 
-          // Send authentication
+          // Announce the connection (authentication already done at CONNECT)
           this.client?.publish({
             destination: '/app/connect',
-            body: JSON.stringify({ token })
+            body: '{}'
           });
 
           // Subscribe to topics
@@ -206,19 +217,16 @@ class WebSocketService {
       this.handleMessage('stats_update', data);
     });
 
-    // Subscribe to user notifications
-    const userId = useAuthStore.getState().user?.id;
-    if (userId) {
-      this.client.subscribe(`/user/${userId}/queue/notifications`, (message: IMessage) => {
-        const data = JSON.parse(message.body);
-        this.handleMessage('notification', data);
-      });
+    // Subscribe to user notifications (resolved from the session principal)
+    this.client.subscribe('/user/queue/notifications', (message: IMessage) => {
+      const data = JSON.parse(message.body);
+      this.handleMessage('notification', data);
+    });
 
-      this.client.subscribe(`/user/${userId}/queue/pong`, (message: IMessage) => {
-        const data = JSON.parse(message.body);
-        this.handleMessage('pong', data);
-      });
-    }
+    this.client.subscribe('/user/queue/pong', (message: IMessage) => {
+      const data = JSON.parse(message.body);
+      this.handleMessage('pong', data);
+    });
   }
 
   /**